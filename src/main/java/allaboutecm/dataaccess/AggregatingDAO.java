@@ -0,0 +1,57 @@
+package allaboutecm.dataaccess;
+
+import allaboutecm.model.Entity;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A DAO that can rank inside the store and return only keys and scores, best first.
+ *
+ * Ties are ordered like ECMMiner orders them: musicians and instruments by name, years ascending,
+ * albums newest first and then by record number.
+ */
+public interface AggregatingDAO extends DAO {
+    /**
+     * Whether the aggregation methods can be used with the current backing store.
+     */
+    boolean supportsAggregation();
+
+    /**
+     * Loads entities by database id, in no particular order.
+     */
+    <T extends Entity> Collection<T> loadAll(Class<T> clazz, Collection<Long> ids);
+
+    /**
+     * Musician ids scored by the number of their albums released in [startYear, endYear].
+     * Musicians without such albums are left out.
+     */
+    List<Scored> albumCountsPerMusician(int startYear, int endYear, int limit);
+
+    /**
+     * Musician ids scored like the entity scan of {@code ECMMiner.mostSocialMusicians}: the distinct musicians
+     * featured on, or credited with, their albums, the musician included only when featured, minus one.
+     */
+    List<Scored> collaboratorCounts(int limit);
+
+    /**
+     * Release years scored by the number of albums released in them.
+     */
+    List<Scored> albumCountsPerYear(int limit);
+
+    /**
+     * Musician ids scored by the number of distinct instruments over all their musician instruments,
+     * one result per musician.
+     */
+    List<Scored> instrumentCountsPerMusician(int limit);
+
+    /**
+     * Musical instrument ids scored by the number of musician instruments using an instrument of that name.
+     */
+    List<Scored> instrumentFrequency(int limit);
+
+    /**
+     * Album ids scored by the number of names of the lineup featured on the album, over the lineup size.
+     */
+    List<Scored> similarAlbums(List<String> lineup, int limit);
+}
@@ -0,0 +1,50 @@
+package allaboutecm.dataaccess;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long one batch of a bulk write took: the lookup of the batch's existing natural keys, and the writes up to
+ * and including the commit.
+ */
+public class BatchTiming {
+    private final int batch;
+    private final int size;
+    private final long lookupNanos;
+    private final long writeNanos;
+
+    public BatchTiming(int batch, int size, long lookupNanos, long writeNanos) {
+        this.batch = batch;
+        this.size = size;
+        this.lookupNanos = lookupNanos;
+        this.writeNanos = writeNanos;
+    }
+
+    /**
+     * The index of the batch within its bulk write, from 0.
+     */
+    public int getBatch() {
+        return batch;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getLookupNanos() {
+        return lookupNanos;
+    }
+
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    public long getTotalNanos() {
+        return lookupNanos + writeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "batch " + batch + ": " + size + " entities, lookup " + TimeUnit.NANOSECONDS.toMillis(lookupNanos)
+                + " ms, write " + TimeUnit.NANOSECONDS.toMillis(writeNanos) + " ms";
+    }
+}
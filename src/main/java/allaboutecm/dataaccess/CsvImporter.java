@@ -0,0 +1,534 @@
+package allaboutecm.dataaccess;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Imports albums, with their featured musicians and musician instruments, from CSV exports of the catalog.
+ *
+ * Every file starts with a header row. The recordNumber, albumName and releaseYear columns are required; style,
+ * releaseFormat, albumURL, tracks, featuredMusicians and instruments are optional. Lists are separated by
+ * semicolons, and an instruments entry is a musician name followed by the instrument names separated by bars:
+ * {@code Keith Jarrett=Piano|Organ;Jack DeJohnette=Drums}.
+ *
+ * The import runs in four stages connected by bounded queues, so that a slow stage holds back the stages before
+ * it instead of letting rows pile up in memory:
+ * <ol>
+ *     <li>parse: reads the CSV records, one thread per file. A file is read by a single thread, so large exports
+ *     should be split to be parsed in parallel.</li>
+ *     <li>validate: builds the entities through the model constructors and setters. The rows they refuse are
+ *     reported and skipped.</li>
+ *     <li>de-duplicate: keeps the first album of each natural key, and shares one musician, musical instrument
+ *     and musician instrument object per key so that each is written once.</li>
+ *     <li>write: writes the albums batch by batch through {@link DAO#createOrUpdateAll}, after upserting the
+ *     instruments and musicians and writing the musician instruments they refer to, then adds the batch's
+ *     albums to the musicians through {@link DAO#addRelated}. Musicians are never saved with their albums, so
+ *     those already stored are kept, and the shared objects never hold more than one batch of albums.</li>
+ * </ol>
+ * Importing into a large store through a Neo4jDAO is faster with its natural key cache enabled.
+ */
+public class CsvImporter {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final int REJECTED_REPORTED = 100;
+
+    private static final String RECORD_NUMBER = "recordNumber";
+    private static final String ALBUM_NAME = "albumName";
+    private static final String RELEASE_YEAR = "releaseYear";
+    private static final List<String> REQUIRED_COLUMNS = ImmutableList.of(RECORD_NUMBER, ALBUM_NAME, RELEASE_YEAR);
+
+    private static final CSVFormat FORMAT = CSVFormat.DEFAULT.withFirstRecordAsHeader().withTrim();
+    private static final Splitter LIST = Splitter.on(';').trimResults().omitEmptyStrings();
+    private static final Splitter ENTRY = Splitter.on('=').limit(2).trimResults();
+    private static final Splitter INSTRUMENTS = Splitter.on('|').trimResults().omitEmptyStrings();
+
+    private static final Row END_OF_ROWS = new Row(null, 0, null);
+    private static final Album END_OF_ALBUMS = new Album();
+
+    private final Consumer<List<Album>> writer;
+    private int parsers = Runtime.getRuntime().availableProcessors();
+    private int validators = Runtime.getRuntime().availableProcessors();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+    public CsvImporter(DAO dao) {
+        notNull(dao);
+        this.writer = batch -> write(dao, batch);
+    }
+
+    /**
+     * Imports into something other than a DAO, such as an OfflineStoreBuilder. The writer is called from a single
+     * thread with the de-duplicated albums batch by batch, their featured musicians already linked to them: the
+     * albums of a musician are those of the batch only.
+     */
+    public CsvImporter(Consumer<List<Album>> writer) {
+        notNull(writer);
+        this.writer = batch -> {
+            link(batch);
+            writer.accept(batch);
+        };
+    }
+
+    public int getParsers() {
+        return parsers;
+    }
+
+    /**
+     * Sets the largest number of files parsed at the same time.
+     */
+    public void setParsers(int parsers) {
+        this.parsers = positive(parsers, "parsers");
+    }
+
+    public int getValidators() {
+        return validators;
+    }
+
+    public void setValidators(int validators) {
+        this.validators = positive(validators, "validators");
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of albums written together, along with the entities they refer to.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = positive(batchSize, "batch size");
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the number of items each queue between two stages holds before the stage feeding it has to wait.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = positive(queueCapacity, "queue capacity");
+    }
+
+    private static int positive(int value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return value;
+    }
+
+    /**
+     * Imports the files and returns once every valid album is written. A file that cannot be read or lacks a
+     * required column fails the import, as does a failed write; the batches written before stay written.
+     */
+    public ImportReport importFiles(List<Path> files) throws IOException {
+        notNull(files);
+        return new Run(files).call();
+    }
+
+    /**
+     * Builds an album from the values of a row, through the model constructors and setters.
+     */
+    static Album toAlbum(Map<String, String> values) throws MalformedURLException {
+        Album album = new Album(Integer.parseInt(values.get(RELEASE_YEAR)), values.get(RECORD_NUMBER),
+                values.get(ALBUM_NAME));
+        if (!Strings.isNullOrEmpty(values.get("style"))) {
+            album.setStyle(values.get("style"));
+        }
+        if (!Strings.isNullOrEmpty(values.get("releaseFormat"))) {
+            album.setReleaseFormat(values.get("releaseFormat"));
+        }
+        if (!Strings.isNullOrEmpty(values.get("albumURL"))) {
+            album.setAlbumURL(new URL(values.get("albumURL")));
+        }
+        if (!Strings.isNullOrEmpty(values.get("tracks"))) {
+            album.setTracks(LIST.splitToList(values.get("tracks")));
+        }
+        if (!Strings.isNullOrEmpty(values.get("featuredMusicians"))) {
+            album.setFeaturedMusicians(LIST.splitToList(values.get("featuredMusicians")).stream()
+                    .map(Musician::new).collect(Collectors.toList()));
+        }
+        if (!Strings.isNullOrEmpty(values.get("instruments"))) {
+            Set<MusicianInstrument> instruments = Sets.newHashSet();
+            for (String entry : LIST.split(values.get("instruments"))) {
+                List<String> parts = ENTRY.splitToList(entry);
+                if (parts.size() != 2) {
+                    throw new IllegalArgumentException("The instruments entry " + entry
+                            + " must be a musician name, '=' and instrument names");
+                }
+                instruments.add(new MusicianInstrument(new Musician(parts.get(0)), INSTRUMENTS.splitToList(parts.get(1))
+                        .stream().map(MusicalInstrument::new).collect(Collectors.toSet())));
+            }
+            album.setInstruments(instruments);
+        }
+        return album;
+    }
+
+    /**
+     * Writes the entities an album batch refers to before the albums, so that they are saved once and found
+     * by their ids, then links the featured musicians to the albums. Musicians and instruments are upserted:
+     * saving a musician already in the store would replace their stored albums by the empty set the imported
+     * object holds.
+     */
+    private static void write(DAO dao, List<Album> batch) {
+        Set<MusicalInstrument> instruments = Sets.newLinkedHashSet();
+        Set<Musician> musicians = Sets.newLinkedHashSet();
+        Set<MusicianInstrument> musicianInstruments = Sets.newLinkedHashSet();
+        for (Album album : batch) {
+            musicians.addAll(album.getFeaturedMusicians());
+            for (MusicianInstrument musicianInstrument : album.getInstruments()) {
+                musicianInstruments.add(musicianInstrument);
+                musicians.add(musicianInstrument.getMusician());
+                instruments.addAll(musicianInstrument.getMusicalInstruments());
+            }
+        }
+        unsaved(instruments).forEach(dao::upsert);
+        unsaved(musicians).forEach(dao::upsert);
+        dao.createOrUpdateAll(unsaved(musicianInstruments));
+        dao.createOrUpdateAll(batch);
+        dao.addRelated("albums", discographies(batch));
+    }
+
+    /**
+     * Replaces the albums of the featured musicians of a batch by their albums in the batch.
+     */
+    private static void link(List<Album> batch) {
+        for (Map.Entry<Musician, Collection<Album>> entry : discographies(batch).asMap().entrySet()) {
+            entry.getKey().setAlbums(Sets.newHashSet(entry.getValue()));
+        }
+    }
+
+    /**
+     * The albums of a batch by featured musician.
+     */
+    private static SetMultimap<Musician, Album> discographies(List<Album> batch) {
+        SetMultimap<Musician, Album> discographies = LinkedHashMultimap.create();
+        for (Album album : batch) {
+            for (Musician musician : album.getFeaturedMusicians()) {
+                discographies.put(musician, album);
+            }
+        }
+        return discographies;
+    }
+
+    private static <T extends Entity> List<T> unsaved(Collection<T> entities) {
+        return entities.stream().filter(entity -> entity.getId() == null).collect(Collectors.toList());
+    }
+
+    /**
+     * One record of a file, by column name.
+     */
+    private static final class Row {
+        private final String file;
+        private final long record;
+        private final Map<String, String> values;
+
+        private Row(String file, long record, Map<String, String> values) {
+            this.file = file;
+            this.record = record;
+            this.values = values;
+        }
+    }
+
+    /**
+     * The items and busy time of one stage; it ends when its last thread hands on the end of the stream.
+     */
+    private static final class Counter {
+        private final String name;
+        private final int threads;
+        private final AtomicLong items = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private volatile long end;
+
+        private Counter(String name, int threads) {
+            this.name = name;
+            this.threads = threads;
+        }
+
+        private void done(long since, long count) {
+            items.addAndGet(count);
+            busyNanos.addAndGet(System.nanoTime() - since);
+        }
+
+        private ImportReport.Stage toStage(long start) {
+            return new ImportReport.Stage(name, threads, items.get(), end - start, busyNanos.get());
+        }
+    }
+
+    /**
+     * The queues, counters and de-duplication state of one import.
+     */
+    private final class Run {
+        private final Queue<Path> pending;
+        private final int parseThreads;
+        private final BlockingQueue<Row> rows = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<Album> validated = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<Album> unique = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicInteger parsing;
+        private final AtomicInteger validating = new AtomicInteger(validators);
+
+        private final Counter parsed;
+        private final Counter checked = new Counter("validate", validators);
+        private final Counter deduplicated = new Counter("de-duplicate", 1);
+        private final Counter written = new Counter("write", 1);
+        private final AtomicLong rejectedCount = new AtomicLong();
+        private final Queue<String> rejected = new ConcurrentLinkedQueue<>();
+
+        // Only used by the de-duplicating thread.
+        private final Set<Album> albums = Sets.newHashSet();
+        private final Map<String, Musician> musicians = Maps.newHashMap();
+        private final Map<String, MusicalInstrument> instruments = Maps.newHashMap();
+        private final Map<MusicianInstrument, MusicianInstrument> musicianInstruments = Maps.newHashMap();
+        private long duplicates;
+
+        private final List<Future<?>> tasks = new CopyOnWriteArrayList<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private Run(List<Path> files) {
+            this.pending = new ConcurrentLinkedQueue<>(files);
+            this.parseThreads = Math.max(1, Math.min(parsers, files.size()));
+            this.parsing = new AtomicInteger(parseThreads);
+            this.parsed = new Counter("parse", parseThreads);
+        }
+
+        private ImportReport call() throws IOException {
+            long start = System.nanoTime();
+            ExecutorService executor = Executors.newFixedThreadPool(parseThreads + validators + 2,
+                    new ThreadFactoryBuilder().setNameFormat("csv-import-%d").setDaemon(true).build());
+            try {
+                for (int i = 0; i < parseThreads; i++) {
+                    submit(executor, this::parse);
+                }
+                for (int i = 0; i < validators; i++) {
+                    submit(executor, this::validate);
+                }
+                submit(executor, this::deduplicate);
+                submit(executor, this::write);
+                if (failure.get() != null) {
+                    cancel();
+                }
+                for (Future<?> task : tasks) {
+                    try {
+                        task.get();
+                    } catch (ExecutionException | CancellationException e) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("The import was interrupted", e);
+            } finally {
+                executor.shutdownNow();
+            }
+
+            Throwable cause = failure.get();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else if (cause != null) {
+                throw new IllegalStateException("The import failed", cause);
+            }
+            return new ImportReport(parsed.items.get(), duplicates, written.items.get(), Lists.newArrayList(rejected),
+                    rejectedCount.get(), Lists.newArrayList(parsed.toStage(start), checked.toStage(start),
+                    deduplicated.toStage(start), written.toStage(start)));
+        }
+
+        /**
+         * Runs a stage; the first stage to fail cancels all the others, which may be blocked on a queue.
+         */
+        private void submit(ExecutorService executor, Callable<Void> stage) {
+            tasks.add(executor.submit(() -> {
+                try {
+                    return stage.call();
+                } catch (Throwable e) {
+                    if (failure.compareAndSet(null, e)) {
+                        cancel();
+                    }
+                    throw e;
+                }
+            }));
+        }
+
+        private void cancel() {
+            for (Future<?> task : tasks) {
+                task.cancel(true);
+            }
+        }
+
+        private Void parse() throws IOException, InterruptedException {
+            for (Path file = pending.poll(); file != null; file = pending.poll()) {
+                parse(file);
+            }
+            if (parsing.decrementAndGet() == 0) {
+                parsed.end = System.nanoTime();
+                for (int i = 0; i < validators; i++) {
+                    rows.put(END_OF_ROWS);
+                }
+            }
+            return null;
+        }
+
+        private void parse(Path file) throws IOException, InterruptedException {
+            String name = file.getFileName().toString();
+            try (CSVParser parser = FORMAT.parse(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+                for (String column : REQUIRED_COLUMNS) {
+                    if (!parser.getHeaderMap().containsKey(column)) {
+                        throw new IllegalArgumentException(name + " has no " + column + " column");
+                    }
+                }
+                Iterator<CSVRecord> records = parser.iterator();
+                long since = System.nanoTime();
+                while (records.hasNext()) {
+                    CSVRecord record = records.next();
+                    Row row = new Row(name, record.getRecordNumber(), record.toMap());
+                    parsed.done(since, 1);
+                    rows.put(row);
+                    since = System.nanoTime();
+                }
+            }
+        }
+
+        private Void validate() throws InterruptedException {
+            for (Row row = rows.take(); row != END_OF_ROWS; row = rows.take()) {
+                long since = System.nanoTime();
+                Album album = null;
+                try {
+                    album = toAlbum(row.values);
+                } catch (RuntimeException | MalformedURLException e) {
+                    if (rejectedCount.incrementAndGet() <= REJECTED_REPORTED) {
+                        rejected.add(row.file + ":" + row.record + ": " + e.getMessage());
+                    }
+                }
+                checked.done(since, 1);
+                if (album != null) {
+                    validated.put(album);
+                }
+            }
+            if (validating.decrementAndGet() == 0) {
+                checked.end = System.nanoTime();
+                validated.put(END_OF_ALBUMS);
+            }
+            return null;
+        }
+
+        private Void deduplicate() throws InterruptedException {
+            for (Album album = validated.take(); album != END_OF_ALBUMS; album = validated.take()) {
+                long since = System.nanoTime();
+                boolean first = albums.add(album);
+                if (first) {
+                    share(album);
+                } else {
+                    duplicates++;
+                }
+                deduplicated.done(since, 1);
+                if (first) {
+                    unique.put(album);
+                }
+            }
+            deduplicated.end = System.nanoTime();
+            unique.put(END_OF_ALBUMS);
+            return null;
+        }
+
+        /**
+         * Replaces the musicians and instruments of an album by the first objects read with the same keys.
+         */
+        private void share(Album album) {
+            List<Musician> featured = Lists.newArrayList();
+            for (Musician musician : album.getFeaturedMusicians()) {
+                featured.add(musicians.computeIfAbsent(musician.getName(), name -> musician));
+            }
+            if (!featured.isEmpty()) {
+                album.setFeaturedMusicians(featured);
+            }
+            Set<MusicianInstrument> played = Sets.newHashSet();
+            for (MusicianInstrument musicianInstrument : album.getInstruments()) {
+                Set<MusicalInstrument> shared = Sets.newHashSet();
+                for (MusicalInstrument instrument : musicianInstrument.getMusicalInstruments()) {
+                    shared.add(instruments.computeIfAbsent(instrument.getName(), name -> instrument));
+                }
+                Musician musician = musicianInstrument.getMusician();
+                MusicianInstrument candidate = new MusicianInstrument(
+                        musicians.computeIfAbsent(musician.getName(), name -> musician), shared);
+                played.add(musicianInstruments.computeIfAbsent(candidate, key -> candidate));
+            }
+            if (!played.isEmpty()) {
+                album.setInstruments(played);
+            }
+        }
+
+        private Void write() throws InterruptedException {
+            List<Album> batch = Lists.newArrayListWithCapacity(batchSize);
+            for (Album album = unique.take(); album != END_OF_ALBUMS; album = unique.take()) {
+                batch.add(album);
+                if (batch.size() == batchSize) {
+                    write(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+            written.end = System.nanoTime();
+            return null;
+        }
+
+        private void write(List<Album> batch) {
+            long since = System.nanoTime();
+            writer.accept(batch);
+            written.done(since, batch.size());
+        }
+    }
+}
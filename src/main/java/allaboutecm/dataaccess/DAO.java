@@ -3,15 +3,85 @@ package allaboutecm.dataaccess;
 import allaboutecm.model.Album;
 import allaboutecm.model.Entity;
 import allaboutecm.model.Musician;
+import com.google.common.collect.Multimap;
+
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public interface DAO {
     <T extends Entity> T load(Class<T> clazz, Long id);
 
     <T extends Entity> T createOrUpdate(T entity);
 
+    /**
+     * Creates or updates the entity's own properties, keyed on its natural key, and returns it with its id.
+     * Implementations may skip its relationships; this default writes them like {@link #createOrUpdate}.
+     */
+    default <T extends Entity> T upsert(T entity) {
+        return createOrUpdate(entity);
+    }
+
+    /**
+     * Creates or updates every entity, like {@link #createOrUpdate} does, and returns them in the same order.
+     * Implementations may resolve the existing entities and write them in batches.
+     */
+    default <T extends Entity> List<T> createOrUpdateAll(Collection<T> entities) {
+        return entities.stream().map(this::createOrUpdate).collect(Collectors.toList());
+    }
+
+    /**
+     * Adds related entities to a relationship field of saved entities, such as albums to the {@code albums} of
+     * musicians, keeping the relationships already stored. Implementations should write only the new
+     * relationships, so the entities need not hold the others; this default adds the related entities to the
+     * field and saves the entities, which writes the whole field.
+     */
+    @SuppressWarnings("unchecked")
+    default <T extends Entity, R extends Entity> void addRelated(String relationship, Multimap<T, R> related) {
+        for (T entity : related.keySet()) {
+            Object value = Projection.read(Projection.field(entity.getClass(), relationship), entity);
+            if (!(value instanceof Collection)) {
+                throw new IllegalArgumentException(relationship + " is not a collection of related entities");
+            }
+            ((Collection<R>) value).addAll(related.get(entity));
+        }
+        createOrUpdateAll(related.keySet());
+    }
+
     <T extends Entity> Collection<T> loadAll(Class<T> clazz);
 
+    /**
+     * Streams all the entities of a class, each with its direct relationships. Implementations may fetch them
+     * lazily, so the stream should be consumed once and not kept open across writes.
+     */
+    default <T extends Entity> Stream<T> stream(Class<T> clazz) {
+        return loadAll(clazz).stream();
+    }
+
+    /**
+     * Whether {@link #stream} holds only a page of entities at a time, so that streaming the whole catalog does not
+     * keep it in memory. This default loads every entity first.
+     */
+    default boolean streamsInPages() {
+        return false;
+    }
+
+    /**
+     * The given scalar properties of every entity of a class as typed columns, see {@link Projection}.
+     * Implementations should read the columns without mapping the entities; this default loads them.
+     */
+    default <T extends Entity> Projection project(Class<T> clazz, String... properties) {
+        return Projection.of(clazz, loadAll(clazz), properties);
+    }
+
+    /**
+     * The database ids at both ends of a relationship field of the class, one edge per related entity.
+     */
+    default <T extends Entity> Edges projectEdges(Class<T> clazz, String relationship) {
+        return Edges.of(clazz, loadAll(clazz), relationship);
+    }
+
     <T extends Entity> void delete(T entity);
 
     Musician findMusicianByName(String name);
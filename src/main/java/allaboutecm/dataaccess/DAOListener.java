@@ -0,0 +1,27 @@
+package allaboutecm.dataaccess;
+
+import allaboutecm.model.Entity;
+
+import java.util.Collection;
+
+/**
+ * Receives the entities written through an {@link ObservableDAO}, after the write has succeeded.
+ */
+public interface DAOListener {
+    /**
+     * Called after the entity has been created or updated; the entity carries its database id.
+     */
+    void saved(Entity entity);
+
+    /**
+     * Called after the entity has been deleted.
+     */
+    void deleted(Entity entity);
+
+    /**
+     * Called after related entities have been added to a relationship field of the entity, see
+     * {@link DAO#addRelated}. The entity may not hold them, nor the ones it was related to before.
+     */
+    default void added(Entity entity, String relationship, Collection<? extends Entity> related) {
+    }
+}
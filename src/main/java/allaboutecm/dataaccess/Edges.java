@@ -0,0 +1,65 @@
+package allaboutecm.dataaccess;
+
+import allaboutecm.model.Entity;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.apache.commons.lang3.Validate.validState;
+
+/**
+ * The endpoints of one relationship type as two parallel columns of database ids:
+ * edge i goes from {@code sources()[i]} to {@code targets()[i]}.
+ */
+public class Edges {
+    private final long[] sources;
+    private final long[] targets;
+
+    public Edges(long[] sources, long[] targets) {
+        if (sources.length != targets.length) {
+            throw new IllegalArgumentException("sources and targets must have the same length");
+        }
+        this.sources = sources;
+        this.targets = targets;
+    }
+
+    /**
+     * Reads the relationship field of entities that were already loaded.
+     */
+    public static <T extends Entity> Edges of(Class<T> clazz, Collection<T> entities, String relationship) {
+        Field field = Projection.field(clazz, relationship);
+        long[] sources = new long[16];
+        long[] targets = new long[16];
+        int size = 0;
+        for (T entity : entities) {
+            Object value = Projection.read(field, entity);
+            Collection<?> ends = value instanceof Collection ? (Collection<?>) value
+                    : value == null ? Arrays.asList() : Arrays.asList(value);
+            for (Object end : ends) {
+                validState(entity.getId() != null && ((Entity) end).getId() != null,
+                        "Entities must be saved before they are projected");
+                if (size == sources.length) {
+                    sources = Arrays.copyOf(sources, size * 2);
+                    targets = Arrays.copyOf(targets, size * 2);
+                }
+                sources[size] = entity.getId();
+                targets[size] = ((Entity) end).getId();
+                size++;
+            }
+        }
+        return new Edges(Arrays.copyOf(sources, size), Arrays.copyOf(targets, size));
+    }
+
+    public int size() {
+        return sources.length;
+    }
+
+    public long[] sources() {
+        return sources;
+    }
+
+    public long[] targets() {
+        return targets;
+    }
+}
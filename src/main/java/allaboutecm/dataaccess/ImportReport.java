@@ -0,0 +1,135 @@
+package allaboutecm.dataaccess;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a {@link CsvImporter} run read, rejected and wrote, and how fast each of its stages went.
+ */
+public class ImportReport {
+    private final long rows;
+    private final long duplicates;
+    private final long albums;
+    private final List<String> rejected;
+    private final long rejectedCount;
+    private final List<Stage> stages;
+
+    ImportReport(long rows, long duplicates, long albums, List<String> rejected, long rejectedCount,
+                 List<Stage> stages) {
+        this.rows = rows;
+        this.duplicates = duplicates;
+        this.albums = albums;
+        this.rejected = ImmutableList.copyOf(rejected);
+        this.rejectedCount = rejectedCount;
+        this.stages = ImmutableList.copyOf(stages);
+    }
+
+    /**
+     * Number of CSV records read, over all the files.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Number of valid rows dropped because an album with the same natural key was read before.
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Number of albums written.
+     */
+    public long getAlbums() {
+        return albums;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Why rows were rejected, as {@code file:record: message}; only the first ones are kept.
+     */
+    public List<String> getRejected() {
+        return rejected;
+    }
+
+    /**
+     * The parse, validate, de-duplicate and write stages, in pipeline order.
+     */
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder().append(rows).append(" rows, ").append(rejectedCount)
+                .append(" rejected, ").append(duplicates).append(" duplicates, ").append(albums).append(" albums");
+        for (Stage stage : stages) {
+            builder.append("\n").append(stage);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The items one stage processed, the wall time from its start to its end and the time its threads spent
+     * working rather than waiting on the queues around it. The stage whose busy time is closest to its wall time
+     * is the one holding the pipeline back.
+     */
+    public static class Stage {
+        private final String name;
+        private final int threads;
+        private final long items;
+        private final long wallNanos;
+        private final long busyNanos;
+
+        public Stage(String name, int threads, long items, long wallNanos, long busyNanos) {
+            this.name = name;
+            this.threads = threads;
+            this.items = items;
+            this.wallNanos = wallNanos;
+            this.busyNanos = busyNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public long getItems() {
+            return items;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        /**
+         * The working time summed over the threads of the stage.
+         */
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+
+        /**
+         * Items per second of wall time.
+         */
+        public double getThroughput() {
+            return wallNanos == 0 ? 0 : items * (double) TimeUnit.SECONDS.toNanos(1) / wallNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d items on %d threads in %d ms, %.0f items/s, busy %d ms", name, items,
+                    threads, TimeUnit.NANOSECONDS.toMillis(wallNanos), getThroughput(),
+                    TimeUnit.NANOSECONDS.toMillis(busyNanos));
+        }
+    }
+}
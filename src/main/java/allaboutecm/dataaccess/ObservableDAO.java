@@ -0,0 +1,174 @@
+package allaboutecm.dataaccess;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Multimap;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * A DAO decorator that tells its listeners about every successful write of the wrapped DAO.
+ * Aggregations are passed through when the wrapped DAO supports them.
+ */
+public class ObservableDAO implements AggregatingDAO {
+    private final DAO delegate;
+    private final List<DAOListener> listeners = new CopyOnWriteArrayList<>();
+
+    public ObservableDAO(DAO delegate) {
+        notNull(delegate);
+        this.delegate = delegate;
+    }
+
+    public DAO getDelegate() {
+        return delegate;
+    }
+
+    public void addListener(DAOListener listener) {
+        notNull(listener);
+        listeners.add(listener);
+    }
+
+    public void removeListener(DAOListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        return delegate.load(clazz, id);
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        T saved = delegate.createOrUpdate(entity);
+        for (DAOListener listener : listeners) {
+            listener.saved(saved);
+        }
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> T upsert(T entity) {
+        T saved = delegate.upsert(entity);
+        for (DAOListener listener : listeners) {
+            listener.saved(saved);
+        }
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> List<T> createOrUpdateAll(Collection<T> entities) {
+        List<T> saved = delegate.createOrUpdateAll(entities);
+        for (T entity : saved) {
+            for (DAOListener listener : listeners) {
+                listener.saved(entity);
+            }
+        }
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity, R extends Entity> void addRelated(String relationship, Multimap<T, R> related) {
+        delegate.addRelated(relationship, related);
+        for (T entity : related.keySet()) {
+            for (DAOListener listener : listeners) {
+                listener.added(entity, relationship, related.get(entity));
+            }
+        }
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        return delegate.loadAll(clazz);
+    }
+
+    @Override
+    public <T extends Entity> Stream<T> stream(Class<T> clazz) {
+        return delegate.stream(clazz);
+    }
+
+    @Override
+    public boolean streamsInPages() {
+        return delegate.streamsInPages();
+    }
+
+    @Override
+    public <T extends Entity> Projection project(Class<T> clazz, String... properties) {
+        return delegate.project(clazz, properties);
+    }
+
+    @Override
+    public <T extends Entity> Edges projectEdges(Class<T> clazz, String relationship) {
+        return delegate.projectEdges(clazz, relationship);
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        delegate.delete(entity);
+        for (DAOListener listener : listeners) {
+            listener.deleted(entity);
+        }
+    }
+
+    @Override
+    public Musician findMusicianByName(String name) {
+        return delegate.findMusicianByName(name);
+    }
+
+    @Override
+    public Album findAlbumByName(String name) {
+        return delegate.findAlbumByName(name);
+    }
+
+    @Override
+    public boolean supportsAggregation() {
+        return delegate instanceof AggregatingDAO && ((AggregatingDAO) delegate).supportsAggregation();
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        return aggregating().loadAll(clazz, ids);
+    }
+
+    @Override
+    public List<Scored> albumCountsPerMusician(int startYear, int endYear, int limit) {
+        return aggregating().albumCountsPerMusician(startYear, endYear, limit);
+    }
+
+    @Override
+    public List<Scored> collaboratorCounts(int limit) {
+        return aggregating().collaboratorCounts(limit);
+    }
+
+    @Override
+    public List<Scored> albumCountsPerYear(int limit) {
+        return aggregating().albumCountsPerYear(limit);
+    }
+
+    @Override
+    public List<Scored> instrumentCountsPerMusician(int limit) {
+        return aggregating().instrumentCountsPerMusician(limit);
+    }
+
+    @Override
+    public List<Scored> instrumentFrequency(int limit) {
+        return aggregating().instrumentFrequency(limit);
+    }
+
+    @Override
+    public List<Scored> similarAlbums(List<String> lineup, int limit) {
+        return aggregating().similarAlbums(lineup, limit);
+    }
+
+    private AggregatingDAO aggregating() {
+        if (!supportsAggregation()) {
+            throw new UnsupportedOperationException("The wrapped DAO does not support aggregation");
+        }
+        return (AggregatingDAO) delegate;
+    }
+}
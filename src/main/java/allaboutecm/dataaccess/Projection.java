@@ -0,0 +1,182 @@
+package allaboutecm.dataaccess;
+
+import allaboutecm.model.Entity;
+import com.google.common.collect.Maps;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import static org.apache.commons.lang3.Validate.validState;
+
+/**
+ * Scalar properties of every entity of a class as primitive columns, read without mapping the entities.
+ *
+ * Row i of every column belongs to the entity with database id {@code ids()[i]}. Columns are typed after the
+ * entity field they are read from: int fields give {@code int[]}, long fields {@code long[]} and String fields
+ * {@code String[]}. Missing values read as 0 or null.
+ */
+public class Projection {
+    private final long[] ids;
+    private final Map<String, Object> columns;
+
+    private Projection(long[] ids, Map<String, Object> columns) {
+        this.ids = ids;
+        this.columns = columns;
+    }
+
+    public static Builder builder(Class<? extends Entity> clazz, String... properties) {
+        return new Builder(clazz, properties);
+    }
+
+    /**
+     * Projects entities that were already loaded, reading the fields reflectively.
+     */
+    public static <T extends Entity> Projection of(Class<T> clazz, Collection<T> entities, String... properties) {
+        Builder builder = builder(clazz, properties);
+        Object[] values = new Object[properties.length];
+        for (T entity : entities) {
+            validState(entity.getId() != null, "Entities must be saved before they are projected");
+            for (int i = 0; i < properties.length; i++) {
+                values[i] = read(builder.fields[i], entity);
+            }
+            builder.add(entity.getId(), values);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long[] ids() {
+        return ids;
+    }
+
+    public int[] ints(String property) {
+        return column(property, int[].class);
+    }
+
+    public long[] longs(String property) {
+        return column(property, long[].class);
+    }
+
+    public String[] strings(String property) {
+        return column(property, String[].class);
+    }
+
+    private <A> A column(String property, Class<A> type) {
+        Object column = columns.get(property);
+        if (!type.isInstance(column)) {
+            throw new IllegalArgumentException("No " + type.getComponentType() + " column " + property);
+        }
+        return type.cast(column);
+    }
+
+    /**
+     * The field an entity property or relationship is mapped from, looked up through the class hierarchy.
+     */
+    public static Field field(Class<?> clazz, String name) {
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredField(name);
+            } catch (NoSuchFieldException e) {
+                // Keep looking in the superclass.
+            }
+        }
+        throw new IllegalArgumentException(clazz.getSimpleName() + " has no field " + name);
+    }
+
+    /**
+     * The value of a field of an entity, whatever its visibility.
+     */
+    public static Object read(Field field, Object entity) {
+        try {
+            field.setAccessible(true);
+            return field.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read " + field, e);
+        }
+    }
+
+    /**
+     * Appends rows to growable typed columns.
+     */
+    public static class Builder {
+        private final String[] properties;
+        private final Field[] fields;
+        private final Object[] columns;
+        private long[] ids = new long[16];
+        private int size;
+
+        private Builder(Class<? extends Entity> clazz, String[] properties) {
+            this.properties = properties.clone();
+            this.fields = new Field[properties.length];
+            this.columns = new Object[properties.length];
+            for (int i = 0; i < properties.length; i++) {
+                fields[i] = field(clazz, properties[i]);
+                Class<?> type = fields[i].getType();
+                if (type == int.class || type == Integer.class) {
+                    columns[i] = new int[ids.length];
+                } else if (type == long.class || type == Long.class) {
+                    columns[i] = new long[ids.length];
+                } else if (type == String.class) {
+                    columns[i] = new String[ids.length];
+                } else {
+                    throw new IllegalArgumentException(clazz.getSimpleName() + "." + properties[i]
+                            + " of type " + type.getSimpleName() + " cannot be projected");
+                }
+            }
+        }
+
+        /**
+         * The fields the properties are read from, in property order.
+         */
+        public Field[] getFields() {
+            return fields.clone();
+        }
+
+        /**
+         * Appends a row; the values are given in property order.
+         */
+        public Builder add(long id, Object... values) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = grow(columns[i], size * 2);
+                }
+            }
+            ids[size] = id;
+            for (int i = 0; i < columns.length; i++) {
+                Object column = columns[i];
+                if (column instanceof int[]) {
+                    ((int[]) column)[size] = values[i] == null ? 0 : ((Number) values[i]).intValue();
+                } else if (column instanceof long[]) {
+                    ((long[]) column)[size] = values[i] == null ? 0 : ((Number) values[i]).longValue();
+                } else {
+                    ((String[]) column)[size] = (String) values[i];
+                }
+            }
+            size++;
+            return this;
+        }
+
+        public Projection build() {
+            Map<String, Object> result = Maps.newHashMapWithExpectedSize(columns.length);
+            for (int i = 0; i < columns.length; i++) {
+                result.put(properties[i], grow(columns[i], size));
+            }
+            return new Projection(Arrays.copyOf(ids, size), result);
+        }
+
+        private static Object grow(Object column, int length) {
+            if (column instanceof int[]) {
+                return Arrays.copyOf((int[]) column, length);
+            } else if (column instanceof long[]) {
+                return Arrays.copyOf((long[]) column, length);
+            }
+            return Arrays.copyOf((String[]) column, length);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package allaboutecm.dataaccess;
+
+/**
+ * A key together with the score an aggregation gave it. The key is a database id,
+ * or the value itself for scalar groupings such as release years.
+ */
+public class Scored {
+    private final long key;
+    private final double score;
+
+    public Scored(long key, double score) {
+        this.key = key;
+        this.score = score;
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return key + "=" + score;
+    }
+}
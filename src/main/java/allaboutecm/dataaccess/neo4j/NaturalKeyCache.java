@@ -0,0 +1,218 @@
+package allaboutecm.dataaccess.neo4j;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.Projection;
+import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Maps;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Natural keys of the albums, musicians and musical instruments in the store, kept in front of the
+ * {@code Neo4jDAO} lookups that resolve an entity to its existing node.
+ *
+ * A Bloom filter holds every key in the store, so a key it has never seen is definitely new and needs no query.
+ * The most recently used keys are kept with their database ids, so most existing keys need no query either. Both
+ * are only kept up to date with the writes and deletes of the DAO that owns the cache: changes made through other
+ * sessions are not seen. Deleted keys stay in the Bloom filter; like false positives, they only cost a query.
+ *
+ * Once more keys are added than the Bloom filter is sized for, it is no longer trusted: every key missing from the
+ * cached ids is looked up until the DAO enables a new, larger cache. A warning is logged when that happens, so
+ * the filter is never rebuilt from the store in the middle of a write.
+ */
+public class NaturalKeyCache {
+    private static final Logger LOG = LogManager.getLogger(NaturalKeyCache.class);
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final char SEPARATOR = '\u0000';
+
+    private final long expectedInsertions;
+    private final BloomFilter<CharSequence> filter;
+    private final Map<String, Long> ids;
+    private final Map<Long, String> keys = Maps.newHashMap();
+    private long insertions;
+
+    private long definiteMisses;
+    private long hits;
+    private long queries;
+
+    /**
+     * @Param expectedInsertions the number of keys the Bloom filter is sized for, including the stored ones.
+     * @Param maximumSize the number of key to id mappings kept.
+     */
+    NaturalKeyCache(long expectedInsertions, int maximumSize) {
+        this.expectedInsertions = Math.max(expectedInsertions, 1);
+        this.filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), this.expectedInsertions,
+                FALSE_POSITIVE_RATE);
+        this.ids = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() > maximumSize) {
+                    keys.remove(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Adds the keys and ids of every album, musician and musical instrument in the store.
+     */
+    synchronized void load(DAO dao) {
+        Projection albums = dao.project(Album.class, "albumName", "recordNumber", "releaseYear");
+        for (int i = 0; i < albums.size(); i++) {
+            put(albumKey(albums.strings("albumName")[i], albums.strings("recordNumber")[i],
+                    albums.ints("releaseYear")[i]), albums.ids()[i]);
+        }
+        Projection musicians = dao.project(Musician.class, "name");
+        for (int i = 0; i < musicians.size(); i++) {
+            put(nameKey(Musician.class, musicians.strings("name")[i]), musicians.ids()[i]);
+        }
+        Projection instruments = dao.project(MusicalInstrument.class, "name");
+        for (int i = 0; i < instruments.size(); i++) {
+            put(nameKey(MusicalInstrument.class, instruments.strings("name")[i]), instruments.ids()[i]);
+        }
+    }
+
+    /**
+     * Whether no entity with the key was ever stored, in which case looking it up can be skipped. Always false
+     * once the Bloom filter is saturated.
+     */
+    synchronized boolean isDefinitelyNew(String key) {
+        if (isSaturated() || filter.mightContain(key)) {
+            return false;
+        }
+        definiteMisses++;
+        return true;
+    }
+
+    /**
+     * The id stored for the key, or null when it has to be looked up.
+     */
+    synchronized Long cachedId(String key) {
+        Long id = ids.get(key);
+        if (id != null) {
+            hits++;
+        }
+        return id;
+    }
+
+    /**
+     * Records the result of a lookup that went to the store; the id is null when nothing was found.
+     */
+    synchronized void queried(String key, Long id) {
+        queries++;
+        if (id != null) {
+            put(key, id);
+        }
+    }
+
+    /**
+     * Records an entity that was saved with its id. A new key for an id replaces its previous key.
+     */
+    synchronized void saved(Entity entity) {
+        String key = keyOf(entity);
+        if (key != null && entity.getId() != null) {
+            put(key, entity.getId());
+        }
+    }
+
+    synchronized void deleted(Entity entity) {
+        String key = entity.getId() == null ? keyOf(entity) : keys.remove(entity.getId());
+        if (key != null) {
+            ids.remove(key);
+        }
+    }
+
+    /**
+     * Whether more keys were added than the Bloom filter is sized for, so its false positive rate has degraded.
+     */
+    public synchronized boolean isSaturated() {
+        return insertions > expectedInsertions;
+    }
+
+    /**
+     * The number of keys the Bloom filter is sized for.
+     */
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    /**
+     * Number of lookups skipped because the key was definitely new.
+     */
+    public synchronized long getDefiniteMisses() {
+        return definiteMisses;
+    }
+
+    /**
+     * Number of lookups answered from the cached ids.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of lookups that went to the store.
+     */
+    public synchronized long getQueries() {
+        return queries;
+    }
+
+    public synchronized int size() {
+        return ids.size();
+    }
+
+    private void put(String key, long id) {
+        if (key == null) {
+            return;
+        }
+        String previous = keys.put(id, key);
+        if (previous != null && !previous.equals(key)) {
+            ids.remove(previous);
+        }
+        Long replaced = ids.put(key, id);
+        if (replaced != null && replaced != id) {
+            keys.remove(replaced);
+        }
+        if (filter.put(key) && ++insertions == expectedInsertions + 1) {
+            LOG.warn("Natural key cache saturated after {} keys; lookups of new keys go to the store until the key "
+                    + "cache is enabled again with a larger estimate", expectedInsertions);
+        }
+    }
+
+    /**
+     * The natural key of an album, musician or musical instrument, or null for other entities and incomplete keys.
+     */
+    static String keyOf(Entity entity) {
+        if (entity instanceof Album) {
+            Album album = (Album) entity;
+            return albumKey(album.getAlbumName(), album.getRecordNumber(), album.getReleaseYear());
+        } else if (entity instanceof Musician) {
+            return nameKey(Musician.class, ((Musician) entity).getName());
+        } else if (entity instanceof MusicalInstrument) {
+            return nameKey(MusicalInstrument.class, ((MusicalInstrument) entity).getName());
+        }
+        return null;
+    }
+
+    private static String albumKey(String albumName, String recordNumber, int releaseYear) {
+        if (albumName == null || recordNumber == null) {
+            return null;
+        }
+        return "Album" + SEPARATOR + albumName + SEPARATOR + recordNumber + SEPARATOR + releaseYear;
+    }
+
+    private static String nameKey(Class<? extends Entity> clazz, String name) {
+        return name == null ? null : clazz.getSimpleName() + SEPARATOR + name;
+    }
+}
@@ -1,29 +1,89 @@
 package allaboutecm.dataaccess.neo4j;
 
-import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.AggregatingDAO;
+import allaboutecm.dataaccess.BatchTiming;
+import allaboutecm.dataaccess.Edges;
+import allaboutecm.dataaccess.Projection;
+import allaboutecm.dataaccess.Scored;
 import allaboutecm.model.Album;
 import allaboutecm.model.Entity;
 import allaboutecm.model.MusicalInstrument;
 import allaboutecm.model.Musician;
 import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import org.neo4j.ogm.annotation.NodeEntity;
+import org.neo4j.ogm.annotation.Property;
+import org.neo4j.ogm.annotation.Relationship;
+import org.neo4j.ogm.annotation.Transient;
+import org.neo4j.ogm.annotation.typeconversion.Convert;
 import org.neo4j.ogm.cypher.Filter;
 import org.neo4j.ogm.cypher.Filters;
+import org.neo4j.ogm.model.Result;
 import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
 import org.neo4j.ogm.transaction.Transaction;
+import org.neo4j.ogm.typeconversion.AttributeConverter;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.commons.lang3.Validate.validState;
 import static org.neo4j.ogm.cypher.ComparisonOperator.EQUALS;
 
-public class Neo4jDAO implements DAO {
+public class Neo4jDAO implements AggregatingDAO {
     private static final int DEPTH_LIST = 0;
     private static final int DEPTH_ENTITY = 1;
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_KEY_CACHE_SIZE = 100_000;
+
+    /**
+     * The fields that identify an entity: findExistingEntity filters on them and {@link SchemaManager} indexes them.
+     */
+    static final Map<Class<?>, List<String>> NATURAL_KEYS = ImmutableMap.of(
+            Album.class, ImmutableList.of("albumName", "recordNumber", "releaseYear"),
+            Musician.class, ImmutableList.of("name"),
+            MusicalInstrument.class, ImmutableList.of("name"));
 
     private Session session;
+    private SessionFactory sessionFactory;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private Consumer<BatchTiming> batchListener = timing -> { };
+    private NaturalKeyCache keyCache;
 
     public Neo4jDAO(Session session) {
         this.session = session;
     }
 
+    /**
+     * Opens the DAO's session from the factory, which {@link #stream(Class)} also opens its own sessions from.
+     */
+    public Neo4jDAO(SessionFactory sessionFactory) {
+        this(sessionFactory.openSession());
+        this.sessionFactory = sessionFactory;
+    }
+
     @Override
     public <T extends Entity> T load(Class<T> clazz, Long id) {
         return session.load(clazz, id, DEPTH_ENTITY);
@@ -35,17 +95,237 @@ public class Neo4jDAO implements DAO {
      */
     @Override
     public <T extends Entity> T createOrUpdate(T entity) {
-        Class clazz = entity.getClass();
-
-        T existingEntity = findExistingEntity(entity, clazz);
-        if (null != existingEntity) {
-            entity.setId(existingEntity.getId());
+        Long existingId = findExistingId(entity);
+        if (null != existingId) {
+            entity.setId(existingId);
         }
         Transaction tx = session.beginTransaction();
         session.save(entity, DEPTH_ENTITY);
         tx.commit();
+        cacheSaved(entity);
+        return entity;
+
+    }
+
+    /**
+     * Create or update the properties of an album, musician or musical instrument in one round trip.
+     *
+     * A single MERGE on the natural key finds or creates the node, sets the entity's properties and returns its
+     * id, instead of a lookup followed by a save. Relationships are not written, so save entities whose
+     * relationships changed with {@link #createOrUpdate(Entity)}; other entity classes are passed to it. Two
+     * concurrent upserts of the same new key only end up on one node when the key has a uniqueness constraint.
+     *
+     * @Param entity the entity that you want to create or update.
+     */
+    @Override
+    public <T extends Entity> T upsert(T entity) {
+        List<String> naturalKey = NATURAL_KEYS.get(entity.getClass());
+        if (naturalKey == null) {
+            return createOrUpdate(entity);
+        }
+        Map<String, Object> properties = properties(entity);
+        Map<String, Object> key = Maps.newHashMap();
+        StringBuilder cypher = new StringBuilder("MERGE (n:`").append(label(entity.getClass())).append("` {");
+        for (String name : naturalKey) {
+            if (properties.get(name) == null) {
+                throw new IllegalArgumentException("The natural key " + name + " must not be null");
+            }
+            key.put(name, properties.get(name));
+            cypher.append(key.size() > 1 ? ", " : "")
+                    .append('`').append(name).append("`: $key.`").append(name).append('`');
+        }
+        cypher.append("}) SET n += $properties RETURN id(n) AS id");
+
+        Result result = session.query(cypher.toString(), ImmutableMap.of("key", key, "properties", properties));
+        entity.setId(((Number) result.queryResults().iterator().next().get("id")).longValue());
+        cacheSaved(entity);
         return entity;
+    }
+
+    /**
+     * The node properties of an entity as OGM writes them, converted where the field has a converter.
+     * Missing values are kept as nulls so that they are removed from the node.
+     */
+    static Map<String, Object> properties(Entity entity) {
+        Map<String, Object> properties = Maps.newHashMap();
+        for (Field field : propertyFields(entity.getClass())) {
+            try {
+                field.setAccessible(true);
+                Object value = field.get(entity);
+                Convert convert = field.getAnnotation(Convert.class);
+                if (convert != null && value != null) {
+                    AttributeConverter converter =
+                            (AttributeConverter) convert.value().getDeclaredConstructor().newInstance();
+                    value = converter.toGraphProperty(value);
+                }
+                properties.put(propertyName(field), value);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot read " + field, e);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * The fields of a class that OGM maps to node properties, in declaration order.
+     */
+    static List<Field> propertyFields(Class<?> clazz) {
+        List<Field> fields = Lists.newArrayList();
+        for (Field field : clazz.getDeclaredFields()) {
+            if (!isMapped(field) || field.isAnnotationPresent(Relationship.class) || refersToEntities(field)) {
+                continue;
+            }
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    static boolean isMapped(Field field) {
+        return !Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())
+                && !field.isAnnotationPresent(Transient.class);
+    }
+
+    static boolean refersToEntities(Field field) {
+        if (Entity.class.isAssignableFrom(field.getType())) {
+            return true;
+        }
+        if (Collection.class.isAssignableFrom(field.getType()) && field.getGenericType() instanceof ParameterizedType) {
+            Type element = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+            return element instanceof Class && Entity.class.isAssignableFrom((Class<?>) element);
+        }
+        return false;
+    }
+
+    /**
+     * Puts a {@link NaturalKeyCache} in front of the lookups of existing albums, musicians and musical instruments,
+     * seeded with the keys in the store. Its Bloom filter is sized for those keys plus the expected new ones; when
+     * more are added it stops skipping lookups, and calling this again with a larger estimate resizes it. The cache
+     * only follows the writes and deletes of this DAO, so disable it while the store is changed through other
+     * sessions.
+     *
+     * @Param expectedNewEntities the number of new albums, musicians and musical instruments expected to be saved.
+     */
+    public NaturalKeyCache enableKeyCache(long expectedNewEntities) {
+        Result result = session.query("MATCH (n) WHERE n:Album OR n:Musician OR n:MusicalInstrument " +
+                "RETURN count(n) AS stored", Collections.emptyMap(), true);
+        long stored = ((Number) result.queryResults().iterator().next().get("stored")).longValue();
+        keyCache = new NaturalKeyCache(stored + expectedNewEntities, DEFAULT_KEY_CACHE_SIZE);
+        keyCache.load(this);
+        return keyCache;
+    }
+
+    public void disableKeyCache() {
+        keyCache = null;
+    }
+
+    /**
+     * The natural key cache in use, or null when it is disabled.
+     */
+    public NaturalKeyCache getKeyCache() {
+        return keyCache;
+    }
+
+    /**
+     * The id of the stored entity with the same natural key, going to the store only when the key cache cannot
+     * tell.
+     */
+    private Long findExistingId(Entity entity) {
+        String key = keyCache == null ? null : NaturalKeyCache.keyOf(entity);
+        if (key != null) {
+            if (keyCache.isDefinitelyNew(key)) {
+                return null;
+            }
+            Long id = keyCache.cachedId(key);
+            if (id != null) {
+                return id;
+            }
+        }
+        Entity existing = findExistingEntity(entity, entity.getClass());
+        Long id = existing == null ? null : existing.getId();
+        if (key != null) {
+            keyCache.queried(key, id);
+        }
+        return id;
+    }
+
+    /**
+     * Records a saved entity and the entities it refers to directly, which were saved along with it.
+     */
+    private void cacheSaved(Entity entity) {
+        if (keyCache == null) {
+            return;
+        }
+        keyCache.saved(entity);
+        for (Field field : entity.getClass().getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && refersToEntities(field)) {
+                Object value = Projection.read(field, entity);
+                Collection<?> related = value instanceof Collection ? (Collection<?>) value
+                        : value == null ? Collections.emptyList() : Collections.singletonList(value);
+                for (Object end : related) {
+                    keyCache.saved((Entity) end);
+                }
+            }
+        }
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
 
+    /**
+     * Sets the number of entities written per transaction by {@link #createOrUpdateAll(Collection)}.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Receives the timing of every batch written by {@link #createOrUpdateAll(Collection)}, after its commit.
+     */
+    public void setBatchListener(Consumer<BatchTiming> batchListener) {
+        notNull(batchListener);
+        this.batchListener = batchListener;
+    }
+
+    /**
+     * Create or update entities batch by batch, each batch in its own transaction.
+     *
+     * The existing albums, musicians and musical instruments of a batch are found with one UNWIND query per class
+     * instead of one query per entity. An entity equal to one saved earlier in the same batch is saved onto the
+     * same node.
+     *
+     * @Param entities the entities that you want to create or update.
+     */
+    @Override
+    public <T extends Entity> List<T> createOrUpdateAll(Collection<T> entities) {
+        List<T> list = Lists.newArrayList(entities);
+        for (int from = 0, batch = 0; from < list.size(); from += batchSize, batch++) {
+            List<T> part = list.subList(from, Math.min(from + batchSize, list.size()));
+            long start = System.nanoTime();
+            long lookupNanos;
+            try (Transaction tx = session.beginTransaction()) {
+                findExistingEntities(part);
+                lookupNanos = System.nanoTime() - start;
+                Map<Entity, Long> savedInBatch = Maps.newHashMap();
+                for (T entity : part) {
+                    if (entity.getId() == null && savedInBatch.containsKey(entity)) {
+                        entity.setId(savedInBatch.get(entity));
+                    }
+                    session.save(entity, DEPTH_ENTITY);
+                    savedInBatch.putIfAbsent(entity, entity.getId());
+                }
+                tx.commit();
+            }
+            for (T entity : part) {
+                cacheSaved(entity);
+            }
+            batchListener.accept(new BatchTiming(batch, part.size(), lookupNanos,
+                    System.nanoTime() - start - lookupNanos));
+        }
+        return list;
     }
 
     /**
@@ -59,6 +339,167 @@ public class Neo4jDAO implements DAO {
 
 
     }
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Sets the number of entities fetched per page by {@link #stream(Class)}.
+     */
+    public void setPageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("page size must be positive");
+        }
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Only a DAO created from a {@link SessionFactory} streams through a session of its own. The session of a DAO
+     * created from a session keeps every entity loaded through it, and the caller's entities with them, so it is
+     * never cleared behind the caller's back.
+     */
+    @Override
+    public boolean streamsInPages() {
+        return sessionFactory != null;
+    }
+
+    /**
+     * Streams the entities of a class page by page, in database id order. Pages follow an id cursor rather than
+     * an offset, so entities are neither skipped nor repeated when the store has no order of its own.
+     *
+     * A DAO created from a {@link SessionFactory} streams through a session of its own, cleared before each page,
+     * so only one page of entities is held at a time and the DAO's session is left alone. A DAO created from a
+     * session streams through that session, which keeps every streamed entity: see {@link #streamsInPages()}.
+     */
+    @Override
+    public <T extends Entity> Stream<T> stream(Class<T> clazz) {
+        Session pages = sessionFactory == null ? session : sessionFactory.openSession();
+        String cypher = "MATCH (n:`" + label(clazz) + "`) WHERE id(n) > $last " +
+                "RETURN id(n) AS id ORDER BY id LIMIT $limit";
+        Iterator<T> iterator = new Iterator<T>() {
+            private long last = -1;
+            private boolean lastPage;
+            private Iterator<T> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && !lastPage) {
+                    List<Long> ids = Lists.newArrayList();
+                    for (Map<String, Object> row : pages.query(cypher,
+                            ImmutableMap.of("last", last, "limit", pageSize), true).queryResults()) {
+                        ids.add(((Number) row.get("id")).longValue());
+                    }
+                    lastPage = ids.size() < pageSize;
+                    if (ids.isEmpty()) {
+                        break;
+                    }
+                    last = ids.get(ids.size() - 1);
+                    if (pages != session) {
+                        pages.clear();
+                    }
+                    List<T> loaded = Lists.newArrayList(pages.loadAll(clazz, ids, DEPTH_ENTITY));
+                    loaded.sort(Comparator.comparing(Entity::getId));
+                    current = loaded.iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Reads the properties straight from the query rows, so no entity is mapped or kept by the session.
+     */
+    @Override
+    public <T extends Entity> Projection project(Class<T> clazz, String... properties) {
+        Projection.Builder builder = Projection.builder(clazz, properties);
+        Field[] fields = builder.getFields();
+        StringBuilder cypher = new StringBuilder("MATCH (n:`").append(label(clazz)).append("`) RETURN id(n) AS id");
+        for (int i = 0; i < fields.length; i++) {
+            cypher.append(", n.`").append(propertyName(fields[i])).append("` AS c").append(i);
+        }
+        Object[] values = new Object[fields.length];
+        for (Map<String, Object> row : session.query(cypher.toString(), Collections.emptyMap(), true).queryResults()) {
+            for (int i = 0; i < fields.length; i++) {
+                values[i] = row.get("c" + i);
+            }
+            builder.add(((Number) row.get("id")).longValue(), values);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public <T extends Entity> Edges projectEdges(Class<T> clazz, String relationship) {
+        String cypher = "MATCH (n:`" + label(clazz) + "`)" + relationshipPattern(Projection.field(clazz, relationship))
+                + "(t) RETURN id(n) AS source, id(t) AS target";
+
+        long[] sources = new long[16];
+        long[] targets = new long[16];
+        int size = 0;
+        for (Map<String, Object> row : session.query(cypher, Collections.emptyMap(), true).queryResults()) {
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+            }
+            sources[size] = ((Number) row.get("source")).longValue();
+            targets[size] = ((Number) row.get("target")).longValue();
+            size++;
+        }
+        return new Edges(Arrays.copyOf(sources, size), Arrays.copyOf(targets, size));
+    }
+
+    /**
+     * Adds the relationships with one MERGE per pair of ids, batch by batch, without loading or saving the
+     * entities: relationships stored before are kept even when the entities do not hold them. Saving an entity
+     * afterwards writes its whole relationship field again, which drops the relationships it does not hold.
+     */
+    @Override
+    public <T extends Entity, R extends Entity> void addRelated(String relationship, Multimap<T, R> related) {
+        Map<Class<?>, List<Map<String, Object>>> pairs = Maps.newLinkedHashMap();
+        for (Map.Entry<T, R> entry : related.entries()) {
+            validState(entry.getKey().getId() != null && entry.getValue().getId() != null,
+                    "Entities must be saved before they are related");
+            pairs.computeIfAbsent(entry.getKey().getClass(), c -> Lists.newArrayList())
+                    .add(ImmutableMap.of("source", entry.getKey().getId(), "target", entry.getValue().getId()));
+        }
+        for (Map.Entry<Class<?>, List<Map<String, Object>>> entry : pairs.entrySet()) {
+            String cypher = "UNWIND $pairs AS pair MATCH (n) WHERE id(n) = pair.source "
+                    + "MATCH (t) WHERE id(t) = pair.target MERGE (n)"
+                    + relationshipPattern(Projection.field(entry.getKey(), relationship)) + "(t)";
+            for (List<Map<String, Object>> batch : Lists.partition(entry.getValue(), batchSize)) {
+                session.query(cypher, ImmutableMap.of("pairs", batch));
+            }
+        }
+    }
+
+    /**
+     * The Cypher pattern of a relationship field, such as {@code -[:`albums`]->}, between its two nodes.
+     */
+    private static String relationshipPattern(Field field) {
+        Relationship annotation = field.getAnnotation(Relationship.class);
+        String type = annotation == null || annotation.type().isEmpty() ? field.getName() : annotation.type();
+        String direction = annotation == null ? Relationship.OUTGOING : annotation.direction();
+        return String.format(Relationship.INCOMING.equals(direction) ? "<-[:`%s`]-" : "-[:`%s`]->", type);
+    }
+
+    static String label(Class<?> clazz) {
+        NodeEntity nodeEntity = clazz.getAnnotation(NodeEntity.class);
+        return nodeEntity == null || nodeEntity.label().isEmpty() ? clazz.getSimpleName() : nodeEntity.label();
+    }
+
+    static String propertyName(Field field) {
+        Property property = field.getAnnotation(Property.class);
+        return property == null || property.name().isEmpty() ? field.getName() : property.name();
+    }
+
     /**
      * Delete the entity.
      *
@@ -66,12 +507,14 @@ public class Neo4jDAO implements DAO {
      */
     @Override
     public <T extends Entity> void delete(T entity) {
-        Class clazz = entity.getClass();
-        T exist = findExistingEntity(entity,clazz);
+        Long exist = findExistingId(entity);
         if(exist == null) {
             throw new IllegalArgumentException("The entity does not exist");
         } else {
             session.delete(entity);
+            if (keyCache != null) {
+                keyCache.deleted(entity);
+            }
         }
     }
     /**
@@ -107,6 +550,178 @@ public class Neo4jDAO implements DAO {
         }
     }
 
+    @Override
+    public boolean supportsAggregation() {
+        return true;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        return session.loadAll(clazz, ids, DEPTH_LIST);
+    }
+
+    @Override
+    public List<Scored> albumCountsPerMusician(int startYear, int endYear, int limit) {
+        return scored("MATCH (m:Musician)-[:albums]->(a:Album) " +
+                        "WHERE a.releaseYear >= $startYear AND a.releaseYear <= $endYear " +
+                        "WITH m, count(DISTINCT a) AS score " +
+                        "RETURN id(m) AS key, score ORDER BY score DESC, m.name LIMIT $limit",
+                ImmutableMap.of("startYear", startYear, "endYear", endYear, "limit", limit));
+    }
+
+    @Override
+    public List<Scored> collaboratorCounts(int limit) {
+        // A musician saved with their albums only stores the albums edges, not the albums' lineups,
+        // so co-musicians are reached through either relationship. As in the entity scan, the musician is
+        // counted when featured on their own albums and the count is reduced by one, so a musician without
+        // collaborators scores -1. The albums edge the match starts from cannot be followed back, so the
+        // musician is only reached again through a featuredMusicians edge.
+        return scored("MATCH (m:Musician) " +
+                        "OPTIONAL MATCH (m)-[:albums]->(:Album)-[:featuredMusicians|albums]-(o:Musician) " +
+                        "WITH m, count(DISTINCT o.name) - 1 AS score " +
+                        "RETURN id(m) AS key, score ORDER BY score DESC, m.name LIMIT $limit",
+                ImmutableMap.of("limit", limit));
+    }
+
+    @Override
+    public List<Scored> albumCountsPerYear(int limit) {
+        return scored("MATCH (a:Album) " +
+                        "WITH a.releaseYear AS key, count(a) AS score " +
+                        "RETURN key, score ORDER BY score DESC, key LIMIT $limit",
+                ImmutableMap.of("limit", limit));
+    }
+
+    @Override
+    public List<Scored> instrumentCountsPerMusician(int limit) {
+        return scored("MATCH (mi:MusicianInstrument)-[:musician]->(m:Musician) " +
+                        "OPTIONAL MATCH (mi)-[:musicalInstruments]->(i:MusicalInstrument) " +
+                        "WITH m.name AS name, count(DISTINCT i.name) AS score, min(id(m)) AS key " +
+                        "RETURN key, score ORDER BY score DESC, name LIMIT $limit",
+                ImmutableMap.of("limit", limit));
+    }
+
+    @Override
+    public List<Scored> instrumentFrequency(int limit) {
+        // Instruments saved along with different musician instruments may be separate nodes with the same name.
+        return scored("MATCH (:MusicianInstrument)-[:musicalInstruments]->(i:MusicalInstrument) " +
+                        "WITH i.name AS name, count(*) AS score, min(id(i)) AS key " +
+                        "RETURN key, score ORDER BY score DESC, name LIMIT $limit",
+                ImmutableMap.of("limit", limit));
+    }
+
+    @Override
+    public List<Scored> similarAlbums(List<String> lineup, int limit) {
+        return scored("MATCH (a:Album) " +
+                        "OPTIONAL MATCH (a)-[:featuredMusicians]->(m:Musician) " +
+                        "WITH a, collect(DISTINCT m.name) AS names " +
+                        "WITH a, size([n IN $lineup WHERE n IN names]) AS same " +
+                        "RETURN id(a) AS key, toFloat(same) / $size AS score " +
+                        "ORDER BY score DESC, a.releaseYear DESC, a.recordNumber, a.albumName LIMIT $limit",
+                ImmutableMap.of("lineup", lineup, "size", Math.max(lineup.size(), 1), "limit", limit));
+    }
+
+    private List<Scored> scored(String cypher, Map<String, ?> parameters) {
+        Result result = session.query(cypher, parameters, true);
+        List<Scored> scored = Lists.newArrayList();
+        for (Map<String, Object> row : result.queryResults()) {
+            scored.add(new Scored(((Number) row.get("key")).longValue(), ((Number) row.get("score")).doubleValue()));
+        }
+        return scored;
+    }
+
+    /**
+     * Copies the ids of the existing entities onto a batch, looking up the natural keys of each class at once.
+     * Classes without a natural key are looked up one by one like in {@link #createOrUpdate(Entity)}.
+     */
+    private void findExistingEntities(List<? extends Entity> batch) {
+        List<Map<String, Object>> albums = Lists.newArrayList();
+        List<Map<String, Object>> musicians = Lists.newArrayList();
+        List<Map<String, Object>> instruments = Lists.newArrayList();
+        for (int row = 0; row < batch.size(); row++) {
+            Entity entity = batch.get(row);
+            String cacheKey = keyCache == null ? null : NaturalKeyCache.keyOf(entity);
+            if (cacheKey != null) {
+                if (keyCache.isDefinitelyNew(cacheKey)) {
+                    continue;
+                }
+                Long cached = keyCache.cachedId(cacheKey);
+                if (cached != null) {
+                    entity.setId(cached);
+                    continue;
+                }
+            }
+            Map<String, Object> key = Maps.newHashMap();
+            key.put("row", row);
+            if (entity.getClass().equals(Album.class)) {
+                Album album = (Album) entity;
+                key.put("albumName", album.getAlbumName());
+                key.put("recordNumber", album.getRecordNumber());
+                key.put("releaseYear", album.getReleaseYear());
+                albums.add(key);
+            } else if (entity.getClass().equals(Musician.class)) {
+                key.put("name", ((Musician) entity).getName());
+                musicians.add(key);
+            } else if (entity.getClass().equals(MusicalInstrument.class)) {
+                key.put("name", ((MusicalInstrument) entity).getName());
+                instruments.add(key);
+            } else {
+                Long existing = findExistingId(entity);
+                if (existing != null) {
+                    entity.setId(existing);
+                }
+            }
+        }
+        findExistingIds(batch, albums, "MATCH (n:Album) WHERE n.albumName = key.albumName " +
+                "AND n.recordNumber = key.recordNumber AND n.releaseYear = key.releaseYear");
+        findExistingIds(batch, musicians, "MATCH (n:Musician) WHERE n.name = key.name");
+        findExistingIds(batch, instruments, "MATCH (n:MusicalInstrument) WHERE n.name = key.name");
+    }
+
+    private void findExistingIds(List<? extends Entity> batch, List<Map<String, Object>> keys, String match) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        Result result = session.query("UNWIND $keys AS key " + match + " RETURN key.row AS row, min(id(n)) AS id",
+                ImmutableMap.of("keys", keys));
+        Map<Integer, Long> found = Maps.newHashMap();
+        for (Map<String, Object> row : result.queryResults()) {
+            found.put(((Number) row.get("row")).intValue(), ((Number) row.get("id")).longValue());
+        }
+        for (Map<String, Object> key : keys) {
+            int row = (Integer) key.get("row");
+            Long id = found.get(row);
+            if (id != null) {
+                batch.get(row).setId(id);
+            }
+            if (keyCache != null) {
+                keyCache.queried(NaturalKeyCache.keyOf(batch.get(row)), id);
+            }
+        }
+    }
+
+    /**
+     * The musician instruments of the same saved musician with the same instrument names, which is what
+     * MusicianInstrument equality compares. An unsaved musician has none.
+     */
+    private Collection<MusicianInstrument> findMusicianInstruments(MusicianInstrument musicianInstrument) {
+        Musician musician = musicianInstrument.getMusician();
+        if (musician == null || musician.getId() == null) {
+            return Collections.emptyList();
+        }
+        Set<String> names = Sets.newHashSet();
+        if (musicianInstrument.getMusicalInstruments() != null) {
+            for (MusicalInstrument instrument : musicianInstrument.getMusicalInstruments()) {
+                names.add(instrument.getName());
+            }
+        }
+        String cypher = "MATCH (n:MusicianInstrument)-[:musician]->(m:Musician) WHERE id(m) = $musician "
+                + "OPTIONAL MATCH (n)-[:musicalInstruments]->(i:MusicalInstrument) "
+                + "WITH n, collect(DISTINCT i.name) AS names "
+                + "WHERE size(names) = size($names) AND all(name IN names WHERE name IN $names) RETURN n";
+        return Lists.newArrayList(session.query(MusicianInstrument.class, cypher,
+                ImmutableMap.of("musician", musician.getId(), "names", Lists.newArrayList(names))));
+    }
+
     /**
      * Returns the Entity by Entity and class.
      *
@@ -135,10 +750,7 @@ public class Neo4jDAO implements DAO {
             collection = session.loadAll(MusicalInstrument.class, filters);
         } else if (clazz.equals(MusicianInstrument.class)) {
             // MusicianInstrument
-            MusicianInstrument musicianInstrument = (MusicianInstrument) entity;
-            filters.add(new Filter("musician", EQUALS, musicianInstrument.getMusician()))
-                    .and(new Filter("musicalInstruments", EQUALS, musicianInstrument.getMusicalInstruments()));
-            collection = session.loadAll(MusicianInstrument.class, filters);
+            collection = findMusicianInstruments((MusicianInstrument) entity);
         }
         Entity existingEntity = null;
         if (!collection.isEmpty()) {
@@ -0,0 +1,319 @@
+package allaboutecm.dataaccess.neo4j;
+
+import allaboutecm.dataaccess.CsvImporter;
+import allaboutecm.dataaccess.ImportReport;
+import allaboutecm.model.Entity;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.neo4j.ogm.annotation.Relationship;
+import org.neo4j.ogm.annotation.typeconversion.Convert;
+import org.neo4j.ogm.utils.RelationshipUtils;
+import org.neo4j.tooling.ImportTool;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.commons.lang3.Validate.validState;
+
+/**
+ * Builds a new embedded store offline with the Neo4j import tool, which writes the store files directly instead of
+ * committing transactions.
+ *
+ * Entities are written to CSV files following their OGM mapping: one node file per label with the mapped
+ * properties, converted like OGM converts them, and one relationship file per relationship type, in the direction
+ * of the relationship field. Adding an entity adds the entities it refers to, and every entity is written once per
+ * natural key. {@link #build(Path)} then imports the files into a new store directory, which Neo4jDAO opens through
+ * an embedded configuration with the directory's URI. The store has no indexes: open it through
+ * {@link SchemaManager#start} to create them.
+ *
+ * A builder is not thread-safe, and is used up by its build.
+ */
+public class OfflineStoreBuilder {
+    private static final char ARRAY_DELIMITER = '\u001F';
+    private static final Joiner ARRAY = Joiner.on(ARRAY_DELIMITER).useForNull("");
+
+    private final Path directory;
+    private final Map<Class<?>, CSVPrinter> nodes = Maps.newLinkedHashMap();
+    private final Map<String, CSVPrinter> relationships = Maps.newLinkedHashMap();
+    private final Map<String, Set<Long>> edges = Maps.newHashMap();
+    private final Map<Entity, Long> ids = Maps.newHashMap();
+    private String maxMemory;
+    private boolean built;
+
+    /**
+     * @Param directory where the CSV files are written; it is created when missing.
+     */
+    public OfflineStoreBuilder(Path directory) throws IOException {
+        notNull(directory);
+        this.directory = Files.createDirectories(directory);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public String getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Sets the memory the import tool may use off the heap, such as {@code 2G} or {@code 50%} of the free memory;
+     * null leaves it to the tool.
+     */
+    public void setMaxMemory(String maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Number of distinct entities written.
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Adds an entity, the entities it refers to and the relationships between them.
+     *
+     * The relationships of an entity are written when it is added or first reached, and again when an entity added
+     * later refers to it, so an entity whose relationships grow between two additions is written with all of them.
+     */
+    public void add(Entity entity) throws IOException {
+        notNull(entity);
+        validState(!built, "The store has already been built");
+        Deque<Entity> pending = new ArrayDeque<>();
+        Set<Entity> revisited = Sets.newIdentityHashSet();
+        if (id(entity) == null) {
+            write(entity);
+        }
+        pending.add(entity);
+        while (!pending.isEmpty()) {
+            Entity current = pending.poll();
+            boolean expand = current == entity || !revisited.contains(current);
+            for (Field field : relationshipFields(current.getClass())) {
+                for (Entity related : related(field, current)) {
+                    boolean known = id(related) != null;
+                    if (!known) {
+                        write(related);
+                        pending.add(related);
+                    } else if (expand && current != related && revisited.add(related)) {
+                        pending.add(related);
+                    }
+                    link(field, current, related);
+                }
+            }
+            revisited.add(current);
+        }
+    }
+
+    public void addAll(Iterable<? extends Entity> entities) throws IOException {
+        for (Entity entity : entities) {
+            add(entity);
+        }
+    }
+
+    /**
+     * Adds the albums of CSV exports, read, validated and de-duplicated the way {@link CsvImporter} does.
+     */
+    public ImportReport addCsvFiles(List<Path> files) throws IOException {
+        return new CsvImporter(batch -> {
+            try {
+                addAll(batch);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).importFiles(files);
+    }
+
+    /**
+     * Imports the written files into a new store directory and returns it.
+     *
+     * @Param store the directory of the store, which must be missing or empty.
+     */
+    public Path build(Path store) throws IOException {
+        notNull(store);
+        validState(!built, "The store has already been built");
+        validState(!nodes.isEmpty(), "Nothing was added to the store");
+        if (Files.isDirectory(store)) {
+            try (Stream<Path> files = Files.list(store)) {
+                if (files.findAny().isPresent()) {
+                    throw new IllegalArgumentException(store + " is not empty");
+                }
+            }
+        }
+        built = true;
+        for (CSVPrinter printer : nodes.values()) {
+            printer.close();
+        }
+        for (CSVPrinter printer : relationships.values()) {
+            printer.close();
+        }
+
+        List<String> arguments = Lists.newArrayList("--into", store.toString(), "--id-type", "INTEGER",
+                "--array-delimiter", String.valueOf(ARRAY_DELIMITER), "--multiline-fields", "true",
+                "--ignore-empty-strings", "true");
+        for (Class<?> clazz : nodes.keySet()) {
+            arguments.add("--nodes:" + Neo4jDAO.label(clazz));
+            arguments.add(nodeFile(clazz).toString());
+        }
+        for (String type : relationships.keySet()) {
+            arguments.add("--relationships:" + type);
+            arguments.add(relationshipFile(type).toString());
+        }
+        if (maxMemory != null) {
+            arguments.add("--max-memory");
+            arguments.add(maxMemory);
+        }
+        // The import tool reads key presses from the standard input, which is not its own to consume.
+        InputStream in = System.in;
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+        try {
+            ImportTool.main(arguments.toArray(new String[0]), false);
+        } finally {
+            System.setIn(in);
+        }
+        return store;
+    }
+
+    private Long id(Entity entity) {
+        return ids.get(entity);
+    }
+
+    private void write(Entity entity) throws IOException {
+        long id = ids.size();
+        ids.put(entity, id);
+        List<Field> fields = Neo4jDAO.propertyFields(entity.getClass());
+        CSVPrinter printer = nodes.get(entity.getClass());
+        if (printer == null) {
+            List<String> header = Lists.newArrayList(":ID");
+            for (Field field : fields) {
+                header.add(Neo4jDAO.propertyName(field) + type(field));
+            }
+            printer = printer(nodeFile(entity.getClass()), header);
+            nodes.put(entity.getClass(), printer);
+        }
+        Map<String, Object> properties = Neo4jDAO.properties(entity);
+        List<Object> row = Lists.newArrayList(id);
+        for (Field field : fields) {
+            Object value = properties.get(Neo4jDAO.propertyName(field));
+            row.add(value instanceof Collection ? ARRAY.join((Collection<?>) value)
+                    : value instanceof Object[] ? ARRAY.join((Object[]) value) : value);
+        }
+        printer.printRecord(row);
+    }
+
+    /**
+     * Writes a relationship of an entity once, from the start node to the end node of its direction.
+     */
+    private void link(Field field, Entity entity, Entity related) throws IOException {
+        Relationship relationship = field.getAnnotation(Relationship.class);
+        String type = relationshipType(field);
+        boolean incoming = relationship != null && Relationship.INCOMING.equals(relationship.direction());
+        long start = incoming ? id(related) : id(entity);
+        long end = incoming ? id(entity) : id(related);
+        if (!edges.computeIfAbsent(type, t -> Sets.newHashSet()).add(start << 32 | end)) {
+            return;
+        }
+        CSVPrinter printer = relationships.get(type);
+        if (printer == null) {
+            printer = printer(relationshipFile(type), Lists.newArrayList(":START_ID", ":END_ID"));
+            relationships.put(type, printer);
+        }
+        printer.printRecord(start, end);
+    }
+
+    private CSVPrinter printer(Path file, List<String> header) throws IOException {
+        return CSVFormat.DEFAULT.withHeader(header.toArray(new String[0]))
+                .print(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+    }
+
+    private Path nodeFile(Class<?> clazz) {
+        return directory.resolve("nodes-" + Neo4jDAO.label(clazz) + ".csv");
+    }
+
+    private Path relationshipFile(String type) {
+        return directory.resolve("relationships-" + type + ".csv");
+    }
+
+    /**
+     * The import tool type of a property column; converted values and strings need none.
+     */
+    private static String type(Field field) {
+        Class<?> type = field.getType();
+        if (field.isAnnotationPresent(Convert.class)) {
+            return "";
+        } else if (type == int.class || type == Integer.class) {
+            return ":int";
+        } else if (type == long.class || type == Long.class) {
+            return ":long";
+        } else if (type == double.class || type == Double.class) {
+            return ":double";
+        } else if (type == boolean.class || type == Boolean.class) {
+            return ":boolean";
+        } else if (Collection.class.isAssignableFrom(type) || type.isArray()) {
+            return ":string[]";
+        }
+        return "";
+    }
+
+    private static String relationshipType(Field field) {
+        Relationship relationship = field.getAnnotation(Relationship.class);
+        if (relationship != null && !relationship.type().isEmpty()) {
+            return relationship.type();
+        } else if (relationship != null && !relationship.value().isEmpty()) {
+            return relationship.value();
+        }
+        return RelationshipUtils.inferRelationshipType(field.getName());
+    }
+
+    private static List<Field> relationshipFields(Class<?> clazz) {
+        List<Field> fields = Lists.newArrayList();
+        for (Field field : clazz.getDeclaredFields()) {
+            if (Neo4jDAO.isMapped(field)
+                    && (field.isAnnotationPresent(Relationship.class) || Neo4jDAO.refersToEntities(field))) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    private static Collection<Entity> related(Field field, Entity entity) {
+        field.setAccessible(true);
+        Object value;
+        try {
+            value = field.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read " + field, e);
+        }
+        if (value instanceof Entity) {
+            return Collections.singletonList((Entity) value);
+        } else if (value instanceof Collection) {
+            List<Entity> related = Lists.newArrayList();
+            for (Object element : (Collection<?>) value) {
+                if (element instanceof Entity) {
+                    related.add((Entity) element);
+                }
+            }
+            return related;
+        }
+        return Collections.emptyList();
+    }
+}
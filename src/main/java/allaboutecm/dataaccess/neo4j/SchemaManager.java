@@ -0,0 +1,244 @@
+package allaboutecm.dataaccess.neo4j;
+
+import allaboutecm.dataaccess.Projection;
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.neo4j.ogm.config.Configuration;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Creates the indexes behind the Neo4jDAO lookups, so that they do not scan every node of a label.
+ *
+ * The indexed properties are read from the natural key fields of Album, Musician and MusicalInstrument, under
+ * their {@code @Property} names: one index per lookup, composite for the album key. Existing indexes and
+ * constraints are kept, so applying the schema again changes nothing.
+ *
+ * Single-property keys can be backed by uniqueness constraints instead. Only enable them when every write goes
+ * through the DAO lookups: saving a musician instrument along with a new instrument object of an existing name
+ * would then fail instead of creating a second node. A key already held by more than one node keeps its plain index
+ * and is reported as failed, so the lookup never loses its index.
+ */
+public class SchemaManager {
+    private static final int INDEX_TIMEOUT_SECONDS = 300;
+
+    private final SessionFactory sessionFactory;
+    private boolean uniqueConstraints;
+    private SchemaReport report;
+
+    public SchemaManager(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Opens a session factory for the model and applies the schema before it is handed out.
+     */
+    public static SchemaManager start(Configuration configuration, boolean uniqueConstraints) {
+        SchemaManager manager = new SchemaManager(
+                new SessionFactory(configuration, Musician.class.getPackage().getName()));
+        manager.setUniqueConstraints(uniqueConstraints);
+        manager.apply();
+        return manager;
+    }
+
+    public SessionFactory getSessionFactory() {
+        return sessionFactory;
+    }
+
+    public boolean isUniqueConstraints() {
+        return uniqueConstraints;
+    }
+
+    public void setUniqueConstraints(boolean uniqueConstraints) {
+        this.uniqueConstraints = uniqueConstraints;
+    }
+
+    /**
+     * The report of the last {@link #apply()}, or null before the first one.
+     */
+    public SchemaReport getReport() {
+        return report;
+    }
+
+    /**
+     * The Neo4jDAO lookups and the keys they filter on.
+     */
+    static Map<String, Key> lookups() {
+        Map<String, Key> lookups = Maps.newLinkedHashMap();
+        lookups.put("findMusicianByName", Key.of(Musician.class, ImmutableList.of("name")));
+        lookups.put("findAlbumByName", Key.of(Album.class, ImmutableList.of("albumName")));
+        for (Map.Entry<Class<?>, List<String>> entry : Neo4jDAO.NATURAL_KEYS.entrySet()) {
+            lookups.put("findExistingEntity(" + entry.getKey().getSimpleName() + ")",
+                    Key.of(entry.getKey(), entry.getValue()));
+        }
+        return lookups;
+    }
+
+    /**
+     * Creates the missing indexes and constraints, waits for them to come online and reports on every lookup.
+     */
+    public synchronized SchemaReport apply() {
+        Session session = sessionFactory.openSession();
+        List<String> created = Lists.newArrayList();
+        List<String> failed = Lists.newArrayList();
+        Map<Key, String> existing = indexes(session);
+
+        Map<String, Key> lookups = lookups();
+        for (Key key : Sets.newLinkedHashSet(lookups.values())) {
+            String type = existing.get(key);
+            boolean unique = uniqueConstraints && key.properties.size() == 1;
+            if (unique && (type == null || !type.contains("unique"))) {
+                String constraint = "CREATE CONSTRAINT ON (n:" + key.label + ") ASSERT n.`"
+                        + key.properties.get(0) + "` IS UNIQUE";
+                long duplicates = duplicates(session, key);
+                if (duplicates > 0) {
+                    failed.add(constraint + ": " + duplicates + " duplicate keys in the store");
+                    if (type == null) {
+                        createIndex(session, key, created, failed);
+                    }
+                    continue;
+                }
+                // Neo4j refuses a constraint over an existing index, so the index has to go first; the store
+                // has just been checked for duplicates, and the index comes back if the constraint still fails.
+                if (type != null) {
+                    run(session, "DROP INDEX ON " + key);
+                }
+                try {
+                    run(session, constraint);
+                    created.add(constraint);
+                } catch (RuntimeException e) {
+                    failed.add(constraint + ": " + e.getMessage());
+                    createIndex(session, key, created, failed);
+                }
+            } else if (type == null) {
+                createIndex(session, key, created, failed);
+            }
+        }
+        run(session, "CALL db.awaitIndexes(" + INDEX_TIMEOUT_SECONDS + ")");
+
+        Set<Key> online = Sets.newHashSet();
+        for (Map<String, Object> row : session.query("CALL db.indexes()", Collections.emptyMap(), true).queryResults()) {
+            if ("ONLINE".equals(row.get("state"))) {
+                online.add(Key.of(strings(row.get("tokenNames")), strings(row.get("properties"))));
+            }
+        }
+        Map<String, Boolean> indexBacked = Maps.newLinkedHashMap();
+        for (Map.Entry<String, Key> lookup : lookups.entrySet()) {
+            indexBacked.put(lookup.getKey(), online.contains(lookup.getValue()));
+        }
+        report = new SchemaReport(created, failed, indexBacked);
+        return report;
+    }
+
+    /**
+     * The existing indexes by key, with their type; uniqueness constraints show up as unique indexes.
+     */
+    private static Map<Key, String> indexes(Session session) {
+        Map<Key, String> indexes = Maps.newHashMap();
+        for (Map<String, Object> row : session.query("CALL db.indexes()", Collections.emptyMap(), true).queryResults()) {
+            indexes.put(Key.of(strings(row.get("tokenNames")), strings(row.get("properties"))),
+                    String.valueOf(row.get("type")));
+        }
+        return indexes;
+    }
+
+    private static void createIndex(Session session, Key key, List<String> created, List<String> failed) {
+        String index = "CREATE INDEX ON " + key;
+        try {
+            run(session, index);
+            created.add(index);
+        } catch (RuntimeException e) {
+            failed.add(index + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The number of values of a single-property key held by more than one node, which a constraint would reject.
+     */
+    private static long duplicates(Session session, Key key) {
+        String cypher = "MATCH (n:`" + key.label + "`) WHERE exists(n.`" + key.properties.get(0) + "`) "
+                + "WITH n.`" + key.properties.get(0) + "` AS value, count(*) AS nodes WHERE nodes > 1 "
+                + "RETURN count(value) AS duplicates";
+        Long duplicates = session.queryForObject(Long.class, cypher, Collections.emptyMap());
+        return duplicates == null ? 0 : duplicates;
+    }
+
+    private static void run(Session session, String cypher) {
+        session.query(cypher, Collections.emptyMap());
+    }
+
+    private static List<String> strings(Object value) {
+        List<String> strings = Lists.newArrayList();
+        Collection<?> values = value instanceof Object[] ? Arrays.asList((Object[]) value) : (Collection<?>) value;
+        for (Object v : values) {
+            strings.add(String.valueOf(v));
+        }
+        return strings;
+    }
+
+    /**
+     * A label and the properties indexed together, printed the way Cypher index statements name them.
+     */
+    static final class Key {
+        private final String label;
+        private final List<String> properties;
+
+        private Key(String label, List<String> properties) {
+            this.label = label;
+            this.properties = ImmutableList.copyOf(properties);
+        }
+
+        /**
+         * The key of the natural key fields of an entity class, under their {@code @Property} names.
+         */
+        static Key of(Class<?> clazz, List<String> fields) {
+            List<String> properties = Lists.newArrayList();
+            for (String field : fields) {
+                properties.add(Neo4jDAO.propertyName(Projection.field(clazz, field)));
+            }
+            return new Key(Neo4jDAO.label(clazz), properties);
+        }
+
+        private static Key of(List<String> labels, List<String> properties) {
+            return new Key(labels.isEmpty() ? "" : labels.get(0), properties);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return label.equals(key.label) && Sets.newHashSet(properties).equals(Sets.newHashSet(key.properties));
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(label, Sets.newHashSet(properties));
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(":").append(label).append('(');
+            for (int i = 0; i < properties.size(); i++) {
+                builder.append(i > 0 ? ", " : "").append('`').append(properties.get(i)).append('`');
+            }
+            return builder.append(')').toString();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package allaboutecm.dataaccess.neo4j;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What a {@link SchemaManager} run changed, and which Neo4jDAO lookups an online index now serves.
+ */
+public class SchemaReport {
+    private final List<String> created;
+    private final List<String> failed;
+    private final Map<String, Boolean> indexBacked;
+
+    SchemaReport(List<String> created, List<String> failed, Map<String, Boolean> indexBacked) {
+        this.created = ImmutableList.copyOf(created);
+        this.failed = ImmutableList.copyOf(failed);
+        this.indexBacked = ImmutableMap.copyOf(indexBacked);
+    }
+
+    /**
+     * The indexes and constraints created by this run, empty when the schema was already in place.
+     */
+    public List<String> getCreated() {
+        return created;
+    }
+
+    /**
+     * The indexes and constraints that could not be created, with the reason, such as duplicate keys in the store.
+     */
+    public List<String> getFailed() {
+        return failed;
+    }
+
+    /**
+     * Whether each lookup, such as {@code findMusicianByName}, is served by an online index.
+     */
+    public Map<String, Boolean> getIndexBacked() {
+        return indexBacked;
+    }
+
+    public boolean isIndexBacked(String lookup) {
+        return indexBacked.getOrDefault(lookup, false);
+    }
+
+    @Override
+    public String toString() {
+        return "created " + created + ", failed " + failed + ", index-backed " + indexBacked;
+    }
+}
@@ -0,0 +1,218 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Approximate {@code mostSimilarAlbums} for catalogs too large to score exactly on every request.
+ *
+ * Every album is described by the set of its featured musicians' names plus the character shingles of its track
+ * names. The lineups of the indexed albums are read from the snapshot's featured musician columns, so that the
+ * index is the same whether the snapshot was built from the store or read from a {@link SnapshotFile}. A MinHash signature of {@code bands * rows} values is computed for that set and split into bands; albums
+ * whose band values collide share an LSH bucket. A lookup collects the albums sharing a bucket with the query,
+ * then reranks only those candidates with the exact score of {@link ECMMiner#mostSimilarAlbums}.
+ *
+ * Recall and latency are traded through the banding: for a pair of albums with Jaccard similarity s, the
+ * probability of becoming candidates is {@code 1 - (1 - s^rows)^bands}. More bands or fewer rows find more of
+ * the exact neighbours at the cost of more candidates to rerank.
+ */
+public class AlbumMinHashIndex {
+    private static final int SHINGLE_LENGTH = 3;
+    private static final HashFunction FEATURE_HASH = Hashing.murmur3_128(5171);
+
+    private final CatalogSnapshot snapshot;
+    private final int bands;
+    private final int rows;
+    private final long[] seeds;
+    private final List<Map<Long, IntList>> buckets;
+    private final ThreadLocal<int[]> seenBy;
+
+    private AlbumMinHashIndex(CatalogSnapshot snapshot, int bands, int rows) {
+        this.snapshot = snapshot;
+        this.bands = bands;
+        this.rows = rows;
+        this.seeds = new long[bands * rows];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = mix(0x9E3779B97F4A7C15L * (i + 1));
+        }
+        this.buckets = new ArrayList<>(bands);
+        for (int b = 0; b < bands; b++) {
+            buckets.add(Maps.newHashMap());
+        }
+        this.seenBy = ThreadLocal.withInitial(() -> new int[snapshot.albumCount()]);
+    }
+
+    /**
+     * @Param bands the number of LSH bands, more bands raise recall.
+     * @Param rows the number of signature values per band, more rows cut down the candidates.
+     */
+    public static AlbumMinHashIndex build(CatalogSnapshot snapshot, int bands, int rows) {
+        if (bands <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("bands and rows must be positive");
+        }
+        AlbumMinHashIndex index = new AlbumMinHashIndex(snapshot, bands, rows);
+        for (int a = 0; a < snapshot.albumCount(); a++) {
+            List<String> lineup = new ArrayList<>(snapshot.featuredEnd(a) - snapshot.featuredStart(a));
+            for (int i = snapshot.featuredStart(a); i < snapshot.featuredEnd(a); i++) {
+                lineup.add(snapshot.musician(snapshot.featuredMusician(i)).getName());
+            }
+            long[] signature = index.signature(lineup, snapshot.album(a).getTracks());
+            if (signature == null) {
+                continue;
+            }
+            for (int b = 0; b < bands; b++) {
+                index.buckets.get(b).computeIfAbsent(index.bandKey(signature, b), key -> new IntList(2)).add(a);
+            }
+        }
+        return index;
+    }
+
+    public int getBands() {
+        return bands;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Ids of the albums sharing at least one LSH bucket with the given album.
+     */
+    public int[] candidates(Album album) {
+        IntList candidates = new IntList();
+        List<String> lineup = new ArrayList<>();
+        if (album.getFeaturedMusicians() != null) {
+            for (Musician musician : album.getFeaturedMusicians()) {
+                lineup.add(musician.getName());
+            }
+        }
+        long[] signature = signature(lineup, album.getTracks());
+        if (signature == null) {
+            return candidates.toArray();
+        }
+        int[] seen = seenBy.get();
+        for (int b = 0; b < bands; b++) {
+            IntList bucket = buckets.get(b).get(bandKey(signature, b));
+            if (bucket == null) {
+                continue;
+            }
+            for (int i = 0; i < bucket.size(); i++) {
+                int a = bucket.get(i);
+                if (seen[a] == 0) {
+                    seen[a] = 1;
+                    candidates.add(a);
+                }
+            }
+        }
+        int[] result = candidates.toArray();
+        for (int a : result) {
+            seen[a] = 0;
+        }
+        return result;
+    }
+
+    /**
+     * The approximate k most similar albums: candidates are reranked exactly, and any slots left
+     * are filled with non-candidates, which are taken to share no musicians with the album.
+     */
+    public List<Album> mostSimilar(Album album, int k) {
+        TopK<Album> topK = new TopK<>(k, ECMMiner.ALBUM_ORDER);
+        int[] candidates = candidates(album);
+        List<Musician> lineup = album.getFeaturedMusicians();
+        int lineupSize = lineup == null ? 0 : lineup.size();
+        int[] query = new int[lineupSize];
+        for (int i = 0; i < lineupSize; i++) {
+            query[i] = snapshot.musicianId(lineup.get(i));
+        }
+
+        int[] seen = seenBy.get();
+        for (int a : candidates) {
+            int same = 0;
+            for (int m : query) {
+                for (int i = snapshot.featuredStart(a); i < snapshot.featuredEnd(a); i++) {
+                    if (snapshot.featuredMusician(i) == m) {
+                        same++;
+                        break;
+                    }
+                }
+            }
+            topK.offer(snapshot.album(a), lineupSize == 0 ? 0 : (double) same / lineupSize);
+            seen[a] = 1;
+        }
+
+        int[] order = snapshot.tieBreakOrder();
+        for (int i = 0; i < order.length && topK.size() < k; i++) {
+            if (seen[order[i]] == 0) {
+                topK.offer(snapshot.album(order[i]), 0);
+            }
+        }
+        for (int a : candidates) {
+            seen[a] = 0;
+        }
+        return topK.toList();
+    }
+
+    /**
+     * MinHash signature of an album's features, its musician names and tracks, or null when it has none.
+     */
+    private long[] signature(List<String> lineup, List<String> tracks) {
+        long[] signature = new long[seeds.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        boolean empty = true;
+        for (String name : lineup) {
+            if (name != null) {
+                update(signature, FEATURE_HASH.hashUnencodedChars("m:" + name).asLong());
+                empty = false;
+            }
+        }
+        if (tracks != null) {
+            for (String track : tracks) {
+                String normalised = track == null ? "" : track.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
+                if (normalised.isEmpty()) {
+                    continue;
+                }
+                for (int i = 0; i + SHINGLE_LENGTH <= Math.max(normalised.length(), SHINGLE_LENGTH); i++) {
+                    String shingle = normalised.substring(i, Math.min(i + SHINGLE_LENGTH, normalised.length()));
+                    update(signature, FEATURE_HASH.hashUnencodedChars("t:" + shingle).asLong());
+                }
+                empty = false;
+            }
+        }
+        return empty ? null : signature;
+    }
+
+    private void update(long[] signature, long feature) {
+        for (int i = 0; i < seeds.length; i++) {
+            long value = mix(feature ^ seeds[i]);
+            if (value < signature[i]) {
+                signature[i] = value;
+            }
+        }
+    }
+
+    private long bandKey(long[] signature, int band) {
+        long key = band;
+        for (int r = band * rows; r < (band + 1) * rows; r++) {
+            key = mix(key * 31 + signature[r]);
+        }
+        return key;
+    }
+
+    /**
+     * The splitmix64 finaliser.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
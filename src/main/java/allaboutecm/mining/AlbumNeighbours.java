@@ -0,0 +1,300 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import com.google.common.collect.Lists;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Precomputed top-k similar albums for every album of a snapshot, scored like {@link ECMMiner#mostSimilarAlbums}.
+ *
+ * The neighbour lists are computed in one batch, one query album per task on a fork/join pool, and kept in a flat
+ * array, so a later lookup is a single id read. Each query probes the inverted musician index of the snapshot with
+ * its musicians ordered from the rarest to the most frequent (prefix filtering): an album not reached yet can at
+ * best share the musicians still to be probed, so probing stops as soon as the k-th score found beats that bound.
+ * Frequent musicians, whose album lists are the longest, are therefore usually never probed at all.
+ *
+ * The lists hold snapshot album ids, so they are only meaningful along with the snapshot they were computed on.
+ * {@link #write(Path)} stores them next to that snapshot's {@link SnapshotFile}, and {@link #read} maps them back
+ * after checking that the snapshot has the same albums, so a restart does not have to compute them again.
+ */
+public class AlbumNeighbours {
+    public static final int MAGIC = 0x45434D4E;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 24;
+
+    private final CatalogSnapshot snapshot;
+    private final int k;
+    private final int width;
+    private final int[] neighbours;
+
+    private AlbumNeighbours(CatalogSnapshot snapshot, int k, int width, int[] neighbours) {
+        this.snapshot = snapshot;
+        this.k = k;
+        this.width = width;
+        this.neighbours = neighbours;
+    }
+
+    public static AlbumNeighbours compute(CatalogSnapshot snapshot, int k) {
+        return compute(snapshot, k, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @Param k the number of neighbours to keep for each album.
+     * @Param pool the pool the query albums are spread over.
+     */
+    public static AlbumNeighbours compute(CatalogSnapshot snapshot, int k, ForkJoinPool pool) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        AlbumSimilarityIndex index = snapshot.similarityIndex();
+        int albums = snapshot.albumCount();
+        int width = Math.min(k, albums);
+        int[] neighbours = new int[size(albums, width)];
+
+        int[] order = snapshot.tieBreakOrder();
+        int[] rank = new int[albums];
+        for (int i = 0; i < order.length; i++) {
+            rank[order[i]] = i;
+        }
+        Comparator<Integer> tieBreak = Comparator.comparingInt(a -> rank[a]);
+        ThreadLocal<Join> joins = ThreadLocal.withInitial(() -> new Join(snapshot, index, tieBreak));
+
+        pool.submit(() -> IntStream.range(0, albums).parallel().forEach(q -> {
+            List<Integer> top = joins.get().query(q, width);
+            for (int i = 0; i < width; i++) {
+                neighbours[q * width + i] = top.get(i);
+            }
+        })).join();
+        return new AlbumNeighbours(snapshot, k, width, neighbours);
+    }
+
+    /**
+     * Reads the lists written for a snapshot back.
+     *
+     * @throws IOException when the file holds no neighbour lists, is of another format version or was computed on
+     * a snapshot with other albums.
+     */
+    public static AlbumNeighbours read(CatalogSnapshot snapshot, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(file + " holds no album neighbours");
+            }
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt() != MAGIC) {
+                throw new IOException(file + " holds no album neighbours");
+            }
+            int version = mapped.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has neighbours format version " + version + ", expected " + VERSION);
+            }
+            int albums = mapped.getInt();
+            int fingerprint = mapped.getInt();
+            int k = mapped.getInt();
+            int width = mapped.getInt();
+            if (albums != snapshot.albumCount() || fingerprint != fingerprint(snapshot)) {
+                throw new IOException(file + " was computed on another snapshot");
+            }
+            int[] neighbours = new int[size(albums, width)];
+            if (mapped.remaining() != neighbours.length * Integer.BYTES) {
+                throw new IOException(file + " is truncated");
+            }
+            mapped.asIntBuffer().get(neighbours);
+            return new AlbumNeighbours(snapshot, k, width, neighbours);
+        }
+    }
+
+    /**
+     * Writes the lists to a file, replacing it whole like {@link SnapshotFile#write}.
+     */
+    public void write(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path partial = Files.createTempFile(directory, file.getFileName().toString(), ".partial");
+        try {
+            try (OutputStream out = Files.newOutputStream(partial)) {
+                ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + neighbours.length * Integer.BYTES);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(snapshot.albumCount()).putInt(fingerprint(snapshot))
+                        .putInt(k).putInt(width);
+                buffer.asIntBuffer().put(neighbours);
+                out.write(buffer.array());
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Whether the k most similar albums of the album were precomputed.
+     */
+    public boolean covers(Album album, int k) {
+        return k <= this.k && snapshot.albumId(album) >= 0;
+    }
+
+    /**
+     * The k most similar albums to an album of the snapshot, best first.
+     */
+    public List<Album> mostSimilar(Album album, int k) {
+        int q = snapshot.albumId(album);
+        if (q < 0) {
+            throw new IllegalArgumentException("album is not part of the snapshot");
+        }
+        int size = Math.min(k, width);
+        List<Album> result = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+            result.add(snapshot.album(neighbours[q * width + i]));
+        }
+        return result;
+    }
+
+    /**
+     * The length of the flat array of lists, which must fit in an int.
+     */
+    private static int size(int albums, int width) {
+        long size = (long) albums * width;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(albums + " albums with " + width
+                    + " neighbours each do not fit in one array; use a smaller k");
+        }
+        return (int) size;
+    }
+
+    /**
+     * A hash of the albums of a snapshot in id order, from their natural keys and their lineups as musician ids,
+     * which the lists are computed from.
+     */
+    private static int fingerprint(CatalogSnapshot snapshot) {
+        int fingerprint = 1;
+        for (int a = 0; a < snapshot.albumCount(); a++) {
+            fingerprint = 31 * fingerprint + snapshot.album(a).hashCode();
+            fingerprint = 31 * fingerprint + snapshot.featuredEnd(a) - snapshot.featuredStart(a);
+            for (int i = snapshot.featuredStart(a); i < snapshot.featuredEnd(a); i++) {
+                fingerprint = 31 * fingerprint + snapshot.featuredMusician(i);
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Per-thread scratch space for the queries. Arrays are reset through stamps instead of being cleared, and
+     * cleared once when a stamp wraps around.
+     */
+    static final class Join {
+        private final CatalogSnapshot snapshot;
+        private final AlbumSimilarityIndex index;
+        private final Comparator<Integer> tieBreak;
+        private final int[] weight;
+        private final int[] counted;
+        private final int[] seen;
+        int queryStamp;
+        int candidateStamp;
+
+        Join(CatalogSnapshot snapshot, AlbumSimilarityIndex index, Comparator<Integer> tieBreak) {
+            this.snapshot = snapshot;
+            this.index = index;
+            this.tieBreak = tieBreak;
+            this.weight = new int[snapshot.musicianCount()];
+            this.counted = new int[snapshot.musicianCount()];
+            this.seen = new int[snapshot.albumCount()];
+        }
+
+        List<Integer> query(int q, int k) {
+            TopK<Integer> topK = new TopK<>(k, tieBreak);
+            int lineupSize = snapshot.featuredEnd(q) - snapshot.featuredStart(q);
+            if (queryStamp == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                queryStamp = 0;
+            }
+            int querySeen = ++queryStamp;
+
+            // A musician listed twice in the lineup counts twice, as in the scan over the catalog.
+            IntList prefix = new IntList(lineupSize);
+            for (int i = snapshot.featuredStart(q); i < snapshot.featuredEnd(q); i++) {
+                int m = snapshot.featuredMusician(i);
+                if (weight[m] == 0) {
+                    prefix.add(m);
+                }
+                weight[m]++;
+            }
+            int[] probes = prefix.toArray();
+            sortByFrequency(probes);
+
+            int remaining = lineupSize;
+            for (int m : probes) {
+                if (topK.threshold() > (double) remaining / lineupSize) {
+                    break;
+                }
+                for (int i = index.albumsStart(m); i < index.albumsEnd(m); i++) {
+                    int c = index.album(i);
+                    if (seen[c] != querySeen) {
+                        seen[c] = querySeen;
+                        topK.offer(c, (double) overlap(c) / lineupSize);
+                    }
+                }
+                remaining -= weight[m];
+            }
+
+            // Albums never reached share no musician with the query album.
+            int[] order = snapshot.tieBreakOrder();
+            for (int i = 0; i < order.length && topK.size() < k; i++) {
+                if (seen[order[i]] != querySeen) {
+                    topK.offer(order[i], 0);
+                }
+            }
+            for (int m : probes) {
+                weight[m] = 0;
+            }
+            return topK.toList();
+        }
+
+        private int overlap(int c) {
+            if (candidateStamp == Integer.MAX_VALUE) {
+                Arrays.fill(counted, 0);
+                candidateStamp = 0;
+            }
+            int candidate = ++candidateStamp;
+            int overlap = 0;
+            for (int i = snapshot.featuredStart(c); i < snapshot.featuredEnd(c); i++) {
+                int m = snapshot.featuredMusician(i);
+                if (counted[m] != candidate) {
+                    counted[m] = candidate;
+                    overlap += weight[m];
+                }
+            }
+            return overlap;
+        }
+
+        /**
+         * Insertion sort by ascending number of albums; lineups are short.
+         */
+        private void sortByFrequency(int[] musicians) {
+            for (int i = 1; i < musicians.length; i++) {
+                int m = musicians[i];
+                int j = i - 1;
+                while (j >= 0 && index.albumCount(musicians[j]) > index.albumCount(m)) {
+                    musicians[j + 1] = musicians[j];
+                    j--;
+                }
+                musicians[j + 1] = m;
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Inverted index from musicians to the albums that feature them, for exact {@code mostSimilarAlbums} lookups.
+ *
+ * A lookup only visits the albums that share at least one musician with the query album and accumulates their
+ * overlap counts. Albums without overlap all score zero; when fewer than k albums overlap, the remaining slots are
+ * filled by walking a precomputed tie-break order, so those albums are never scored one by one. A lookup costs
+ * O(neighbourhood + k log k) instead of a scan of the whole catalog.
+ */
+public class AlbumSimilarityIndex {
+    private final CatalogSnapshot snapshot;
+    private final int[] offsets;
+    private final int[] albums;
+    private final int[] tieBreakOrder;
+    private final ThreadLocal<int[]> overlap;
+
+    private AlbumSimilarityIndex(CatalogSnapshot snapshot, int[] offsets, int[] albums, int[] tieBreakOrder) {
+        this.snapshot = snapshot;
+        this.offsets = offsets;
+        this.albums = albums;
+        this.tieBreakOrder = tieBreakOrder;
+        this.overlap = ThreadLocal.withInitial(() -> new int[snapshot.albumCount()]);
+    }
+
+    public static AlbumSimilarityIndex build(CatalogSnapshot snapshot) {
+        int musicians = snapshot.musicianCount();
+        int[] offsets = new int[musicians + 1];
+        int[] lastAlbum = new int[musicians];
+        Arrays.fill(lastAlbum, -1);
+
+        // Albums are visited in id order, so a musician listed twice in a lineup is only indexed once.
+        for (int a = 0; a < snapshot.albumCount(); a++) {
+            for (int i = snapshot.featuredStart(a); i < snapshot.featuredEnd(a); i++) {
+                int m = snapshot.featuredMusician(i);
+                if (lastAlbum[m] != a) {
+                    lastAlbum[m] = a;
+                    offsets[m + 1]++;
+                }
+            }
+        }
+        for (int m = 0; m < musicians; m++) {
+            offsets[m + 1] += offsets[m];
+        }
+        int[] albums = new int[offsets[musicians]];
+        int[] next = Arrays.copyOf(offsets, musicians);
+        Arrays.fill(lastAlbum, -1);
+        for (int a = 0; a < snapshot.albumCount(); a++) {
+            for (int i = snapshot.featuredStart(a); i < snapshot.featuredEnd(a); i++) {
+                int m = snapshot.featuredMusician(i);
+                if (lastAlbum[m] != a) {
+                    lastAlbum[m] = a;
+                    albums[next[m]++] = a;
+                }
+            }
+        }
+
+        return new AlbumSimilarityIndex(snapshot, offsets, albums, snapshot.tieBreakOrder());
+    }
+
+    /**
+     * Number of albums that feature the musician.
+     */
+    public int albumCount(int musician) {
+        return offsets[musician + 1] - offsets[musician];
+    }
+
+    public int albumsStart(int musician) {
+        return offsets[musician];
+    }
+
+    public int albumsEnd(int musician) {
+        return offsets[musician + 1];
+    }
+
+    public int album(int index) {
+        return albums[index];
+    }
+
+    /**
+     * The k albums of the snapshot most similar to the given album, scored like {@link ECMMiner#mostSimilarAlbums}.
+     */
+    public List<Album> mostSimilar(Album album, int k) {
+        TopK<Album> topK = new TopK<>(k, ECMMiner.ALBUM_ORDER);
+        List<Musician> lineup = album.getFeaturedMusicians();
+        int[] overlap = this.overlap.get();
+        IntList touched = new IntList();
+
+        if (lineup != null && !lineup.isEmpty()) {
+            for (Musician musician : lineup) {
+                int m = snapshot.musicianId(musician);
+                if (m < 0) {
+                    continue;
+                }
+                for (int i = offsets[m]; i < offsets[m + 1]; i++) {
+                    int a = albums[i];
+                    if (overlap[a] == 0) {
+                        touched.add(a);
+                    }
+                    overlap[a]++;
+                }
+            }
+            for (int i = 0; i < touched.size(); i++) {
+                int a = touched.get(i);
+                topK.offer(snapshot.album(a), (double) overlap[a] / lineup.size());
+            }
+        }
+
+        for (int i = 0; i < tieBreakOrder.length && topK.size() < k; i++) {
+            int a = tieBreakOrder[i];
+            if (overlap[a] == 0) {
+                topK.offer(snapshot.album(a), 0);
+            }
+        }
+
+        for (int i = 0; i < touched.size(); i++) {
+            overlap[touched.get(i)] = 0;
+        }
+        return topK.toList();
+    }
+}
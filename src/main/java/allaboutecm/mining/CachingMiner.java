@@ -0,0 +1,265 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAOListener;
+import allaboutecm.mining.MiningRequest.Metric;
+import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A size- and TTL-bounded cache of {@link ECMMiner} results, keyed by query, k and year range.
+ *
+ * Register it on an {@link allaboutecm.dataaccess.ObservableDAO}: every write evicts only the entries it can
+ * affect. An album write evicts the year-range entries whose range covers its release year, both the new one and
+ * the one it was last saved with through this cache; musician, musician instrument and instrument writes evict
+ * the queries that read them. A musician write also writes the albums the musician holds, and albums added to a
+ * musician are written along with the link, so both evict the year ranges of those albums like album writes do. A result computed while a write was being applied is returned but not cached.
+ * Album updates that change the release year of an album this cache has not seen saved before are only covered
+ * by the TTL for ranges that contain the old year only. To know the old year, the cache keeps one entry per saved
+ * album that has not been deleted since, outside of its size bound.
+ */
+public class CachingMiner implements DAOListener {
+    private static final Set<Metric> MUSICIAN_QUERIES = EnumSet.of(Metric.PROLIFIC_MUSICIANS,
+            Metric.TALENTED_MUSICIANS, Metric.SOCIAL_MUSICIANS, Metric.SIMILAR_ALBUMS);
+    private static final Set<Metric> INSTRUMENT_QUERIES = EnumSet.of(Metric.TALENTED_MUSICIANS,
+            Metric.POPULAR_INSTRUMENTS);
+
+    private final ECMMiner miner;
+    private final Cache<Key, List<?>> cache;
+    private final Map<Long, Integer> albumYears = Maps.newHashMap();
+    private final Object writeLock = new Object();
+    private long writes;
+
+    /**
+     * @Param maximumSize the maximum number of results kept.
+     * @Param ttl how long a result is served after it was computed.
+     */
+    public CachingMiner(ECMMiner miner, long maximumSize, long ttl, TimeUnit unit) {
+        this(miner, maximumSize, ttl, unit, Ticker.systemTicker());
+    }
+
+    CachingMiner(ECMMiner miner, long maximumSize, long ttl, TimeUnit unit, Ticker ticker) {
+        this.miner = miner;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl, unit)
+                .ticker(ticker)
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+    }
+
+    public List<Musician> mostProlificMusicians(int k, int startYear, int endYear) {
+        return cached(new Key(Metric.PROLIFIC_MUSICIANS, k, startYear, endYear, null),
+                () -> miner.mostProlificMusicians(k, startYear, endYear));
+    }
+
+    public List<Musician> mostTalentedMusicians(int k) {
+        return cached(new Key(Metric.TALENTED_MUSICIANS, k), () -> miner.mostTalentedMusicians(k));
+    }
+
+    public List<Musician> mostSocialMusicians(int k) {
+        return cached(new Key(Metric.SOCIAL_MUSICIANS, k), () -> miner.mostSocialMusicians(k));
+    }
+
+    public List<Integer> busiestYears(int k) {
+        return cached(new Key(Metric.BUSIEST_YEARS, k), () -> miner.busiestYears(k));
+    }
+
+    public List<Integer> busiestYears(int k, int startYear, int endYear) {
+        return cached(new Key(Metric.BUSIEST_YEARS, k, startYear, endYear, null),
+                () -> miner.busiestYears(k, startYear, endYear));
+    }
+
+    public List<Album> mostSimilarAlbums(int k, Album album) {
+        return cached(new Key(Metric.SIMILAR_ALBUMS, k, -1, -1, album), () -> miner.mostSimilarAlbums(k, album));
+    }
+
+    public List<MusicalInstrument> mostPopularInstrument(int k) {
+        return cached(new Key(Metric.POPULAR_INSTRUMENTS, k), () -> miner.mostPopularInstrument(k));
+    }
+
+    /**
+     * Hit and miss counts, eviction counts and load times of the cache.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    public void invalidateAll() {
+        invalidate(key -> true);
+    }
+
+    @Override
+    public void saved(Entity entity) {
+        written(entity, false);
+    }
+
+    /**
+     * Adding related entities to an entity evicts what a write of the entity would, with the related albums in
+     * place of those the entity holds.
+     */
+    @Override
+    public void added(Entity entity, String relationship, Collection<? extends Entity> related) {
+        if (entity instanceof Musician) {
+            musicianWritten(related);
+        } else {
+            written(entity, false);
+        }
+    }
+
+    @Override
+    public void deleted(Entity entity) {
+        written(entity, true);
+    }
+
+    private void written(Entity entity, boolean deleted) {
+        if (entity instanceof Album) {
+            Album album = (Album) entity;
+            int year = album.getReleaseYear();
+            Integer previousYear = null;
+            synchronized (writeLock) {
+                if (album.getId() != null) {
+                    previousYear = deleted ? albumYears.remove(album.getId()) : albumYears.put(album.getId(), year);
+                }
+            }
+            int oldYear = previousYear == null ? year : previousYear;
+            boolean withInstruments = album.getInstruments() != null && !album.getInstruments().isEmpty();
+            invalidate(key -> {
+                switch (key.metric) {
+                    case PROLIFIC_MUSICIANS:
+                    case BUSIEST_YEARS:
+                        return key.covers(year) || key.covers(oldYear);
+                    case SOCIAL_MUSICIANS:
+                    case SIMILAR_ALBUMS:
+                        return true;
+                    default:
+                        return withInstruments;
+                }
+            });
+        } else if (entity instanceof Musician) {
+            Set<Album> albums = ((Musician) entity).getAlbums();
+            musicianWritten(deleted || albums == null ? Collections.emptySet() : albums);
+        } else if (entity instanceof MusicianInstrument || entity instanceof MusicalInstrument) {
+            invalidate(key -> INSTRUMENT_QUERIES.contains(key.metric));
+        }
+    }
+
+    /**
+     * Evicts the musician queries and the year ranges covering the albums written along with a musician, both
+     * their years and the years they were last saved with.
+     */
+    private void musicianWritten(Collection<? extends Entity> albums) {
+        Set<Integer> years = Sets.newHashSet();
+        synchronized (writeLock) {
+            for (Entity entity : albums) {
+                if (entity instanceof Album) {
+                    Album album = (Album) entity;
+                    years.add(album.getReleaseYear());
+                    Integer previousYear = album.getId() == null ? null
+                            : albumYears.put(album.getId(), album.getReleaseYear());
+                    if (previousYear != null) {
+                        years.add(previousYear);
+                    }
+                }
+            }
+        }
+        invalidate(key -> MUSICIAN_QUERIES.contains(key.metric)
+                || key.metric == Metric.BUSIEST_YEARS && years.stream().anyMatch(key::covers));
+    }
+
+    private void invalidate(Predicate<Key> affected) {
+        synchronized (writeLock) {
+            writes++;
+            cache.asMap().keySet().removeIf(affected);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> cached(Key key, Supplier<List<T>> query) {
+        List<?> hit = cache.getIfPresent(key);
+        if (hit != null) {
+            return (List<T>) hit;
+        }
+        long version;
+        synchronized (writeLock) {
+            version = writes;
+        }
+        List<T> result = Collections.unmodifiableList(Lists.newArrayList(query.get()));
+        synchronized (writeLock) {
+            if (writes == version) {
+                cache.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    private static final class Key {
+        private final Metric metric;
+        private final int k;
+        private final int startYear;
+        private final int endYear;
+        private final Album album;
+
+        private Key(Metric metric, int k) {
+            this(metric, k, -1, -1, null);
+        }
+
+        private Key(Metric metric, int k, int startYear, int endYear, Album album) {
+            this.metric = metric;
+            this.k = k;
+            this.startYear = startYear;
+            this.endYear = endYear;
+            this.album = album;
+        }
+
+        /**
+         * Whether the query reads albums of the year; queries over all years cover every year.
+         */
+        private boolean covers(int year) {
+            return startYear < 0 || endYear < 0 || (startYear <= year && year <= endYear);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return k == key.k &&
+                    startYear == key.startYear &&
+                    endYear == key.endYear &&
+                    metric == key.metric &&
+                    Objects.equals(album, key.album);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(metric, k, startYear, endYear, album);
+        }
+    }
+}
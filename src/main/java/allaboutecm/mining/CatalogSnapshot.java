@@ -0,0 +1,528 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, columnar copy of the catalog that ECMMiner queries can scan without going back to the DAO.
+ *
+ * Albums, musicians and instruments are given dense int ids in the order they are first seen.
+ * Relationships are stored in compressed sparse row form: the neighbours of row i are
+ * {@code targets[offsets[i]] .. targets[offsets[i + 1] - 1]}.
+ * <ul>
+ *     <li>album &rarr; featured musicians, in lineup order</li>
+ *     <li>musician &rarr; albums</li>
+ *     <li>performance &rarr; instruments, where a performance is one {@link MusicianInstrument} row
+ *     and {@link #performanceMusician(int)} is the musician of that row</li>
+ * </ul>
+ */
+public class CatalogSnapshot {
+    private final Album[] albums;
+    private final Musician[] musicians;
+    private final MusicalInstrument[] instruments;
+    private final Map<Album, Integer> albumIds;
+    private final Map<Musician, Integer> musicianIds;
+    private final Map<MusicalInstrument, Integer> instrumentIds;
+
+    private final int[] releaseYears;
+    private final int[] featuredOffsets;
+    private final int[] featuredMusicians;
+    private final int[] musicianAlbumOffsets;
+    private final int[] musicianAlbums;
+    private final int[] performanceMusicians;
+    private final int[] performanceOffsets;
+    private final int[] performanceInstruments;
+
+    private final int firstYear;
+    private final int lastYear;
+
+    private volatile YearRangeIndex yearRangeIndex;
+    private volatile AlbumSimilarityIndex similarityIndex;
+    private volatile CollaborationGraph collaborationGraph;
+    private volatile MusicianRepertoire repertoire;
+    private volatile int[] tieBreakOrder;
+
+    CatalogSnapshot(Album[] albums, Musician[] musicians, MusicalInstrument[] instruments,
+                    int[] releaseYears, int[] featuredOffsets, int[] featuredMusicians,
+                    int[] musicianAlbumOffsets, int[] musicianAlbums,
+                    int[] performanceMusicians, int[] performanceOffsets, int[] performanceInstruments) {
+        this.albums = albums;
+        this.musicians = musicians;
+        this.instruments = instruments;
+        this.albumIds = index(albums);
+        this.musicianIds = index(musicians);
+        this.instrumentIds = index(instruments);
+        this.releaseYears = releaseYears;
+        this.featuredOffsets = featuredOffsets;
+        this.featuredMusicians = featuredMusicians;
+        this.musicianAlbumOffsets = musicianAlbumOffsets;
+        this.musicianAlbums = musicianAlbums;
+        this.performanceMusicians = performanceMusicians;
+        this.performanceOffsets = performanceOffsets;
+        this.performanceInstruments = performanceInstruments;
+
+        int first = Integer.MAX_VALUE;
+        int last = Integer.MIN_VALUE;
+        for (int year : releaseYears) {
+            first = Math.min(first, year);
+            last = Math.max(last, year);
+        }
+        this.firstYear = releaseYears.length == 0 ? 0 : first;
+        this.lastYear = releaseYears.length == 0 ? -1 : last;
+    }
+
+    /**
+     * Loads the whole catalog from the DAO once and encodes it.
+     *
+     * Entities reachable through relationships are included even when the DAO did not list them directly.
+     */
+    public static CatalogSnapshot build(DAO dao) {
+        return build(dao.loadAll(Album.class), dao.loadAll(Musician.class), dao.loadAll(MusicianInstrument.class));
+    }
+
+    public static CatalogSnapshot build(Collection<Album> albums, Collection<Musician> musicians,
+                                        Collection<MusicianInstrument> musicianInstruments) {
+        Builder builder = new Builder();
+        for (Album album : albums) {
+            builder.albumId(album);
+        }
+        for (Musician musician : musicians) {
+            builder.musicianId(musician);
+        }
+        for (MusicianInstrument musicianInstrument : musicianInstruments) {
+            builder.addPerformance(musicianInstrument);
+        }
+        return builder.build();
+    }
+
+    public int albumCount() {
+        return albums.length;
+    }
+
+    public int musicianCount() {
+        return musicians.length;
+    }
+
+    public int instrumentCount() {
+        return instruments.length;
+    }
+
+    public int performanceCount() {
+        return performanceMusicians.length;
+    }
+
+    public Album album(int id) {
+        return albums[id];
+    }
+
+    public Musician musician(int id) {
+        return musicians[id];
+    }
+
+    public MusicalInstrument instrument(int id) {
+        return instruments[id];
+    }
+
+    /**
+     * Returns the id of the album, or -1 when it is not part of the snapshot.
+     */
+    public int albumId(Album album) {
+        Integer id = albumIds.get(album);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the id of the musician, or -1 when it is not part of the snapshot.
+     */
+    public int musicianId(Musician musician) {
+        Integer id = musicianIds.get(musician);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the id of the instrument, or -1 when it is not part of the snapshot.
+     */
+    public int instrumentId(MusicalInstrument instrument) {
+        Integer id = instrumentIds.get(instrument);
+        return id == null ? -1 : id;
+    }
+
+    public int releaseYear(int album) {
+        return releaseYears[album];
+    }
+
+    /**
+     * The earliest release year in the snapshot; only meaningful when {@link #albumCount()} is positive.
+     */
+    public int firstYear() {
+        return firstYear;
+    }
+
+    /**
+     * The latest release year in the snapshot; only meaningful when {@link #albumCount()} is positive.
+     */
+    public int lastYear() {
+        return lastYear;
+    }
+
+    public int featuredStart(int album) {
+        return featuredOffsets[album];
+    }
+
+    public int featuredEnd(int album) {
+        return featuredOffsets[album + 1];
+    }
+
+    public int featuredMusician(int index) {
+        return featuredMusicians[index];
+    }
+
+    public int albumsStart(int musician) {
+        return musicianAlbumOffsets[musician];
+    }
+
+    public int albumsEnd(int musician) {
+        return musicianAlbumOffsets[musician + 1];
+    }
+
+    public int musicianAlbum(int index) {
+        return musicianAlbums[index];
+    }
+
+    public int performanceMusician(int performance) {
+        return performanceMusicians[performance];
+    }
+
+    public int performanceStart(int performance) {
+        return performanceOffsets[performance];
+    }
+
+    public int performanceEnd(int performance) {
+        return performanceOffsets[performance + 1];
+    }
+
+    public int performanceInstrument(int index) {
+        return performanceInstruments[index];
+    }
+
+    /**
+     * Number of albums of each musician released in [startYear, endYear], indexed by musician id.
+     * The year-range index is built on first use and shared by later range queries.
+     */
+    public int[] albumCountsByMusician(int startYear, int endYear) {
+        return yearRangeIndex().counts(startYear, endYear);
+    }
+
+    public YearRangeIndex yearRangeIndex() {
+        YearRangeIndex index = yearRangeIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = yearRangeIndex;
+                if (index == null) {
+                    index = YearRangeIndex.build(this);
+                    yearRangeIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Album ids sorted by the order ECMMiner uses to break ties between equally similar albums.
+     */
+    public int[] tieBreakOrder() {
+        int[] order = tieBreakOrder;
+        if (order == null) {
+            Integer[] boxed = new Integer[albums.length];
+            for (int a = 0; a < boxed.length; a++) {
+                boxed[a] = a;
+            }
+            Arrays.sort(boxed, (x, y) -> ECMMiner.ALBUM_ORDER.compare(albums[x], albums[y]));
+            order = new int[boxed.length];
+            for (int i = 0; i < boxed.length; i++) {
+                order[i] = boxed[i];
+            }
+            tieBreakOrder = order;
+        }
+        return order;
+    }
+
+    /**
+     * The musician &rarr; albums inverted index used by similarity lookups, built on first use.
+     */
+    public AlbumSimilarityIndex similarityIndex() {
+        AlbumSimilarityIndex index = similarityIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = similarityIndex;
+                if (index == null) {
+                    index = AlbumSimilarityIndex.build(this);
+                    similarityIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * The musician &rarr; collaborators graph, built on first use.
+     */
+    public CollaborationGraph collaborationGraph() {
+        CollaborationGraph graph = collaborationGraph;
+        if (graph == null) {
+            synchronized (this) {
+                graph = collaborationGraph;
+                if (graph == null) {
+                    graph = CollaborationGraph.build(this);
+                    collaborationGraph = graph;
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * The instruments played by each musician over all their performances, built on first use.
+     */
+    public MusicianRepertoire repertoire() {
+        MusicianRepertoire result = repertoire;
+        if (result == null) {
+            synchronized (this) {
+                result = repertoire;
+                if (result == null) {
+                    result = MusicianRepertoire.build(this);
+                    repertoire = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Number of distinct musicians featured on the albums of the musician, minus one for the musician themselves,
+     * without building the collaboration graph. Musicians are marked in seenBy with the stamp, which must differ
+     * from the stamps of earlier calls sharing the array.
+     */
+    public int collaboratorCount(int musician, int[] seenBy, int stamp) {
+        int distinct = 0;
+        for (int i = musicianAlbumOffsets[musician]; i < musicianAlbumOffsets[musician + 1]; i++) {
+            int album = musicianAlbums[i];
+            for (int j = featuredOffsets[album]; j < featuredOffsets[album + 1]; j++) {
+                if (seenBy[featuredMusicians[j]] != stamp) {
+                    seenBy[featuredMusicians[j]] = stamp;
+                    distinct++;
+                }
+            }
+        }
+        return distinct - 1;
+    }
+
+    /**
+     * Number of distinct musicians featured on the albums of each musician, minus one for the musician themselves.
+     */
+    public int[] collaboratorCounts() {
+        CollaborationGraph graph = collaborationGraph();
+        int[] counts = new int[musicians.length];
+        for (int m = 0; m < counts.length; m++) {
+            counts[m] = graph.degree(m) - (graph.isFeaturedOnOwnAlbums(m) ? 0 : 1);
+        }
+        return counts;
+    }
+
+    /**
+     * Number of albums released in each year, indexed by {@code year - firstYear()}.
+     */
+    public int[] albumCountsByYear() {
+        int[] counts = new int[lastYear - firstYear + 1];
+        for (int year : releaseYears) {
+            counts[year - firstYear]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Number of performances each instrument appears in, indexed by instrument id.
+     */
+    public int[] instrumentCounts() {
+        int[] counts = new int[instruments.length];
+        for (int instrument : performanceInstruments) {
+            counts[instrument]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Similarity of every album to the given one: the number of musicians of the given album's lineup that are
+     * also featured on the other album, divided by the size of the given album's lineup.
+     */
+    public double[] similarityTo(Album album) {
+        double[] scores = new double[albums.length];
+        List<Musician> lineup = album.getFeaturedMusicians();
+        if (lineup == null || lineup.isEmpty()) {
+            return scores;
+        }
+        int[] weights = new int[musicians.length];
+        for (Musician musician : lineup) {
+            int id = musicianId(musician);
+            if (id >= 0) {
+                weights[id]++;
+            }
+        }
+        int[] seenBy = new int[musicians.length];
+        for (int a = 0; a < albums.length; a++) {
+            int stamp = a + 1;
+            int same = 0;
+            for (int j = featuredOffsets[a]; j < featuredOffsets[a + 1]; j++) {
+                int musician = featuredMusicians[j];
+                if (seenBy[musician] != stamp) {
+                    seenBy[musician] = stamp;
+                    same += weights[musician];
+                }
+            }
+            scores[a] = (double) same / lineup.size();
+        }
+        return scores;
+    }
+
+    private static <T> Map<T, Integer> index(T[] values) {
+        Map<T, Integer> ids = Maps.newHashMapWithExpectedSize(values.length);
+        for (int i = 0; i < values.length; i++) {
+            ids.putIfAbsent(values[i], i);
+        }
+        return ids;
+    }
+
+    /**
+     * Interns entities into dense ids while walking the object graph.
+     */
+    private static class Builder {
+        private final Map<Album, Integer> albumIds = Maps.newHashMap();
+        private final Map<Musician, Integer> musicianIds = Maps.newHashMap();
+        private final Map<MusicalInstrument, Integer> instrumentIds = Maps.newHashMap();
+        private final List<Album> albums = Lists.newArrayList();
+        private final List<Musician> musicians = Lists.newArrayList();
+        private final List<MusicalInstrument> instruments = Lists.newArrayList();
+        private final IntList performanceMusicians = new IntList();
+        private final IntList performanceOffsets = new IntList();
+        private final IntList performanceInstruments = new IntList();
+
+        private Builder() {
+            performanceOffsets.add(0);
+        }
+
+        private int albumId(Album album) {
+            Integer id = albumIds.get(album);
+            if (id == null) {
+                id = albums.size();
+                albumIds.put(album, id);
+                albums.add(album);
+            }
+            return id;
+        }
+
+        private int musicianId(Musician musician) {
+            Integer id = musicianIds.get(musician);
+            if (id == null) {
+                id = musicians.size();
+                musicianIds.put(musician, id);
+                musicians.add(musician);
+            }
+            return id;
+        }
+
+        private int instrumentId(MusicalInstrument instrument) {
+            Integer id = instrumentIds.get(instrument);
+            if (id == null) {
+                id = instruments.size();
+                instrumentIds.put(instrument, id);
+                instruments.add(instrument);
+            }
+            return id;
+        }
+
+        private void addPerformance(MusicianInstrument musicianInstrument) {
+            performanceMusicians.add(musicianId(musicianInstrument.getMusician()));
+            if (musicianInstrument.getMusicalInstruments() != null) {
+                for (MusicalInstrument instrument : musicianInstrument.getMusicalInstruments()) {
+                    performanceInstruments.add(instrumentId(instrument));
+                }
+            }
+            performanceOffsets.add(performanceInstruments.size());
+        }
+
+        /**
+         * Interns everything reachable from the entities seen so far, breadth first.
+         */
+        private void closeOver() {
+            int album = 0;
+            int musician = 0;
+            while (album < albums.size() || musician < musicians.size()) {
+                for (; album < albums.size(); album++) {
+                    List<Musician> lineup = albums.get(album).getFeaturedMusicians();
+                    if (lineup != null) {
+                        for (Musician m : lineup) {
+                            musicianId(m);
+                        }
+                    }
+                }
+                for (; musician < musicians.size(); musician++) {
+                    Collection<Album> discography = musicians.get(musician).getAlbums();
+                    if (discography != null) {
+                        for (Album a : discography) {
+                            albumId(a);
+                        }
+                    }
+                }
+            }
+        }
+
+        private CatalogSnapshot build() {
+            closeOver();
+            int[] releaseYears = new int[albums.size()];
+            IntList featuredOffsets = new IntList();
+            IntList featuredMusicians = new IntList();
+            featuredOffsets.add(0);
+            for (int a = 0; a < albums.size(); a++) {
+                Album album = albums.get(a);
+                releaseYears[a] = album.getReleaseYear();
+                if (album.getFeaturedMusicians() != null) {
+                    for (Musician musician : album.getFeaturedMusicians()) {
+                        featuredMusicians.add(musicianIds.get(musician));
+                    }
+                }
+                featuredOffsets.add(featuredMusicians.size());
+            }
+
+            IntList musicianAlbumOffsets = new IntList();
+            IntList musicianAlbums = new IntList();
+            musicianAlbumOffsets.add(0);
+            for (Musician musician : musicians) {
+                if (musician.getAlbums() != null) {
+                    for (Album album : musician.getAlbums()) {
+                        musicianAlbums.add(albumIds.get(album));
+                    }
+                }
+                musicianAlbumOffsets.add(musicianAlbums.size());
+            }
+
+            return new CatalogSnapshot(
+                    albums.toArray(new Album[0]),
+                    musicians.toArray(new Musician[0]),
+                    instruments.toArray(new MusicalInstrument[0]),
+                    releaseYears,
+                    featuredOffsets.toArray(), featuredMusicians.toArray(),
+                    musicianAlbumOffsets.toArray(), musicianAlbums.toArray(),
+                    performanceMusicians.toArray(), performanceOffsets.toArray(), performanceInstruments.toArray());
+        }
+    }
+}
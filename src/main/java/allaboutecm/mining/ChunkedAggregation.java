@@ -0,0 +1,54 @@
+package allaboutecm.mining;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Fork/join aggregation over the index range [0, size): the range is split in halves down to chunks of about
+ * {@code grain} indices, each chunk is aggregated on its own, and the partial aggregates are merged pairwise
+ * in index order.
+ */
+final class ChunkedAggregation<A> extends RecursiveTask<A> {
+    /**
+     * Aggregates the indices [from, to) into a fresh partial aggregate.
+     */
+    interface Chunk<A> {
+        A aggregate(int from, int to);
+    }
+
+    private final Chunk<A> chunk;
+    private final BinaryOperator<A> merge;
+    private final int grain;
+    private final int from;
+    private final int to;
+
+    private ChunkedAggregation(Chunk<A> chunk, BinaryOperator<A> merge, int grain, int from, int to) {
+        this.chunk = chunk;
+        this.merge = merge;
+        this.grain = grain;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Runs the aggregation on the pool, with about four chunks per worker so that uneven chunks balance out.
+     */
+    static <A> A run(ForkJoinPool pool, int size, Chunk<A> chunk, BinaryOperator<A> merge) {
+        int grain = Math.max(1, size / (pool.getParallelism() * 4));
+        return pool.invoke(new ChunkedAggregation<>(chunk, merge, grain, 0, size));
+    }
+
+    @Override
+    protected A compute() {
+        if (to - from <= grain) {
+            return chunk.aggregate(from, to);
+        }
+        int mid = (from + to) >>> 1;
+        ChunkedAggregation<A> left = new ChunkedAggregation<>(chunk, merge, grain, from, mid);
+        ChunkedAggregation<A> right = new ChunkedAggregation<>(chunk, merge, grain, mid, to);
+        left.fork();
+        A rightResult = right.compute();
+        return merge.apply(left.join(), rightResult);
+    }
+}
@@ -0,0 +1,114 @@
+package allaboutecm.mining;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Musician-to-musician collaborations of a snapshot in compressed sparse row form.
+ *
+ * Row m holds the ids of the other musicians featured on the albums of musician m, sorted ascending and without
+ * duplicates, so the number of collaborators of a musician is the length of their row, membership is a binary
+ * search and the common collaborators of two musicians are a merge of two rows. Rows follow each musician's own
+ * discography, so the graph is only symmetric when the catalog is.
+ */
+public class CollaborationGraph {
+    private final int[] offsets;
+    private final int[] neighbours;
+    private final BitSet featuredOnOwnAlbums;
+
+    private CollaborationGraph(int[] offsets, int[] neighbours, BitSet featuredOnOwnAlbums) {
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.featuredOnOwnAlbums = featuredOnOwnAlbums;
+    }
+
+    public static CollaborationGraph build(CatalogSnapshot snapshot) {
+        int musicians = snapshot.musicianCount();
+        int[] offsets = new int[musicians + 1];
+        IntList neighbours = new IntList();
+        BitSet featuredOnOwnAlbums = new BitSet(musicians);
+        int[] seenBy = new int[musicians];
+
+        for (int m = 0; m < musicians; m++) {
+            int stamp = m + 1;
+            int rowStart = neighbours.size();
+            for (int i = snapshot.albumsStart(m); i < snapshot.albumsEnd(m); i++) {
+                int album = snapshot.musicianAlbum(i);
+                for (int j = snapshot.featuredStart(album); j < snapshot.featuredEnd(album); j++) {
+                    int other = snapshot.featuredMusician(j);
+                    if (seenBy[other] == stamp) {
+                        continue;
+                    }
+                    seenBy[other] = stamp;
+                    if (other == m) {
+                        featuredOnOwnAlbums.set(m);
+                    } else {
+                        neighbours.add(other);
+                    }
+                }
+            }
+            offsets[m + 1] = neighbours.size();
+            neighbours.sort(rowStart, offsets[m + 1]);
+        }
+        return new CollaborationGraph(offsets, neighbours.toArray(), featuredOnOwnAlbums);
+    }
+
+    public int musicianCount() {
+        return offsets.length - 1;
+    }
+
+    public int edgeCount() {
+        return neighbours.length;
+    }
+
+    /**
+     * Number of distinct collaborators of the musician.
+     */
+    public int degree(int musician) {
+        return offsets[musician + 1] - offsets[musician];
+    }
+
+    public int neighboursStart(int musician) {
+        return offsets[musician];
+    }
+
+    public int neighboursEnd(int musician) {
+        return offsets[musician + 1];
+    }
+
+    public int neighbour(int index) {
+        return neighbours[index];
+    }
+
+    public boolean collaborated(int musician, int other) {
+        return Arrays.binarySearch(neighbours, offsets[musician], offsets[musician + 1], other) >= 0;
+    }
+
+    /**
+     * Number of musicians that are collaborators of both musicians.
+     */
+    public int commonCollaborators(int musician, int other) {
+        int i = offsets[musician];
+        int j = offsets[other];
+        int common = 0;
+        while (i < offsets[musician + 1] && j < offsets[other + 1]) {
+            if (neighbours[i] < neighbours[j]) {
+                i++;
+            } else if (neighbours[i] > neighbours[j]) {
+                j++;
+            } else {
+                common++;
+                i++;
+                j++;
+            }
+        }
+        return common;
+    }
+
+    /**
+     * Whether the musician is featured on at least one of their own albums.
+     */
+    public boolean isFeaturedOnOwnAlbums(int musician) {
+        return featuredOnOwnAlbums.get(musician);
+    }
+}
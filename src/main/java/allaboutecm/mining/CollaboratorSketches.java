@@ -0,0 +1,171 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.DAOListener;
+import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate numbers of distinct collaborators, one {@link HyperLogLog} sketch per musician.
+ *
+ * The collaborators of a musician are the other musicians featured with them in album lineups. Each sketch takes
+ * the same few KB however many collaborators the musician has, and adding an album lineup again does not change
+ * the sketches, so albums can be fed in any order and more than once. Sketches built over separate partitions of
+ * the catalog can be merged into the sketches of the whole catalog.
+ *
+ * Register it on an {@link allaboutecm.dataaccess.ObservableDAO} to keep it up to date when albums are saved.
+ * A sketch cannot forget a collaborator: deleting an album does not lower any count until the sketches are
+ * rebuilt with {@link #load(DAO)}.
+ */
+public class CollaboratorSketches implements DAOListener {
+    private static final HashFunction MUSICIAN_HASH = Hashing.murmur3_128(5171);
+
+    private final int precision;
+    private final Map<Musician, HyperLogLog> sketches = Maps.newHashMap();
+
+    public CollaboratorSketches() {
+        this(HyperLogLog.DEFAULT_PRECISION);
+    }
+
+    /**
+     * @Param precision the precision of every sketch, see {@link HyperLogLog#HyperLogLog(int)}.
+     */
+    public CollaboratorSketches(int precision) {
+        HyperLogLog.checkPrecision(precision);
+        this.precision = precision;
+    }
+
+    /**
+     * Replaces the sketches with those of the albums in the DAO.
+     */
+    public synchronized void load(DAO dao) {
+        sketches.clear();
+        for (Album album : dao.loadAll(Album.class)) {
+            addLineup(album);
+        }
+    }
+
+    public synchronized void addAll(Iterable<Album> albums) {
+        for (Album album : albums) {
+            addLineup(album);
+        }
+    }
+
+    @Override
+    public synchronized void saved(Entity entity) {
+        if (entity instanceof Album) {
+            addLineup((Album) entity);
+        } else if (entity instanceof Musician && ((Musician) entity).getAlbums() != null) {
+            for (Album album : ((Musician) entity).getAlbums()) {
+                addLineup(album);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void added(Entity entity, String relationship, Collection<? extends Entity> related) {
+        if (entity instanceof Musician && "albums".equals(relationship)) {
+            for (Entity album : related) {
+                addLineup((Album) album);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void deleted(Entity entity) {
+        if (entity instanceof Musician) {
+            sketches.remove(entity);
+        }
+    }
+
+    /**
+     * Merges the sketches of another partition of the catalog into these.
+     */
+    public void merge(CollaboratorSketches other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("cannot merge sketches of different precision");
+        }
+        Map<Musician, HyperLogLog> others = other.copySketches();
+        synchronized (this) {
+            for (Map.Entry<Musician, HyperLogLog> entry : others.entrySet()) {
+                sketch(entry.getKey()).merge(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Copied under the lock of this instance only, so that two instances merging into each other cannot deadlock.
+     */
+    private synchronized Map<Musician, HyperLogLog> copySketches() {
+        Map<Musician, HyperLogLog> copy = Maps.newHashMapWithExpectedSize(sketches.size());
+        for (Map.Entry<Musician, HyperLogLog> entry : sketches.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().copy());
+        }
+        return copy;
+    }
+
+    /**
+     * The estimated number of distinct collaborators of the musician.
+     */
+    public synchronized long estimate(Musician musician) {
+        HyperLogLog sketch = sketches.get(musician);
+        return sketch == null ? 0 : sketch.estimate();
+    }
+
+    /**
+     * The k musicians with the highest estimated number of collaborators.
+     */
+    public synchronized List<Musician> mostSocial(int k) {
+        TopK<Musician> topK = new TopK<>(k, ECMMiner.MUSICIAN_ORDER);
+        for (Map.Entry<Musician, HyperLogLog> entry : sketches.entrySet()) {
+            topK.offer(entry.getKey(), entry.getValue().estimate());
+        }
+        return topK.toList();
+    }
+
+    /**
+     * The relative standard error of every estimate.
+     */
+    public double relativeError() {
+        return HyperLogLog.relativeError(precision);
+    }
+
+    public synchronized int musicianCount() {
+        return sketches.size();
+    }
+
+    public synchronized long sizeInBytes() {
+        return (long) sketches.size() * (1 << precision);
+    }
+
+    private void addLineup(Album album) {
+        List<Musician> lineup = album.getFeaturedMusicians();
+        if (lineup == null) {
+            return;
+        }
+        long[] hashes = new long[lineup.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = MUSICIAN_HASH.hashUnencodedChars(String.valueOf(lineup.get(i).getName())).asLong();
+        }
+        for (int i = 0; i < hashes.length; i++) {
+            HyperLogLog sketch = sketch(lineup.get(i));
+            for (int j = 0; j < hashes.length; j++) {
+                if (!lineup.get(j).equals(lineup.get(i))) {
+                    sketch.add(hashes[j]);
+                }
+            }
+        }
+    }
+
+    private HyperLogLog sketch(Musician musician) {
+        return sketches.computeIfAbsent(musician, m -> new HyperLogLog(precision));
+    }
+}
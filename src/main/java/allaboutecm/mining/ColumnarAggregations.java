@@ -0,0 +1,380 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.Edges;
+import allaboutecm.dataaccess.Projection;
+import allaboutecm.dataaccess.Scored;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The rankings of {@link allaboutecm.dataaccess.AggregatingDAO} computed in process from projected columns, for
+ * DAOs that cannot aggregate inside the store. Only database ids, names, release years and relationship endpoints
+ * are read; the rankings return ids and scores, so the caller maps the top k entities only.
+ *
+ * Musicians and instruments are grouped by name, like their entities' equality, albums by database id. Each call
+ * projects what it needs afresh, so the results follow the current content of the DAO.
+ */
+class ColumnarAggregations {
+    private static final Comparator<String> NAME_ORDER = Comparator.nullsLast(Comparator.naturalOrder());
+
+    private final DAO dao;
+
+    ColumnarAggregations(DAO dao) {
+        this.dao = dao;
+    }
+
+    List<Scored> albumCountsPerMusician(int startYear, int endYear, int limit) {
+        Names musicians = new Names(dao.project(Musician.class, "name"), "name");
+        Projection albums = dao.project(Album.class, "releaseYear");
+        Rows albumRows = new Rows(albums.ids());
+        int[] years = albums.ints("releaseYear");
+        Edges discographies = dao.projectEdges(Musician.class, "albums");
+
+        IntList pairs = new IntList();
+        for (int e = 0; e < discographies.size(); e++) {
+            int m = musicians.of(discographies.sources()[e]);
+            int a = albumRows.row(discographies.targets()[e]);
+            if (m >= 0 && a >= 0 && years[a] >= startYear && years[a] <= endYear) {
+                pairs.add(m);
+                pairs.add(a);
+            }
+        }
+        int[] counts = new int[musicians.size()];
+        for (long pair : distinct(pairs, albumRows.size())) {
+            counts[(int) (pair / albumRows.size())]++;
+        }
+        return musicians.top(limit, counts, false);
+    }
+
+    List<Scored> collaboratorCounts(int limit) {
+        Names musicians = new Names(dao.project(Musician.class, "name"), "name");
+        Rows albumRows = new Rows(dao.project(Album.class).ids());
+        Edges discographies = dao.projectEdges(Musician.class, "albums");
+        Edges lineups = dao.projectEdges(Album.class, "featuredMusicians");
+
+        // A musician saved with their albums only stores the albums edges, so lineups are the union of both.
+        IntList members = new IntList();
+        IntList credits = new IntList();
+        for (int e = 0; e < discographies.size(); e++) {
+            int m = musicians.of(discographies.sources()[e]);
+            int a = albumRows.row(discographies.targets()[e]);
+            if (m >= 0 && a >= 0) {
+                members.add(a);
+                members.add(m);
+                credits.add(m);
+                credits.add(a);
+            }
+        }
+        for (int e = 0; e < lineups.size(); e++) {
+            int a = albumRows.row(lineups.sources()[e]);
+            int m = musicians.of(lineups.targets()[e]);
+            if (m >= 0 && a >= 0) {
+                members.add(a);
+                members.add(m);
+            }
+        }
+        long[] discography = distinct(credits, albumRows.size());
+        int[][] lineup = adjacency(distinct(members, musicians.size()), albumRows.size(), musicians.size());
+        int[][] albumsOf = adjacency(discography, musicians.size(), albumRows.size());
+
+        // Like the entity scan, a musician counts themselves only when featured on one of their own albums, and
+        // the count is then reduced by one.
+        boolean[] featuredOnOwnAlbums = new boolean[musicians.size()];
+        for (int e = 0; e < lineups.size(); e++) {
+            int a = albumRows.row(lineups.sources()[e]);
+            int m = musicians.of(lineups.targets()[e]);
+            if (m >= 0 && a >= 0 && Arrays.binarySearch(discography, (long) m * albumRows.size() + a) >= 0) {
+                featuredOnOwnAlbums[m] = true;
+            }
+        }
+        int[] counts = new int[musicians.size()];
+        int[] seenBy = new int[musicians.size()];
+        for (int m = 0; m < counts.length; m++) {
+            seenBy[m] = m + 1;
+            for (int a : albumsOf[m]) {
+                for (int other : lineup[a]) {
+                    if (seenBy[other] != m + 1) {
+                        seenBy[other] = m + 1;
+                        counts[m]++;
+                    }
+                }
+            }
+            counts[m] -= featuredOnOwnAlbums[m] ? 0 : 1;
+        }
+        return musicians.top(limit, counts, true);
+    }
+
+    List<Scored> albumCountsPerYear(int limit) {
+        YearHistogram histogram = releaseYears();
+        List<Scored> scored = Lists.newArrayList();
+        for (int year : histogram.top(limit)) {
+            scored.add(new Scored(year, histogram.count(year)));
+        }
+        return scored;
+    }
+
+    List<Scored> instrumentCountsPerMusician(int limit) {
+        Names musicians = new Names(dao.project(Musician.class, "name"), "name");
+        Names instruments = new Names(dao.project(MusicalInstrument.class, "name"), "name");
+        Edges players = dao.projectEdges(MusicianInstrument.class, "musician");
+        Edges played = dao.projectEdges(MusicianInstrument.class, "musicalInstruments");
+
+        Map<Long, Integer> playerOf = Maps.newHashMapWithExpectedSize(players.size());
+        for (int e = 0; e < players.size(); e++) {
+            int m = musicians.of(players.targets()[e]);
+            if (m >= 0) {
+                playerOf.put(players.sources()[e], m);
+            }
+        }
+        IntList pairs = new IntList();
+        for (int e = 0; e < played.size(); e++) {
+            Integer m = playerOf.get(played.sources()[e]);
+            int i = instruments.of(played.targets()[e]);
+            if (m != null && i >= 0) {
+                pairs.add(m);
+                pairs.add(i);
+            }
+        }
+        int[] counts = new int[musicians.size()];
+        boolean[] plays = new boolean[musicians.size()];
+        for (int m : playerOf.values()) {
+            plays[m] = true;
+        }
+        for (long pair : distinct(pairs, instruments.size())) {
+            counts[(int) (pair / instruments.size())]++;
+        }
+        return musicians.top(limit, counts, plays);
+    }
+
+    List<Scored> instrumentFrequency(int limit) {
+        Names instruments = new Names(dao.project(MusicalInstrument.class, "name"), "name");
+        Edges played = dao.projectEdges(MusicianInstrument.class, "musicalInstruments");
+        int[] counts = new int[instruments.size()];
+        for (int e = 0; e < played.size(); e++) {
+            int i = instruments.of(played.targets()[e]);
+            if (i >= 0) {
+                counts[i]++;
+            }
+        }
+        return instruments.top(limit, counts, false);
+    }
+
+    List<Scored> similarAlbums(List<String> lineup, int limit) {
+        Projection albums = dao.project(Album.class, "releaseYear", "recordNumber", "albumName");
+        Rows albumRows = new Rows(albums.ids());
+        Names musicians = new Names(dao.project(Musician.class, "name"), "name");
+        Edges lineups = dao.projectEdges(Album.class, "featuredMusicians");
+
+        int[] weights = new int[musicians.size()];
+        for (String name : lineup) {
+            int m = musicians.named(name);
+            if (m >= 0) {
+                weights[m]++;
+            }
+        }
+        IntList pairs = new IntList();
+        for (int e = 0; e < lineups.size(); e++) {
+            int a = albumRows.row(lineups.sources()[e]);
+            int m = musicians.of(lineups.targets()[e]);
+            if (a >= 0 && m >= 0 && weights[m] > 0) {
+                pairs.add(a);
+                pairs.add(m);
+            }
+        }
+        int[] same = new int[albumRows.size()];
+        for (long pair : distinct(pairs, musicians.size())) {
+            same[(int) (pair / musicians.size())] += weights[(int) (pair % musicians.size())];
+        }
+
+        int[] years = albums.ints("releaseYear");
+        String[] recordNumbers = albums.strings("recordNumber");
+        String[] albumNames = albums.strings("albumName");
+        Comparator<Integer> order = Comparator.<Integer>comparingInt(a -> years[a]).reversed()
+                .thenComparing(a -> recordNumbers[a], NAME_ORDER)
+                .thenComparing(a -> albumNames[a], NAME_ORDER);
+        TopK<Integer> topK = new TopK<>(limit, order);
+        for (int a = 0; a < same.length; a++) {
+            topK.offer(a, (double) same[a] / Math.max(lineup.size(), 1));
+        }
+        List<Scored> scored = Lists.newArrayList();
+        for (int a : topK.toList()) {
+            scored.add(new Scored(albums.ids()[a], (double) same[a] / Math.max(lineup.size(), 1)));
+        }
+        return scored;
+    }
+
+    YearHistogram releaseYears() {
+        YearHistogram histogram = new YearHistogram();
+        for (int year : dao.project(Album.class, "releaseYear").ints("releaseYear")) {
+            histogram.add(year);
+        }
+        return histogram;
+    }
+
+    ReleaseHistograms releaseHistograms() {
+        Projection albums = dao.project(Album.class, "releaseYear", "style", "releaseFormat");
+        int[] years = albums.ints("releaseYear");
+        String[] styles = albums.strings("style");
+        String[] formats = albums.strings("releaseFormat");
+        ReleaseHistograms histograms = new ReleaseHistograms();
+        for (int a = 0; a < albums.size(); a++) {
+            histograms.add(years[a], styles[a], formats[a]);
+        }
+        return histograms;
+    }
+
+    /**
+     * The distinct (first, second) pairs of a flat pair list, encoded as {@code first * width + second}, sorted.
+     */
+    private static long[] distinct(IntList pairs, int width) {
+        long[] encoded = new long[pairs.size() / 2];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = (long) pairs.get(2 * i) * width + pairs.get(2 * i + 1);
+        }
+        Arrays.sort(encoded);
+        int size = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            if (i == 0 || encoded[i] != encoded[i - 1]) {
+                encoded[size++] = encoded[i];
+            }
+        }
+        return Arrays.copyOf(encoded, size);
+    }
+
+    /**
+     * Neighbour lists from sorted encoded pairs.
+     */
+    private static int[][] adjacency(long[] pairs, int rows, int width) {
+        int[] degrees = new int[rows];
+        for (long pair : pairs) {
+            degrees[(int) (pair / width)]++;
+        }
+        int[][] neighbours = new int[rows][];
+        for (int r = 0; r < rows; r++) {
+            neighbours[r] = new int[degrees[r]];
+            degrees[r] = 0;
+        }
+        for (long pair : pairs) {
+            int r = (int) (pair / width);
+            neighbours[r][degrees[r]++] = (int) (pair % width);
+        }
+        return neighbours;
+    }
+
+    /**
+     * Row numbers of database ids, by binary search over the sorted ids.
+     */
+    private static class Rows {
+        private final long[] sorted;
+        private final int[] rows;
+
+        private Rows(long[] ids) {
+            Integer[] order = new Integer[ids.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> ids[i]));
+            this.sorted = new long[ids.length];
+            this.rows = new int[ids.length];
+            for (int i = 0; i < order.length; i++) {
+                sorted[i] = ids[order[i]];
+                rows[i] = order[i];
+            }
+        }
+
+        private int size() {
+            return sorted.length;
+        }
+
+        /**
+         * The row of the id, or -1 when it was not projected.
+         */
+        private int row(long id) {
+            int i = Arrays.binarySearch(sorted, id);
+            return i < 0 ? -1 : rows[i];
+        }
+    }
+
+    /**
+     * Entities grouped into dense ids by name; each name is keyed by the lowest database id carrying it.
+     */
+    private static class Names {
+        private final Rows rows;
+        private final int[] groupOfRow;
+        private final List<String> names = Lists.newArrayList();
+        private final Map<String, Integer> groups = Maps.newHashMap();
+        private long[] keys = new long[16];
+
+        private Names(Projection projection, String property) {
+            this.rows = new Rows(projection.ids());
+            this.groupOfRow = new int[projection.size()];
+            String[] column = projection.strings(property);
+            for (int r = 0; r < column.length; r++) {
+                long id = projection.ids()[r];
+                Integer group = groups.get(column[r]);
+                if (group == null) {
+                    group = names.size();
+                    groups.put(column[r], group);
+                    names.add(column[r]);
+                    if (group == keys.length) {
+                        keys = Arrays.copyOf(keys, group * 2);
+                    }
+                    keys[group] = id;
+                }
+                keys[group] = Math.min(keys[group], id);
+                groupOfRow[r] = group;
+            }
+        }
+
+        private int size() {
+            return names.size();
+        }
+
+        /**
+         * The group of the entity with the database id, or -1 when it was not projected.
+         */
+        private int of(long id) {
+            int r = rows.row(id);
+            return r < 0 ? -1 : groupOfRow[r];
+        }
+
+        private int named(String name) {
+            Integer group = groups.get(name);
+            return group == null ? -1 : group;
+        }
+
+        private List<Scored> top(int limit, int[] counts, boolean withZeros) {
+            boolean[] included = new boolean[counts.length];
+            Arrays.fill(included, withZeros);
+            return top(limit, counts, included);
+        }
+
+        /**
+         * The limit best groups by count, by name on ties; groups that were not included are only ranked
+         * when their count is positive.
+         */
+        private List<Scored> top(int limit, int[] counts, boolean[] included) {
+            TopK<Integer> topK = new TopK<>(limit, Comparator.comparing(names::get, NAME_ORDER));
+            for (int g = 0; g < counts.length; g++) {
+                if (counts[g] > 0 || included[g]) {
+                    topK.offer(g, counts[g]);
+                }
+            }
+            List<Scored> scored = Lists.newArrayList();
+            for (int g : topK.toList()) {
+                scored.add(new Scored(keys[g], counts[g]));
+            }
+            return scored;
+        }
+    }
+}
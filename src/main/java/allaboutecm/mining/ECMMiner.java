@@ -1,23 +1,183 @@
 package allaboutecm.mining;
 
+import allaboutecm.dataaccess.AggregatingDAO;
 import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.Scored;
 import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
 import allaboutecm.model.MusicalInstrument;
 import allaboutecm.model.Musician;
 import allaboutecm.model.MusicianInstrument;
 import com.google.common.collect.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 /**
  * Note that you can extend the Neo4jDAO class to make implementing this class easier.
  */
 public class ECMMiner {
+    /**
+     * Tie-break orders used when two results have the same score.
+     */
+    static final Comparator<Musician> MUSICIAN_ORDER =
+            Comparator.comparing(Musician::getName, Comparator.nullsLast(Comparator.naturalOrder()));
+    static final Comparator<Album> ALBUM_ORDER =
+            Comparator.comparingInt(Album::getReleaseYear).reversed()
+                    .thenComparing(Album::getRecordNumber, Comparator.nullsLast(Comparator.naturalOrder()))
+                    .thenComparing(Album::getAlbumName, Comparator.nullsLast(Comparator.naturalOrder()));
+    static final Comparator<MusicalInstrument> INSTRUMENT_ORDER =
+            Comparator.comparing(MusicalInstrument::getName, Comparator.nullsLast(Comparator.naturalOrder()));
+    static final Comparator<Integer> YEAR_ORDER = Comparator.naturalOrder();
+
     private final DAO dao;
+    private volatile CatalogSnapshot snapshot;
+    private LiveAggregates liveAggregates;
+    private boolean aggregationPushdown;
+    private boolean projection;
+    private AlbumMinHashIndex approximateSimilarity;
+    private AlbumNeighbours precomputedSimilarity;
+    private CollaboratorSketches approximateCollaborators;
+    private ForkJoinPool pool;
 
     public ECMMiner(DAO dao) {
         this.dao = dao;
     }
 
+    public ECMMiner(DAO dao, CatalogSnapshot snapshot) {
+        this.dao = dao;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Loads the catalog from the DAO once; later queries scan the snapshot instead of the DAO
+     * until {@link #setSnapshot(CatalogSnapshot)} is called with null.
+     */
+    public CatalogSnapshot takeSnapshot() {
+        snapshot = CatalogSnapshot.build(dao);
+        return snapshot;
+    }
+
+    /**
+     * Serves queries from a snapshot file right away, and catches up with the store in the background: once the
+     * executor has loaded a snapshot from the DAO, it replaces the one read from the file, which is then rewritten
+     * from it for the next start. A query reads the snapshot once, so it sees either the old or the new one whole.
+     *
+     * @return the snapshot loaded from the DAO, once it is in use.
+     */
+    public CompletableFuture<CatalogSnapshot> warmStart(Path file, Executor executor) throws IOException {
+        boolean compressed = SnapshotFile.isCompressed(file);
+        snapshot = SnapshotFile.read(file);
+        return CompletableFuture.supplyAsync(() -> {
+            CatalogSnapshot live = takeSnapshot();
+            try {
+                SnapshotFile.write(live, file, compressed);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return live;
+        }, executor);
+    }
+
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(CatalogSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public LiveAggregates getLiveAggregates() {
+        return liveAggregates;
+    }
+
+    /**
+     * Lets the rankings that have a maintained leaderboard answer from it in O(k).
+     * The aggregates must be kept current by the DAO's writes, see {@link LiveAggregates}.
+     */
+    public void setLiveAggregates(LiveAggregates liveAggregates) {
+        this.liveAggregates = liveAggregates;
+    }
+
+    public boolean isAggregationPushdown() {
+        return aggregationPushdown;
+    }
+
+    /**
+     * When enabled and the DAO supports it, rankings are computed inside the store and only the top k entities
+     * are loaded. Off by default, so a DAO's queries only run when asked for. Snapshots and live aggregates still
+     * take precedence.
+     */
+    public void setAggregationPushdown(boolean aggregationPushdown) {
+        this.aggregationPushdown = aggregationPushdown;
+    }
+
+    public boolean isProjection() {
+        return projection;
+    }
+
+    /**
+     * When enabled, rankings that are not pushed down to the store are computed over projected columns
+     * ({@link DAO#project}, {@link DAO#projectEdges}) instead of mapped entities, and only the top k entities are
+     * loaded. Snapshots, live aggregates and aggregation pushdown still take precedence.
+     */
+    public void setProjection(boolean projection) {
+        this.projection = projection;
+    }
+
+    public AlbumMinHashIndex getApproximateSimilarity() {
+        return approximateSimilarity;
+    }
+
+    /**
+     * Switches mostSimilarAlbums to approximate lookups through the given MinHash index, or back to exact
+     * lookups when null.
+     */
+    public void setApproximateSimilarity(AlbumMinHashIndex approximateSimilarity) {
+        this.approximateSimilarity = approximateSimilarity;
+    }
+
+    public AlbumNeighbours getPrecomputedSimilarity() {
+        return precomputedSimilarity;
+    }
+
+    /**
+     * Answers mostSimilarAlbums from precomputed neighbour lists for the albums and k they cover.
+     */
+    public void setPrecomputedSimilarity(AlbumNeighbours precomputedSimilarity) {
+        this.precomputedSimilarity = precomputedSimilarity;
+    }
+
+    public CollaboratorSketches getApproximateCollaborators() {
+        return approximateCollaborators;
+    }
+
+    /**
+     * Switches mostSocialMusicians to estimated collaborator counts, within the sketches' relative error,
+     * or back to exact counts when null.
+     */
+    public void setApproximateCollaborators(CollaboratorSketches approximateCollaborators) {
+        this.approximateCollaborators = approximateCollaborators;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Runs the aggregations in chunks on the given pool and merges the partial results before the final top k,
+     * or sequentially when null. Both modes return the same results.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
     /**
      * Returns the most prolific musician in terms of number of albums released.
      *
@@ -26,55 +186,51 @@ public class ECMMiner {
      * When startYear/endYear is negative, that means startYear/endYear is ignored.
      */
     public List<Musician> mostProlificMusicians(int k, int startYear, int endYear) {
+        CatalogSnapshot snapshot = this.snapshot;
         if (startYear < 1900 || endYear < 1900 || startYear > Calendar.getInstance().get(Calendar.YEAR) || endYear > Calendar.getInstance().get(Calendar.YEAR) || k <= 0) {
             return Lists.newArrayList();
         }
-        Collection<Musician> musicians = dao.loadAll(Musician.class);
-        Map<String, Musician> nameMap = Maps.newHashMap();
-        for (Musician m : musicians) {
-            nameMap.put(m.getName(), m);
+        if (liveAggregates != null && liveAggregates.coversAllYears(startYear, endYear)) {
+            return liveAggregates.mostProlificMusicians(k);
         }
-
-        ListMultimap<String, Album> multimap = MultimapBuilder.treeKeys().arrayListValues().build();
-        ListMultimap<Integer, Musician> countMap = MultimapBuilder.treeKeys().arrayListValues().build();
-
-        for (Musician musician : musicians) {
-            Set<Album> albums = musician.getAlbums();
-            for (Album album : albums) {
+        if (snapshot != null) {
+            YearRangeIndex index = snapshot.yearRangeIndex();
+            return rank(snapshot.musicianCount(), (from, to) -> {
+                TopK<Musician> topK = new TopK<>(k, MUSICIAN_ORDER);
+                for (int m = from; m < to; m++) {
+                    int count = index.count(m, startYear, endYear);
+                    if (count > 0) {
+                        topK.offer(snapshot.musician(m), count);
+                    }
+                }
+                return topK;
+            });
+        }
+        AggregatingDAO aggregating = aggregatingDAO();
+        if (aggregating != null) {
+            return resolve(aggregating, Musician.class, aggregating.albumCountsPerMusician(startYear, endYear, k));
+        }
+        if (projection) {
+            return resolve(Musician.class, columns().albumCountsPerMusician(startYear, endYear, k));
+        }
+        return scan(Musician.class, k, MUSICIAN_ORDER, (topK, musician) -> {
+            int count = 0;
+            if (musician.getAlbums() == null) {
+                return;
+            }
+            for (Album album : musician.getAlbums()) {
                 boolean toInclude =
                         !((startYear > 0 && album.getReleaseYear() < startYear) ||
                                 (endYear > 0 && album.getReleaseYear() > endYear));
 
                 if (toInclude) {
-                    multimap.put(musician.getName(), album);
+                    count++;
                 }
             }
-        }
-
-        Map<String, Collection<Album>> albumMultimap = multimap.asMap();
-        for (String name : albumMultimap.keySet()) {
-            Collection<Album> albums = albumMultimap.get(name);
-            int size = albums.size();
-            countMap.put(size, nameMap.get(name));
-        }
-
-        List<Musician> result = Lists.newArrayList();
-        List<Integer> sortedKeys = Lists.newArrayList(countMap.keySet());
-        sortedKeys.sort(Ordering.natural().reverse());
-        for (Integer count : sortedKeys) {
-            List<Musician> list = countMap.get(count);
-
-            if (result.size() + list.size() >= k) {
-                int newAddition = k - result.size();
-                for (int i = 0; i < newAddition; i++) {
-                    result.add(list.get(i));
-                }
-            } else {
-                result.addAll(list);
+            if (count > 0) {
+                topK.offer(musician, count);
             }
-        }
-
-        return result;
+        });
     }
 
     /**
@@ -83,28 +239,21 @@ public class ECMMiner {
      * @Param k the number of musicians to be returned.
      */
     public List<Musician> mostTalentedMusicians(int k) {
+        CatalogSnapshot snapshot = this.snapshot;
         if (k <= 0) {
             return Lists.newArrayList();
         }
-        int count = k;
-        Collection<MusicianInstrument> musicianInstruments = dao.loadAll(MusicianInstrument.class);
-        List<MusicianInstrument> list = new ArrayList<>(musicianInstruments);
-        Collections.sort(list, new Comparator<MusicianInstrument>() {
-            @Override
-            public int compare(MusicianInstrument o1, MusicianInstrument o2) {
-                return o2.getMusicalInstruments().size() - o1.getMusicalInstruments().size();
-            }
-        });
-        List<Musician> result = Lists.newArrayList();
-        if (count > list.size()) {
-            count = list.size();
+        if (snapshot != null) {
+            return snapshot.repertoire().top(k);
         }
-        List<MusicianInstrument> selected = list.subList(0, count);
-
-        for (MusicianInstrument m : selected) {
-            result.add(m.getMusician());
+        AggregatingDAO aggregating = aggregatingDAO();
+        if (aggregating != null) {
+            return resolve(aggregating, Musician.class, aggregating.instrumentCountsPerMusician(k));
         }
-        return result;
+        if (projection) {
+            return resolve(Musician.class, columns().instrumentCountsPerMusician(k));
+        }
+        return MusicianRepertoire.encode(stream(MusicianInstrument.class)::iterator).top(k);
     }
 
     /**
@@ -114,36 +263,42 @@ public class ECMMiner {
      */
 
     public List<Musician> mostSocialMusicians(int k) {
+        CatalogSnapshot snapshot = this.snapshot;
         if (k <= 0) {
             return Lists.newArrayList();
         }
-        Collection<Musician> musicians = dao.loadAll(Musician.class);
-        ListMultimap<Integer, Musician> musicianList = MultimapBuilder.treeKeys().arrayListValues().build();
-
-        for (Musician m : musicians) {
-            Set<Album> albums = m.getAlbums();
-            HashSet<Musician> musicianHashSet = new HashSet<>();
-            for (Album a : albums) {
-                List<Musician> albumOfMusician = a.getFeaturedMusicians();
-                musicianHashSet.addAll(Sets.newHashSet(albumOfMusician));
-            }
-            musicianList.put(musicianHashSet.size() - 1, m);
-        }
-        List<Musician> result = Lists.newArrayList();
-        List<Integer> sorting = Lists.newArrayList(musicianList.keySet());
-        sorting.sort(Ordering.natural().reverse());
-        for (Integer count : sorting) {
-            List<Musician> list = musicianList.get(count);
-            if (result.size() + list.size() >= k) {
-                int newCount = k - result.size();
-                for (int i = 0; i < newCount; i++) {
-                    result.add(list.get(i));
+        if (approximateCollaborators != null) {
+            return approximateCollaborators.mostSocial(k);
+        }
+        if (snapshot != null) {
+            int[] counts = snapshot.collaboratorCounts();
+            return rank(counts.length, (from, to) -> {
+                TopK<Musician> topK = new TopK<>(k, MUSICIAN_ORDER);
+                for (int m = from; m < to; m++) {
+                    topK.offer(snapshot.musician(m), counts[m]);
                 }
-            } else {
-                result.addAll(list);
-            }
+                return topK;
+            });
         }
-        return result;
+        AggregatingDAO aggregating = aggregatingDAO();
+        if (aggregating != null) {
+            return resolve(aggregating, Musician.class, aggregating.collaboratorCounts(k));
+        }
+        if (projection) {
+            return resolve(Musician.class, columns().collaboratorCounts(k));
+        }
+        List<Musician> musicians = Lists.newArrayList(dao.loadAll(Musician.class));
+
+        // Interning the loaded musicians once lets the collaborator sets be built over int ids.
+        CatalogSnapshot loaded = CatalogSnapshot.build(Lists.newArrayList(), musicians, Lists.newArrayList());
+        return rank(musicians.size(), (from, to) -> {
+            TopK<Musician> topK = new TopK<>(k, MUSICIAN_ORDER);
+            int[] seenBy = new int[loaded.musicianCount()];
+            for (int i = from; i < to; i++) {
+                topK.offer(musicians.get(i), loaded.collaboratorCount(loaded.musicianId(musicians.get(i)), seenBy, i + 1));
+            }
+            return topK;
+        });
     }
 
     /**
@@ -153,40 +308,120 @@ public class ECMMiner {
      */
 
     public List<Integer> busiestYears(int k) {
-        if (k > 0) {
-            Collection<Album> albums = dao.loadAll(Album.class);
-            ListMultimap<Integer, Album> albumMap = MultimapBuilder.treeKeys().arrayListValues().build();
-            ListMultimap<Integer, Integer> countMap = MultimapBuilder.treeKeys().arrayListValues().build();
-            for (Album a : albums) {
-                int year = a.getReleaseYear();
-                albumMap.put(year, a);
+        CatalogSnapshot snapshot = this.snapshot;
+        AggregatingDAO aggregating = aggregatingDAO();
+        if (k > 0 && liveAggregates != null) {
+            return liveAggregates.busiestYears(k);
+        } else if (k > 0 && snapshot != null) {
+            TopK<Integer> topK = new TopK<>(k, YEAR_ORDER);
+            int[] counts = snapshot.albumCountsByYear();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    topK.offer(snapshot.firstYear() + i, counts[i]);
+                }
             }
-
-            for (Integer i : albumMap.keySet()) {
-                int totalAlbum = albumMap.get(i).size();
-                countMap.put(totalAlbum, i);
+            return topK.toList();
+        } else if (k > 0 && (aggregating != null || projection)) {
+            List<Integer> result = Lists.newArrayList();
+            List<Scored> ranked = aggregating != null
+                    ? aggregating.albumCountsPerYear(k) : columns().albumCountsPerYear(k);
+            for (Scored scored : ranked) {
+                result.add((int) scored.getKey());
             }
+            return result;
+        } else if (k > 0) {
+            return yearHistogram().top(k);
+        } else {
+            return new ArrayList<>();
+        }
+    }
 
-            List<Integer> result = Lists.newArrayList();
-            List<Integer> sortedKeys = Lists.newArrayList(countMap.keySet());
-            sortedKeys.sort(Ordering.natural().reverse());
-            for (Integer count : sortedKeys) {
-                List<Integer> list = countMap.get(count);
-                if (result.size() + list.size() >= k) {
-                    int remain = k - result.size();
-                    for (int i = 0; i < remain; i++) {
-                        result.add(list.get(i));
-                    }
-                } else {
-                    result.addAll(list);
+    /**
+     * Busiest years in [startYear, endYear] in terms of number of albums released.
+     *
+     * @Param k the number of years to be returned.
+     * @Param startYear, endYear between the two years [startYear, endYear].
+     */
+    public List<Integer> busiestYears(int k, int startYear, int endYear) {
+        CatalogSnapshot snapshot = this.snapshot;
+        int currentYear = Calendar.getInstance().get(Calendar.YEAR);
+        if (k <= 0 || startYear < 1900 || endYear < 1900 || startYear > currentYear || endYear > currentYear) {
+            return Lists.newArrayList();
+        }
+        if (liveAggregates != null) {
+            TopK<Integer> topK = new TopK<>(k, YEAR_ORDER);
+            for (int year = startYear; year <= endYear; year++) {
+                int count = liveAggregates.albumCount(year);
+                if (count > 0) {
+                    topK.offer(year, count);
                 }
             }
+            return topK.toList();
+        }
+        if (snapshot != null) {
+            TopK<Integer> topK = new TopK<>(k, YEAR_ORDER);
+            int[] counts = snapshot.albumCountsByYear();
+            for (int year = Math.max(startYear, snapshot.firstYear()); year <= Math.min(endYear, snapshot.lastYear()); year++) {
+                if (counts[year - snapshot.firstYear()] > 0) {
+                    topK.offer(year, counts[year - snapshot.firstYear()]);
+                }
+            }
+            return topK.toList();
+        }
+        return yearHistogram().top(k, startYear, endYear);
+    }
 
-            return result;
+    /**
+     * Per-year album counts over the catalog, by style and by release format, from a single pass over the albums.
+     */
+    public ReleaseHistograms releaseHistograms() {
+        CatalogSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            ReleaseHistograms histograms = new ReleaseHistograms();
+            for (int a = 0; a < snapshot.albumCount(); a++) {
+                histograms.accept(snapshot.album(a));
+            }
+            return histograms;
+        }
+        if (projection) {
+            return columns().releaseHistograms();
+        }
+        ReleaseHistograms histograms = new ReleaseHistograms();
+        stream(Album.class).forEach(histograms);
+        return histograms;
+    }
 
-        } else {
-            return new ArrayList<>();
+    /**
+     * Busiest years of each style. Use {@link #releaseHistograms()} to get the breakdowns by style and by
+     * release format from the same pass.
+     *
+     * @Param k the number of years to be returned for each style.
+     */
+    public Map<String, List<Integer>> busiestYearsByStyle(int k) {
+        if (k <= 0) {
+            return Maps.newTreeMap();
+        }
+        return busiestYears(k, releaseHistograms().byStyle());
+    }
+
+    /**
+     * Busiest years of each release format.
+     *
+     * @Param k the number of years to be returned for each release format.
+     */
+    public Map<String, List<Integer>> busiestYearsByReleaseFormat(int k) {
+        if (k <= 0) {
+            return Maps.newTreeMap();
         }
+        return busiestYears(k, releaseHistograms().byReleaseFormat());
+    }
+
+    private static Map<String, List<Integer>> busiestYears(int k, Map<String, YearHistogram> histograms) {
+        Map<String, List<Integer>> result = Maps.newTreeMap();
+        for (Map.Entry<String, YearHistogram> entry : histograms.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().top(k));
+        }
+        return result;
     }
 
     /**
@@ -199,37 +434,44 @@ public class ECMMiner {
      */
 
     public List<Album> mostSimilarAlbums(int k, Album album) {
+        CatalogSnapshot snapshot = this.snapshot;
         if (k <= 0) {
             return Lists.newArrayList();
         }
-        Collection<Album> albums = dao.loadAll(Album.class);
-        List<Album> list = new ArrayList<>(albums);
+        if (precomputedSimilarity != null && precomputedSimilarity.covers(album, k)) {
+            return precomputedSimilarity.mostSimilar(album, k);
+        }
+        if (approximateSimilarity != null) {
+            return approximateSimilarity.mostSimilar(album, k);
+        }
+        if (snapshot != null) {
+            return snapshot.similarityIndex().mostSimilar(album, k);
+        }
+        AggregatingDAO aggregating = aggregatingDAO();
+        if (aggregating != null) {
+            List<String> lineup = Lists.newArrayList();
+            for (Musician m : album.getFeaturedMusicians()) {
+                lineup.add(m.getName());
+            }
+            return resolve(aggregating, Album.class, aggregating.similarAlbums(lineup, k));
+        }
+        if (projection) {
+            List<String> lineup = Lists.newArrayList();
+            for (Musician m : album.getFeaturedMusicians()) {
+                lineup.add(m.getName());
+            }
+            return resolve(Album.class, columns().similarAlbums(lineup, k));
+        }
         List<Musician> musician = album.getFeaturedMusicians();
-        ListMultimap<Double, Album> map = MultimapBuilder.treeKeys().arrayListValues().build();
-        for (Album a : list) {
+        return scan(Album.class, k, ALBUM_ORDER, (topK, a) -> {
             double same = 0;
             for (Musician m : musician) {
-                if (a.getFeaturedMusicians().contains(m)) {
+                if (a.getFeaturedMusicians() != null && a.getFeaturedMusicians().contains(m)) {
                     same++;
                 }
             }
-            map.put(same / musician.size(), a);
-        }
-        List<Album> result = Lists.newArrayList();
-        List<Double> sortedKeys = Lists.newArrayList(map.keySet());
-        sortedKeys.sort(Ordering.natural().reverse());
-        for (Double d : sortedKeys) {
-            List<Album> a = map.get(d);
-            if (result.size() + a.size() >= k) {
-                int newAddition = k - result.size();
-                for (int i = 0; i < newAddition; i++) {
-                    result.add(a.get(i));
-                }
-            } else {
-                result.addAll(a);
-            }
-        }
-        return result;
+            topK.offer(a, musician.isEmpty() ? 0 : same / musician.size());
+        });
     }
 
     /**
@@ -240,43 +482,195 @@ public class ECMMiner {
      */
 
     public List<MusicalInstrument> mostPopularInstrument(int k) {
+        CatalogSnapshot snapshot = this.snapshot;
         if (k <= 0) {
             return Lists.newArrayList();
         }
-        Collection<MusicianInstrument> musicianInstruments = dao.loadAll(MusicianInstrument.class);
-        List<MusicalInstrument> list = new ArrayList<>();
-        for (MusicianInstrument musicianInstrument : musicianInstruments) {
-            list.addAll(musicianInstrument.getMusicalInstruments());
-        }
-        Map<MusicalInstrument, Integer> results = new LinkedHashMap<>();
-        for (MusicalInstrument s : list) {
-            if (results.get(s) != null) {
-                results.put(s, results.get(s) + 1);
-            } else {
-                results.put(s, 1);
+        if (liveAggregates != null) {
+            return liveAggregates.mostPopularInstrument(k);
+        }
+        TopK<MusicalInstrument> topK = new TopK<>(k, INSTRUMENT_ORDER);
+        if (snapshot != null) {
+            int[] counts = snapshot.instrumentCounts();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    topK.offer(snapshot.instrument(i), counts[i]);
+                }
+            }
+            return topK.toList();
+        }
+        AggregatingDAO aggregating = aggregatingDAO();
+        if (aggregating != null) {
+            return resolve(aggregating, MusicalInstrument.class, aggregating.instrumentFrequency(k));
+        }
+        if (projection) {
+            return resolve(MusicalInstrument.class, columns().instrumentFrequency(k));
+        }
+        InstrumentUsage usage = InstrumentUsage.encode(stream(MusicianInstrument.class)::iterator);
+        return usage.top(k, pool == null ? usage.counts() : usage.counts(pool, pool.getParallelism() * 4));
+    }
+
+    /**
+     * Computes several metrics together. Without a snapshot or aggregation pushdown, the entity types the metrics
+     * need are loaded once into a snapshot shared by all of them, so the per-musician and per-album aggregates are
+     * built only once.
+     */
+    public MiningReport report(MiningRequest request) {
+        ECMMiner miner = this;
+        if (snapshot == null && aggregatingDAO() == null && !projection) {
+            Set<Class<?>> sources = Sets.newHashSet();
+            for (MiningRequest.Metric metric : request.getMetrics()) {
+                sources.add(metric.getSource());
             }
+            CatalogSnapshot shared = CatalogSnapshot.build(
+                    sources.contains(Album.class) ? dao.loadAll(Album.class) : Lists.newArrayList(),
+                    sources.contains(Musician.class) ? dao.loadAll(Musician.class) : Lists.newArrayList(),
+                    sources.contains(MusicianInstrument.class) ? dao.loadAll(MusicianInstrument.class) : Lists.newArrayList());
+            miner = new ECMMiner(dao, shared);
+            miner.liveAggregates = liveAggregates;
+            miner.approximateSimilarity = approximateSimilarity;
+            miner.precomputedSimilarity = precomputedSimilarity;
+            miner.approximateCollaborators = approximateCollaborators;
+            miner.pool = pool;
+        }
+
+        MiningReport report = new MiningReport();
+        if (request.contains(MiningRequest.Metric.PROLIFIC_MUSICIANS)) {
+            report.setProlificMusicians(miner.mostProlificMusicians(request.getK(MiningRequest.Metric.PROLIFIC_MUSICIANS),
+                    request.getProlificStartYear(), request.getProlificEndYear()));
+        }
+        if (request.contains(MiningRequest.Metric.TALENTED_MUSICIANS)) {
+            report.setTalentedMusicians(miner.mostTalentedMusicians(request.getK(MiningRequest.Metric.TALENTED_MUSICIANS)));
+        }
+        if (request.contains(MiningRequest.Metric.SOCIAL_MUSICIANS)) {
+            report.setSocialMusicians(miner.mostSocialMusicians(request.getK(MiningRequest.Metric.SOCIAL_MUSICIANS)));
+        }
+        if (request.contains(MiningRequest.Metric.BUSIEST_YEARS)) {
+            int k = request.getK(MiningRequest.Metric.BUSIEST_YEARS);
+            report.setBusiestYears(request.getBusiestStartYear() < 0 || request.getBusiestEndYear() < 0
+                    ? miner.busiestYears(k)
+                    : miner.busiestYears(k, request.getBusiestStartYear(), request.getBusiestEndYear()));
+        }
+        if (request.contains(MiningRequest.Metric.SIMILAR_ALBUMS)) {
+            report.setSimilarAlbums(miner.mostSimilarAlbums(request.getK(MiningRequest.Metric.SIMILAR_ALBUMS),
+                    request.getSimilarTo()));
+        }
+        if (request.contains(MiningRequest.Metric.POPULAR_INSTRUMENTS)) {
+            report.setPopularInstruments(miner.mostPopularInstrument(request.getK(MiningRequest.Metric.POPULAR_INSTRUMENTS)));
         }
+        return report;
+    }
 
-        ListMultimap<Integer, MusicalInstrument> newMap = MultimapBuilder.treeKeys().arrayListValues().build();
-        for (Map.Entry<MusicalInstrument, Integer> entry : results.entrySet()) {
-            MusicalInstrument key = entry.getKey();
-            Integer values = entry.getValue();
-            newMap.put(values, key);
+    /**
+     * Ranks the indices [0, size) with per-chunk selectors, merged when running on the pool.
+     */
+    private <T> List<T> rank(int size, ChunkedAggregation.Chunk<TopK<T>> chunk) {
+        if (pool == null) {
+            return chunk.aggregate(0, size).toList();
         }
+        return ChunkedAggregation.run(pool, size, chunk, (left, right) -> {
+            left.addAll(right);
+            return left;
+        }).toList();
+    }
 
-        List<MusicalInstrument> result = Lists.newArrayList();
-        List<Integer> sortedKeys = Lists.newArrayList(newMap.keySet());
-        sortedKeys.sort(Ordering.natural().reverse());
-        for (Integer count : sortedKeys) {
-            List<MusicalInstrument> l = newMap.get(count);
+    /**
+     * Every entity of a class, streamed page by page when the DAO can do so without keeping them all, and loaded
+     * whole otherwise.
+     */
+    private <E extends Entity> Stream<E> stream(Class<E> clazz) {
+        return dao.streamsInPages() ? dao.stream(clazz) : dao.loadAll(clazz).stream();
+    }
 
-            if (result.size() + l.size() >= k) {
-                int newAddition = k - result.size();
-                for (int i = 0; i < newAddition; i++) {
-                    result.add(l.get(i));
-                }
-            } else {
-                result.addAll(l);
+    /**
+     * Ranks every entity of a class: streamed through a single selector, or chunked on the pool.
+     */
+    private <E extends Entity, T> List<T> scan(Class<E> clazz, int k, Comparator<? super T> order,
+                                               BiConsumer<TopK<T>, E> offer) {
+        if (pool == null) {
+            TopK<T> topK = new TopK<>(k, order);
+            stream(clazz).forEach(entity -> offer.accept(topK, entity));
+            return topK.toList();
+        }
+        List<E> entities = Lists.newArrayList(dao.loadAll(clazz));
+        return rank(entities.size(), (from, to) -> {
+            TopK<T> topK = new TopK<>(k, order);
+            for (E entity : entities.subList(from, to)) {
+                offer.accept(topK, entity);
+            }
+            return topK;
+        });
+    }
+
+    private YearHistogram yearHistogram() {
+        if (projection) {
+            return columns().releaseYears();
+        }
+        if (pool == null) {
+            YearHistogram histogram = new YearHistogram();
+            stream(Album.class).forEach(a -> histogram.add(a.getReleaseYear()));
+            return histogram;
+        }
+        List<Album> list = Lists.newArrayList(dao.loadAll(Album.class));
+        return ChunkedAggregation.run(pool, list.size(), (from, to) -> {
+            YearHistogram histogram = new YearHistogram();
+            for (Album a : list.subList(from, to)) {
+                histogram.add(a.getReleaseYear());
+            }
+            return histogram;
+        }, (left, right) -> {
+            left.addAll(right);
+            return left;
+        });
+    }
+
+    private AggregatingDAO aggregatingDAO() {
+        if (aggregationPushdown && dao instanceof AggregatingDAO && ((AggregatingDAO) dao).supportsAggregation()) {
+            return (AggregatingDAO) dao;
+        }
+        return null;
+    }
+
+    private ColumnarAggregations columns() {
+        return new ColumnarAggregations(dao);
+    }
+
+    /**
+     * Loads the entities behind ranked ids, in one round trip when the DAO can load by ids.
+     */
+    private <T extends Entity> List<T> resolve(Class<T> clazz, List<Scored> ranked) {
+        if (dao instanceof AggregatingDAO && ((AggregatingDAO) dao).supportsAggregation()) {
+            return resolve((AggregatingDAO) dao, clazz, ranked);
+        }
+        List<T> result = Lists.newArrayList();
+        for (Scored scored : ranked) {
+            T entity = dao.load(clazz, scored.getKey());
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the entities behind ranked ids in one round trip, keeping the rank order.
+     */
+    private static <T extends Entity> List<T> resolve(AggregatingDAO aggregating, Class<T> clazz, List<Scored> ranked) {
+        Set<Long> ids = Sets.newLinkedHashSet();
+        for (Scored scored : ranked) {
+            ids.add(scored.getKey());
+        }
+        Map<Long, T> byId = Maps.newHashMap();
+        if (!ids.isEmpty()) {
+            for (T entity : aggregating.loadAll(clazz, ids)) {
+                byId.put(entity.getId(), entity);
+            }
+        }
+        List<T> result = Lists.newArrayList();
+        for (Scored scored : ranked) {
+            T entity = byId.get(scored.getKey());
+            if (entity != null) {
+                result.add(entity);
             }
         }
         return result;
@@ -0,0 +1,124 @@
+package allaboutecm.mining;
+
+/**
+ * A HyperLogLog sketch of the number of distinct 64-bit hashes added to it.
+ *
+ * The sketch keeps {@code 2^precision} one-byte registers, so its size does not depend on how many values are
+ * added; at the default precision of 12 it takes 4 KB and estimates within {@link #relativeError()} (about 1.6%)
+ * one standard deviation of the time. Sketches of the same precision merge losslessly: the merge estimates the
+ * size of the union of what was added to either sketch.
+ */
+public class HyperLogLog {
+    public static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @Param precision the number of hash bits used to select a register, between 4 and 16.
+     */
+    public HyperLogLog(int precision) {
+        checkPrecision(precision);
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Adds a value, given as a well-mixed 64-bit hash.
+     */
+    public void add(long hash) {
+        int register = (int) (hash >>> (64 - precision));
+        // The sentinel bit caps the rank when the remaining bits are all zero.
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[register]) {
+            registers[register] = rank;
+        }
+    }
+
+    /**
+     * Folds another sketch of the same precision into this one.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("cannot merge sketches of different precision");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * The estimated number of distinct values added.
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Small cardinalities are counted more precisely from the number of empty registers.
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * The relative standard error of {@link #estimate()}.
+     */
+    public double relativeError() {
+        return relativeError(precision);
+    }
+
+    public static double relativeError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    /**
+     * Size of the registers in bytes.
+     */
+    public int sizeInBytes() {
+        return registers.length;
+    }
+
+    static void checkPrecision(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("precision must be between 4 and 16");
+        }
+    }
+
+    HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        System.arraycopy(registers, 0, copy.registers, 0, registers.length);
+        return copy;
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.MusicalInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense int ids for instrument names, given in the order the names are first seen.
+ *
+ * Instruments with the same name share an id, like they are equal as {@link MusicalInstrument}s; the first
+ * instance seen for a name stands for all of them when ids are decoded.
+ */
+public class InstrumentDictionary {
+    private final Map<String, Integer> ids = Maps.newHashMap();
+    private final List<MusicalInstrument> instruments = Lists.newArrayList();
+
+    /**
+     * The id of the instrument's name, assigning the next id to a name not seen before.
+     */
+    public int encode(MusicalInstrument instrument) {
+        Integer id = ids.get(instrument.getName());
+        if (id == null) {
+            id = instruments.size();
+            ids.put(instrument.getName(), id);
+            instruments.add(instrument);
+        }
+        return id;
+    }
+
+    /**
+     * The id of the name, or -1 when it has not been encoded.
+     */
+    public int id(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public MusicalInstrument instrument(int id) {
+        return instruments.get(id);
+    }
+
+    public int size() {
+        return instruments.size();
+    }
+}
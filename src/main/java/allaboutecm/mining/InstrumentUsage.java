@@ -0,0 +1,102 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.MusicianInstrument;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Dictionary-encoded {@link MusicianInstrument} rows, counted with plain int array increments.
+ *
+ * Each row is reduced to the ids of its instruments, stored in compressed sparse row form. Counting how many
+ * rows use each instrument is then one {@code counts[id]++} per instrument reference. The parallel variant
+ * splits the rows into partitions, counts each partition into its own array and sums the arrays at the end,
+ * so no counter is shared between threads.
+ */
+public class InstrumentUsage {
+    private final InstrumentDictionary dictionary;
+    private final int[] offsets;
+    private final int[] instruments;
+
+    private InstrumentUsage(InstrumentDictionary dictionary, int[] offsets, int[] instruments) {
+        this.dictionary = dictionary;
+        this.offsets = offsets;
+        this.instruments = instruments;
+    }
+
+    public static InstrumentUsage encode(Iterable<MusicianInstrument> musicianInstruments) {
+        InstrumentDictionary dictionary = new InstrumentDictionary();
+        IntList offsets = new IntList();
+        IntList instruments = new IntList();
+        offsets.add(0);
+        for (MusicianInstrument musicianInstrument : musicianInstruments) {
+            for (MusicalInstrument instrument : musicianInstrument.getMusicalInstruments()) {
+                instruments.add(dictionary.encode(instrument));
+            }
+            offsets.add(instruments.size());
+        }
+        return new InstrumentUsage(dictionary, offsets.toArray(), instruments.toArray());
+    }
+
+    public InstrumentDictionary getDictionary() {
+        return dictionary;
+    }
+
+    public int rowCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Number of rows each instrument appears in, indexed by dictionary id.
+     */
+    public int[] counts() {
+        return count(0, rowCount());
+    }
+
+    /**
+     * {@link #counts()}, computed over the given number of row partitions on the pool.
+     */
+    public int[] counts(ForkJoinPool pool, int partitions) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("partitions must be positive");
+        }
+        int rows = rowCount();
+        return pool.submit(() -> IntStream.range(0, partitions).parallel()
+                .mapToObj(p -> count((int) ((long) rows * p / partitions), (int) ((long) rows * (p + 1) / partitions)))
+                .reduce(new int[dictionary.size()], InstrumentUsage::sum)).join();
+    }
+
+    /**
+     * The k instruments used in the most rows.
+     */
+    public List<MusicalInstrument> top(int k, int[] counts) {
+        TopK<MusicalInstrument> topK = new TopK<>(k, ECMMiner.INSTRUMENT_ORDER);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                topK.offer(dictionary.instrument(i), counts[i]);
+            }
+        }
+        return topK.toList();
+    }
+
+    private int[] count(int fromRow, int toRow) {
+        int[] counts = new int[dictionary.size()];
+        for (int i = offsets[fromRow]; i < offsets[toRow]; i++) {
+            counts[instruments[i]]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Sums two count arrays into a new one, leaving both untouched so that the reduction identity is reusable.
+     */
+    private static int[] sum(int[] a, int[] b) {
+        int[] sum = new int[a.length];
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] = a[i] + b[i];
+        }
+        return sum;
+    }
+}
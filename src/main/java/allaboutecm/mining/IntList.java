@@ -0,0 +1,45 @@
+package allaboutecm.mining;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints, used to build the int columns of the miner's indexes without boxing.
+ */
+class IntList {
+    private int[] values;
+    private int size;
+
+    IntList() {
+        this(16);
+    }
+
+    IntList(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Sorts the values in [from, to) ascending.
+     */
+    void sort(int from, int to) {
+        Arrays.sort(values, from, to);
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,104 @@
+package allaboutecm.mining;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Counters kept in rank order, so that the top k can be read in O(k) at any time.
+ *
+ * Ranking follows {@link TopK}: higher counts first, equal counts by the tie-break comparator.
+ * Items whose count drops to zero or below leave the leaderboard. Updates cost O(log n).
+ */
+public class Leaderboard<T> {
+    private final Comparator<? super T> tieBreak;
+    private final Map<T, Entry<T>> entries = Maps.newHashMap();
+    private final NavigableSet<Entry<T>> ranking;
+
+    public Leaderboard(Comparator<? super T> tieBreak) {
+        this.tieBreak = tieBreak;
+        this.ranking = new TreeSet<>(this::compare);
+    }
+
+    /**
+     * Adds delta to the count of the item.
+     */
+    public void add(T item, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        Entry<T> old = entries.remove(item);
+        int count = delta;
+        if (old != null) {
+            ranking.remove(old);
+            count += old.count;
+        }
+        if (count > 0) {
+            Entry<T> entry = new Entry<>(item, count);
+            entries.put(item, entry);
+            ranking.add(entry);
+        }
+    }
+
+    public void remove(T item) {
+        Entry<T> old = entries.remove(item);
+        if (old != null) {
+            ranking.remove(old);
+        }
+    }
+
+    public int count(T item) {
+        Entry<T> entry = entries.get(item);
+        return entry == null ? 0 : entry.count;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Set<T> items() {
+        return entries.keySet();
+    }
+
+    public void clear() {
+        entries.clear();
+        ranking.clear();
+    }
+
+    /**
+     * Returns the k highest ranked items, best first.
+     */
+    public List<T> top(int k) {
+        List<T> result = Lists.newArrayListWithCapacity(Math.min(k, entries.size()));
+        Iterator<Entry<T>> iterator = ranking.iterator();
+        while (result.size() < k && iterator.hasNext()) {
+            result.add(iterator.next().item);
+        }
+        return result;
+    }
+
+    private int compare(Entry<T> a, Entry<T> b) {
+        int byCount = Integer.compare(b.count, a.count);
+        if (byCount != 0) {
+            return byCount;
+        }
+        return tieBreak.compare(a.item, b.item);
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private final int count;
+
+        private Entry(T item, int count) {
+            this.item = item;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.DAOListener;
+import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Leaderboards for the cheap-to-maintain ECMMiner rankings, kept up to date from DAO writes.
+ *
+ * Register it on an {@link allaboutecm.dataaccess.ObservableDAO} and, if the store already has data,
+ * seed it once with {@link #load(DAO)}. Like {@code Neo4jDAO.createOrUpdate}, a save only covers the
+ * saved entity and the entities it refers to directly:
+ * <ul>
+ *     <li>saving a musician sets their album count to the size of their albums and records those albums;</li>
+ *     <li>adding albums to a musician through {@link DAO#addRelated} adds them to the albums recorded for them;</li>
+ *     <li>saving an album records it under its release year;</li>
+ *     <li>saving a musician instrument replaces the instruments it previously contributed.</li>
+ * </ul>
+ * Each album is counted once no matter how often it is saved, under the release year it was last saved with: albums
+ * are tracked by database id once they have one, so re-saving an album with another year moves it to that year.
+ */
+public class LiveAggregates implements DAOListener {
+    private final Leaderboard<Musician> albumsPerMusician = new Leaderboard<>(ECMMiner.MUSICIAN_ORDER);
+    private final Leaderboard<Integer> albumsPerYear = new Leaderboard<>(ECMMiner.YEAR_ORDER);
+    private final Leaderboard<MusicalInstrument> instrumentUsage = new Leaderboard<>(ECMMiner.INSTRUMENT_ORDER);
+
+    private final Map<Object, Integer> albumYears = Maps.newHashMap();
+    private final Map<Musician, Set<Album>> discographies = Maps.newHashMap();
+    private final SetMultimap<Album, Musician> albumMusicians = HashMultimap.create();
+    private final Map<Object, Set<MusicalInstrument>> performances = Maps.newHashMap();
+
+    /**
+     * Replaces the current counters with the content of the DAO.
+     */
+    public synchronized void load(DAO dao) {
+        albumsPerMusician.clear();
+        albumsPerYear.clear();
+        instrumentUsage.clear();
+        albumYears.clear();
+        discographies.clear();
+        albumMusicians.clear();
+        performances.clear();
+
+        for (Album album : dao.loadAll(Album.class)) {
+            saved(album);
+        }
+        for (Musician musician : dao.loadAll(Musician.class)) {
+            saved(musician);
+        }
+        for (MusicianInstrument musicianInstrument : dao.loadAll(MusicianInstrument.class)) {
+            saved(musicianInstrument);
+        }
+    }
+
+    @Override
+    public synchronized void saved(Entity entity) {
+        if (entity instanceof Album) {
+            addAlbum((Album) entity);
+        } else if (entity instanceof Musician) {
+            Musician musician = (Musician) entity;
+            Set<Album> discography = musician.getAlbums() == null
+                    ? ImmutableSet.of() : ImmutableSet.copyOf(musician.getAlbums());
+            for (Album album : discography) {
+                addAlbum(album);
+            }
+            setDiscography(musician, discography);
+        } else if (entity instanceof MusicianInstrument) {
+            MusicianInstrument musicianInstrument = (MusicianInstrument) entity;
+            Set<MusicalInstrument> instruments = musicianInstrument.getMusicalInstruments() == null
+                    ? ImmutableSet.of() : ImmutableSet.copyOf(musicianInstrument.getMusicalInstruments());
+            setPerformance(performanceKey(musicianInstrument), instruments);
+        }
+    }
+
+    @Override
+    public synchronized void added(Entity entity, String relationship, Collection<? extends Entity> related) {
+        if (entity instanceof Musician && "albums".equals(relationship)) {
+            Musician musician = (Musician) entity;
+            Set<Album> discography = Sets.newHashSet(discographies.getOrDefault(musician, ImmutableSet.of()));
+            for (Entity album : related) {
+                addAlbum((Album) album);
+                discography.add((Album) album);
+            }
+            setDiscography(musician, discography);
+        }
+    }
+
+    @Override
+    public synchronized void deleted(Entity entity) {
+        if (entity instanceof Album) {
+            Album album = (Album) entity;
+            Integer year = albumYears.remove(albumKey(album));
+            if (year != null) {
+                albumsPerYear.add(year, -1);
+            }
+            for (Musician musician : Sets.newHashSet(albumMusicians.get(album))) {
+                setDiscography(musician, Sets.difference(discographies.get(musician), ImmutableSet.of(album)));
+            }
+        } else if (entity instanceof Musician) {
+            setDiscography((Musician) entity, ImmutableSet.of());
+            discographies.remove(entity);
+        } else if (entity instanceof MusicianInstrument) {
+            setPerformance(performanceKey((MusicianInstrument) entity), ImmutableSet.of());
+        } else if (entity instanceof MusicalInstrument) {
+            instrumentUsage.remove((MusicalInstrument) entity);
+            for (Set<MusicalInstrument> instruments : performances.values()) {
+                instruments.remove(entity);
+            }
+        }
+    }
+
+    /**
+     * The k musicians with the most albums, over all years.
+     */
+    public synchronized List<Musician> mostProlificMusicians(int k) {
+        return albumsPerMusician.top(k);
+    }
+
+    public synchronized List<Integer> busiestYears(int k) {
+        return albumsPerYear.top(k);
+    }
+
+    public synchronized List<MusicalInstrument> mostPopularInstrument(int k) {
+        return instrumentUsage.top(k);
+    }
+
+    /**
+     * Whether every album known to the leaderboards was released in [startYear, endYear], in which case
+     * per-musician album counts over that range equal the all-time counts.
+     */
+    public synchronized boolean coversAllYears(int startYear, int endYear) {
+        for (Integer year : albumsPerYear.items()) {
+            if (year < startYear || year > endYear) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized int albumCount(Musician musician) {
+        return albumsPerMusician.count(musician);
+    }
+
+    public synchronized int albumCount(int year) {
+        return albumsPerYear.count(year);
+    }
+
+    public synchronized int usageCount(MusicalInstrument instrument) {
+        return instrumentUsage.count(instrument);
+    }
+
+    private void addAlbum(Album album) {
+        Integer previous = albumYears.put(albumKey(album), album.getReleaseYear());
+        if (previous == null || previous != album.getReleaseYear()) {
+            if (previous != null) {
+                albumsPerYear.add(previous, -1);
+            }
+            albumsPerYear.add(album.getReleaseYear(), 1);
+        }
+    }
+
+    private void setDiscography(Musician musician, Set<Album> discography) {
+        Set<Album> previous = discographies.getOrDefault(musician, ImmutableSet.of());
+        for (Album album : previous) {
+            albumMusicians.remove(album, musician);
+        }
+        for (Album album : discography) {
+            albumMusicians.put(album, musician);
+        }
+        discographies.put(musician, Sets.newHashSet(discography));
+        albumsPerMusician.add(musician, discography.size() - previous.size());
+    }
+
+    private void setPerformance(Object key, Set<MusicalInstrument> instruments) {
+        Set<MusicalInstrument> previous = performances.remove(key);
+        if (previous != null) {
+            for (MusicalInstrument instrument : previous) {
+                instrumentUsage.add(instrument, -1);
+            }
+        }
+        if (!instruments.isEmpty()) {
+            performances.put(key, Sets.newHashSet(instruments));
+            for (MusicalInstrument instrument : instruments) {
+                instrumentUsage.add(instrument, 1);
+            }
+        }
+    }
+
+    /**
+     * Unsaved albums are tracked by their natural key, which includes the release year.
+     */
+    private static Object albumKey(Album album) {
+        return album.getId() != null ? album.getId() : album;
+    }
+
+    /**
+     * Musician instruments have no natural key, so they are tracked by database id once they have one.
+     */
+    private static Object performanceKey(MusicianInstrument musicianInstrument) {
+        return musicianInstrument.getId() != null ? musicianInstrument.getId() : musicianInstrument;
+    }
+}
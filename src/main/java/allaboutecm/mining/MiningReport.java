@@ -0,0 +1,67 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+
+import java.util.List;
+
+/**
+ * The results of a {@link MiningRequest}. Metrics that were not requested are null.
+ */
+public class MiningReport {
+    private List<Musician> prolificMusicians;
+    private List<Musician> talentedMusicians;
+    private List<Musician> socialMusicians;
+    private List<Integer> busiestYears;
+    private List<Album> similarAlbums;
+    private List<MusicalInstrument> popularInstruments;
+
+    public List<Musician> getProlificMusicians() {
+        return prolificMusicians;
+    }
+
+    void setProlificMusicians(List<Musician> prolificMusicians) {
+        this.prolificMusicians = prolificMusicians;
+    }
+
+    public List<Musician> getTalentedMusicians() {
+        return talentedMusicians;
+    }
+
+    void setTalentedMusicians(List<Musician> talentedMusicians) {
+        this.talentedMusicians = talentedMusicians;
+    }
+
+    public List<Musician> getSocialMusicians() {
+        return socialMusicians;
+    }
+
+    void setSocialMusicians(List<Musician> socialMusicians) {
+        this.socialMusicians = socialMusicians;
+    }
+
+    public List<Integer> getBusiestYears() {
+        return busiestYears;
+    }
+
+    void setBusiestYears(List<Integer> busiestYears) {
+        this.busiestYears = busiestYears;
+    }
+
+    public List<Album> getSimilarAlbums() {
+        return similarAlbums;
+    }
+
+    void setSimilarAlbums(List<Album> similarAlbums) {
+        this.similarAlbums = similarAlbums;
+    }
+
+    public List<MusicalInstrument> getPopularInstruments() {
+        return popularInstruments;
+    }
+
+    void setPopularInstruments(List<MusicalInstrument> popularInstruments) {
+        this.popularInstruments = popularInstruments;
+    }
+}
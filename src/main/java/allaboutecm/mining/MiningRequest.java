@@ -0,0 +1,119 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The metrics to compute together with {@link ECMMiner#report(MiningRequest)}, each with its own k.
+ */
+public class MiningRequest {
+    public enum Metric {
+        PROLIFIC_MUSICIANS(Musician.class),
+        TALENTED_MUSICIANS(MusicianInstrument.class),
+        SOCIAL_MUSICIANS(Musician.class),
+        BUSIEST_YEARS(Album.class),
+        SIMILAR_ALBUMS(Album.class),
+        POPULAR_INSTRUMENTS(MusicianInstrument.class);
+
+        private final Class<? extends Entity> source;
+
+        Metric(Class<? extends Entity> source) {
+            this.source = source;
+        }
+
+        /**
+         * The entity type the metric is computed from.
+         */
+        public Class<? extends Entity> getSource() {
+            return source;
+        }
+    }
+
+    private final Map<Metric, Integer> ks = new EnumMap<>(Metric.class);
+    private int prolificStartYear;
+    private int prolificEndYear;
+    private int busiestStartYear = -1;
+    private int busiestEndYear = -1;
+    private Album similarTo;
+
+    public MiningRequest prolificMusicians(int k, int startYear, int endYear) {
+        ks.put(Metric.PROLIFIC_MUSICIANS, k);
+        prolificStartYear = startYear;
+        prolificEndYear = endYear;
+        return this;
+    }
+
+    public MiningRequest talentedMusicians(int k) {
+        ks.put(Metric.TALENTED_MUSICIANS, k);
+        return this;
+    }
+
+    public MiningRequest socialMusicians(int k) {
+        ks.put(Metric.SOCIAL_MUSICIANS, k);
+        return this;
+    }
+
+    public MiningRequest busiestYears(int k) {
+        return busiestYears(k, -1, -1);
+    }
+
+    /**
+     * Busiest years in [startYear, endYear]; negative years ask for all years.
+     */
+    public MiningRequest busiestYears(int k, int startYear, int endYear) {
+        ks.put(Metric.BUSIEST_YEARS, k);
+        busiestStartYear = startYear;
+        busiestEndYear = endYear;
+        return this;
+    }
+
+    public MiningRequest similarAlbums(int k, Album album) {
+        ks.put(Metric.SIMILAR_ALBUMS, k);
+        similarTo = album;
+        return this;
+    }
+
+    public MiningRequest popularInstruments(int k) {
+        ks.put(Metric.POPULAR_INSTRUMENTS, k);
+        return this;
+    }
+
+    public Set<Metric> getMetrics() {
+        return Collections.unmodifiableSet(ks.keySet());
+    }
+
+    public boolean contains(Metric metric) {
+        return ks.containsKey(metric);
+    }
+
+    public int getK(Metric metric) {
+        return ks.get(metric);
+    }
+
+    public int getProlificStartYear() {
+        return prolificStartYear;
+    }
+
+    public int getProlificEndYear() {
+        return prolificEndYear;
+    }
+
+    public int getBusiestStartYear() {
+        return busiestStartYear;
+    }
+
+    public int getBusiestEndYear() {
+        return busiestEndYear;
+    }
+
+    public Album getSimilarTo() {
+        return similarTo;
+    }
+}
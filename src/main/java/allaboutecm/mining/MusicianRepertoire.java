@@ -0,0 +1,105 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The instruments each musician plays, as a bitset over instrument ids.
+ *
+ * A musician has one {@link MusicianInstrument} row per album they play on; their bitset is the union of the
+ * instruments of all those rows, so an instrument played on several albums is only counted once and each
+ * musician appears once in the ranking. The number of instruments of a musician is the popcount of their bitset.
+ */
+public class MusicianRepertoire {
+    private final List<Musician> musicians;
+    private final List<BitSet> instruments;
+
+    private MusicianRepertoire(List<Musician> musicians, List<BitSet> instruments) {
+        this.musicians = musicians;
+        this.instruments = instruments;
+    }
+
+    /**
+     * Repertoires of the musicians of a snapshot, indexed by musician id.
+     */
+    public static MusicianRepertoire build(CatalogSnapshot snapshot) {
+        List<Musician> musicians = Lists.newArrayListWithCapacity(snapshot.musicianCount());
+        List<BitSet> instruments = Lists.newArrayListWithCapacity(snapshot.musicianCount());
+        for (int m = 0; m < snapshot.musicianCount(); m++) {
+            musicians.add(snapshot.musician(m));
+            instruments.add(null);
+        }
+        for (int p = 0; p < snapshot.performanceCount(); p++) {
+            BitSet played = instruments.get(snapshot.performanceMusician(p));
+            if (played == null) {
+                played = new BitSet();
+                instruments.set(snapshot.performanceMusician(p), played);
+            }
+            for (int i = snapshot.performanceStart(p); i < snapshot.performanceEnd(p); i++) {
+                played.set(snapshot.performanceInstrument(i));
+            }
+        }
+        return new MusicianRepertoire(musicians, instruments);
+    }
+
+    /**
+     * Repertoires of the musicians of the given rows, with instrument ids from a dictionary of their names.
+     */
+    public static MusicianRepertoire encode(Iterable<MusicianInstrument> musicianInstruments) {
+        InstrumentDictionary dictionary = new InstrumentDictionary();
+        Map<Musician, Integer> ids = Maps.newHashMap();
+        List<Musician> musicians = Lists.newArrayList();
+        List<BitSet> instruments = Lists.newArrayList();
+        for (MusicianInstrument musicianInstrument : musicianInstruments) {
+            Integer m = ids.get(musicianInstrument.getMusician());
+            if (m == null) {
+                m = musicians.size();
+                ids.put(musicianInstrument.getMusician(), m);
+                musicians.add(musicianInstrument.getMusician());
+                instruments.add(new BitSet());
+            }
+            BitSet played = instruments.get(m);
+            for (MusicalInstrument instrument : musicianInstrument.getMusicalInstruments()) {
+                played.set(dictionary.encode(instrument));
+            }
+        }
+        return new MusicianRepertoire(musicians, instruments);
+    }
+
+    public int musicianCount() {
+        return musicians.size();
+    }
+
+    public Musician musician(int id) {
+        return musicians.get(id);
+    }
+
+    /**
+     * Number of distinct instruments the musician plays, or -1 when they have no musician instrument row.
+     */
+    public int instrumentCount(int musician) {
+        BitSet played = instruments.get(musician);
+        return played == null ? -1 : played.cardinality();
+    }
+
+    /**
+     * The k musicians playing the most distinct instruments.
+     */
+    public List<Musician> top(int k) {
+        TopK<Musician> topK = new TopK<>(k, ECMMiner.MUSICIAN_ORDER);
+        for (int m = 0; m < musicians.size(); m++) {
+            BitSet played = instruments.get(m);
+            if (played != null) {
+                topK.offer(musicians.get(m), played.cardinality());
+            }
+        }
+        return topK.toList();
+    }
+}
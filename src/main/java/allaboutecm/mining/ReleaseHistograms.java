@@ -0,0 +1,80 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.Consumer;
+
+/**
+ * Albums per release year over the whole catalog and broken down by style and by release format, filled in a
+ * single pass over the albums.
+ *
+ * Only the counts are kept, so the albums can be streamed through {@link #accept(Album)} and dropped right
+ * after. Albums without a style or release format are only counted in the corresponding overall histogram.
+ */
+public class ReleaseHistograms implements Consumer<Album> {
+    private final YearHistogram overall = new YearHistogram();
+    private final SortedMap<String, YearHistogram> byStyle = Maps.newTreeMap();
+    private final SortedMap<String, YearHistogram> byReleaseFormat = Maps.newTreeMap();
+
+    public static ReleaseHistograms of(Iterable<Album> albums) {
+        ReleaseHistograms histograms = new ReleaseHistograms();
+        for (Album album : albums) {
+            histograms.accept(album);
+        }
+        return histograms;
+    }
+
+    @Override
+    public void accept(Album album) {
+        add(album.getReleaseYear(), album.getStyle(), album.getReleaseFormat());
+    }
+
+    /**
+     * Counts one album from its columns; the style and release format may be null.
+     */
+    public void add(int year, String style, String releaseFormat) {
+        overall.add(year);
+        if (style != null) {
+            byStyle.computeIfAbsent(style, key -> new YearHistogram()).add(year);
+        }
+        if (releaseFormat != null) {
+            byReleaseFormat.computeIfAbsent(releaseFormat, key -> new YearHistogram()).add(year);
+        }
+    }
+
+    /**
+     * Adds the counts of another set of histograms, such as one filled from another part of the catalog.
+     */
+    public void addAll(ReleaseHistograms other) {
+        overall.addAll(other.overall);
+        merge(byStyle, other.byStyle);
+        merge(byReleaseFormat, other.byReleaseFormat);
+    }
+
+    public YearHistogram overall() {
+        return overall;
+    }
+
+    /**
+     * Histograms keyed by style, in style order.
+     */
+    public SortedMap<String, YearHistogram> byStyle() {
+        return byStyle;
+    }
+
+    /**
+     * Histograms keyed by release format, in format order.
+     */
+    public SortedMap<String, YearHistogram> byReleaseFormat() {
+        return byReleaseFormat;
+    }
+
+    private static void merge(Map<String, YearHistogram> into, Map<String, YearHistogram> from) {
+        for (Map.Entry<String, YearHistogram> entry : from.entrySet()) {
+            into.computeIfAbsent(entry.getKey(), key -> new YearHistogram()).addAll(entry.getValue());
+        }
+    }
+}
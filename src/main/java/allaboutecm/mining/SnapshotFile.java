@@ -0,0 +1,366 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.Projection;
+import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import com.github.luben.zstd.Zstd;
+import com.google.common.collect.Maps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * A versioned binary file holding the columns of a {@link CatalogSnapshot}, so that a miner can serve queries from
+ * the last snapshot right after startup instead of loading the catalog from the store first.
+ *
+ * The file starts with a 16-byte header: the magic {@code ECMS}, the format version, the flags and the length of the
+ * payload. The payload, zstd-compressed when the {@link #COMPRESSED} flag is set, holds big-endian columns in this
+ * order:
+ * <ul>
+ *     <li>the album, musician, instrument and performance counts</li>
+ *     <li>the database ids of the albums, musicians and instruments, -1 for unsaved entities</li>
+ *     <li>string columns for the album names, record numbers, styles and release formats, the musician names and the
+ *     instrument names</li>
+ *     <li>the release year column</li>
+ *     <li>the track lists of the albums: their offsets in compressed sparse row form, then a string column of the
+ *     track names</li>
+ *     <li>the edge lists of {@link CatalogSnapshot}, as int ids in compressed sparse row form</li>
+ * </ul>
+ *
+ * A string column is dictionary encoded: the number of distinct strings, the byte length of each, their UTF-8 bytes,
+ * then one int code per row into the distinct strings, -1 for null. Styles, release formats and instrument names
+ * repeat across rows, so each is stored and decoded once.
+ *
+ * The reader maps the file instead of streaming it. Entities are rebuilt with their database id and the properties
+ * the snapshot queries and the {@link AlbumMinHashIndex} read, and without their relationships, which the edge lists hold instead: load them through
+ * the DAO by id for the rest.
+ */
+public class SnapshotFile {
+    public static final int MAGIC = 0x45434D53;
+    public static final int VERSION = 3;
+    public static final int COMPRESSED = 1;
+
+    private static final int HEADER_BYTES = 16;
+    private static final int COMPRESSION_LEVEL = 3;
+
+    private static final Field ALBUM_NAME = Projection.field(Album.class, "albumName");
+    private static final Field RECORD_NUMBER = Projection.field(Album.class, "recordNumber");
+    private static final Field RELEASE_YEAR = Projection.field(Album.class, "releaseYear");
+    private static final Field TRACKS = Projection.field(Album.class, "tracks");
+    private static final Field STYLE = Projection.field(Album.class, "style");
+    private static final Field RELEASE_FORMAT = Projection.field(Album.class, "releaseFormat");
+    private static final Field MUSICIAN_NAME = Projection.field(Musician.class, "name");
+    private static final Field INSTRUMENT_NAME = Projection.field(MusicalInstrument.class, "name");
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Snapshots the catalog of the DAO into a file.
+     */
+    public static CatalogSnapshot write(DAO dao, Path file, boolean compress) throws IOException {
+        CatalogSnapshot snapshot = CatalogSnapshot.build(dao);
+        write(snapshot, file, compress);
+        return snapshot;
+    }
+
+    /**
+     * Writes a snapshot to a file, replacing it whole: the columns go to a sibling file first, which is then moved
+     * over the target, so a reader never maps a half-written file.
+     */
+    public static void write(CatalogSnapshot snapshot, Path file, boolean compress) throws IOException {
+        notNull(snapshot);
+        notNull(file);
+        byte[] payload = payload(snapshot);
+        byte[] stored = compress ? Zstd.compress(payload, COMPRESSION_LEVEL) : payload;
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path partial = Files.createTempFile(directory, file.getFileName().toString(), ".partial");
+        try {
+            try (OutputStream out = Files.newOutputStream(partial)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).putInt(compress ? COMPRESSED : 0).putInt(payload.length);
+                out.write(header.array());
+                out.write(stored);
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * Whether a snapshot file is compressed, read from its header.
+     */
+    public static boolean isCompressed(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading until the header is complete or the file ends.
+            }
+            header.flip();
+            return (checkHeader(header, file) & COMPRESSED) != 0;
+        }
+    }
+
+    /**
+     * Maps a snapshot file and rebuilds the snapshot from its columns.
+     *
+     * @throws IOException when the file is not a snapshot, is of another format version or is truncated.
+     */
+    public static CatalogSnapshot read(Path file) throws IOException {
+        notNull(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(file + " is not a catalog snapshot");
+            }
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int flags = checkHeader(mapped, file);
+            int length = mapped.getInt();
+            ByteBuffer payload = mapped.slice();
+            if ((flags & COMPRESSED) == 0 && payload.remaining() != length) {
+                throw new IOException(file + " is truncated");
+            }
+            try {
+                return decode((flags & COMPRESSED) != 0 ? Zstd.decompress(payload, length) : payload);
+            } catch (RuntimeException e) {
+                throw new IOException(file + " is corrupt", e);
+            }
+        }
+    }
+
+    private static int checkHeader(ByteBuffer header, Path file) throws IOException {
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+            throw new IOException(file + " is not a catalog snapshot");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException(file + " has snapshot format version " + version + ", expected " + VERSION);
+        }
+        return header.getInt();
+    }
+
+    private static byte[] payload(CatalogSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int albums = snapshot.albumCount();
+        int musicians = snapshot.musicianCount();
+        int instruments = snapshot.instrumentCount();
+        int performances = snapshot.performanceCount();
+        out.writeInt(albums);
+        out.writeInt(musicians);
+        out.writeInt(instruments);
+        out.writeInt(performances);
+
+        writeIds(out, albums, snapshot::album);
+        writeIds(out, musicians, snapshot::musician);
+        writeIds(out, instruments, snapshot::instrument);
+
+        writeStrings(out, albums, a -> snapshot.album(a).getAlbumName());
+        writeStrings(out, albums, a -> snapshot.album(a).getRecordNumber());
+        writeStrings(out, albums, a -> snapshot.album(a).getStyle());
+        writeStrings(out, albums, a -> snapshot.album(a).getReleaseFormat());
+        writeStrings(out, musicians, m -> snapshot.musician(m).getName());
+        writeStrings(out, instruments, i -> snapshot.instrument(i).getName());
+
+        for (int a = 0; a < albums; a++) {
+            out.writeInt(snapshot.releaseYear(a));
+        }
+
+        List<String> tracks = new ArrayList<>();
+        for (int a = 0; a < albums; a++) {
+            out.writeInt(tracks.size());
+            List<String> albumTracks = snapshot.album(a).getTracks();
+            if (albumTracks != null) {
+                tracks.addAll(albumTracks);
+            }
+        }
+        out.writeInt(tracks.size());
+        writeStrings(out, tracks.size(), tracks::get);
+
+        writeOffsets(out, albums, snapshot::featuredStart, albums == 0 ? 0 : snapshot.featuredEnd(albums - 1));
+        for (int a = 0; a < albums; a++) {
+            for (int f = snapshot.featuredStart(a); f < snapshot.featuredEnd(a); f++) {
+                out.writeInt(snapshot.featuredMusician(f));
+            }
+        }
+        writeOffsets(out, musicians, snapshot::albumsStart, musicians == 0 ? 0 : snapshot.albumsEnd(musicians - 1));
+        for (int m = 0; m < musicians; m++) {
+            for (int a = snapshot.albumsStart(m); a < snapshot.albumsEnd(m); a++) {
+                out.writeInt(snapshot.musicianAlbum(a));
+            }
+        }
+        for (int p = 0; p < performances; p++) {
+            out.writeInt(snapshot.performanceMusician(p));
+        }
+        writeOffsets(out, performances, snapshot::performanceStart,
+                performances == 0 ? 0 : snapshot.performanceEnd(performances - 1));
+        for (int p = 0; p < performances; p++) {
+            for (int i = snapshot.performanceStart(p); i < snapshot.performanceEnd(p); i++) {
+                out.writeInt(snapshot.performanceInstrument(i));
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeIds(DataOutputStream out, int count, IntFunction<? extends Entity> entities)
+            throws IOException {
+        for (int i = 0; i < count; i++) {
+            Long id = entities.apply(i).getId();
+            out.writeLong(id == null ? -1 : id);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, int count, IntFunction<String> strings)
+            throws IOException {
+        Map<String, Integer> dictionary = Maps.newLinkedHashMap();
+        int[] codes = new int[count];
+        for (int i = 0; i < count; i++) {
+            String string = strings.apply(i);
+            codes[i] = string == null ? -1 : dictionary.computeIfAbsent(string, key -> dictionary.size());
+        }
+        out.writeInt(dictionary.size());
+        List<byte[]> encoded = new ArrayList<>(dictionary.size());
+        for (String string : dictionary.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            out.writeInt(bytes.length);
+        }
+        for (byte[] bytes : encoded) {
+            out.write(bytes);
+        }
+        for (int code : codes) {
+            out.writeInt(code);
+        }
+    }
+
+    private static void writeOffsets(DataOutputStream out, int rows, IntUnaryOperator starts, int end)
+            throws IOException {
+        for (int i = 0; i < rows; i++) {
+            out.writeInt(starts.applyAsInt(i));
+        }
+        out.writeInt(end);
+    }
+
+    private static CatalogSnapshot decode(ByteBuffer in) {
+        int albumCount = in.getInt();
+        int musicianCount = in.getInt();
+        int instrumentCount = in.getInt();
+        int performanceCount = in.getInt();
+
+        Album[] albums = new Album[albumCount];
+        Musician[] musicians = new Musician[musicianCount];
+        MusicalInstrument[] instruments = new MusicalInstrument[instrumentCount];
+        readIds(in, albums, Album::new);
+        readIds(in, musicians, Musician::new);
+        readIds(in, instruments, MusicalInstrument::new);
+
+        readStrings(in, albums, ALBUM_NAME);
+        readStrings(in, albums, RECORD_NUMBER);
+        readStrings(in, albums, STYLE);
+        readStrings(in, albums, RELEASE_FORMAT);
+        readStrings(in, musicians, MUSICIAN_NAME);
+        readStrings(in, instruments, INSTRUMENT_NAME);
+
+        int[] releaseYears = readInts(in, albumCount);
+        for (int a = 0; a < albumCount; a++) {
+            set(RELEASE_YEAR, albums[a], releaseYears[a]);
+        }
+
+        int[] trackOffsets = readInts(in, albumCount + 1);
+        List<String> tracks = Arrays.asList(readStrings(in, trackOffsets[albumCount]));
+        for (int a = 0; a < albumCount; a++) {
+            if (trackOffsets[a + 1] > trackOffsets[a]) {
+                set(TRACKS, albums[a], new ArrayList<>(tracks.subList(trackOffsets[a], trackOffsets[a + 1])));
+            }
+        }
+
+        int[] featuredOffsets = readInts(in, albumCount + 1);
+        int[] featuredMusicians = readInts(in, featuredOffsets[albumCount]);
+        int[] musicianAlbumOffsets = readInts(in, musicianCount + 1);
+        int[] musicianAlbums = readInts(in, musicianAlbumOffsets[musicianCount]);
+        int[] performanceMusicians = readInts(in, performanceCount);
+        int[] performanceOffsets = readInts(in, performanceCount + 1);
+        int[] performanceInstruments = readInts(in, performanceOffsets[performanceCount]);
+
+        return new CatalogSnapshot(albums, musicians, instruments, releaseYears, featuredOffsets, featuredMusicians,
+                musicianAlbumOffsets, musicianAlbums, performanceMusicians, performanceOffsets, performanceInstruments);
+    }
+
+    private static <E extends Entity> void readIds(ByteBuffer in, E[] entities, Supplier<E> factory) {
+        for (int i = 0; i < entities.length; i++) {
+            long id = in.getLong();
+            entities[i] = factory.get();
+            entities[i].setId(id < 0 ? null : id);
+        }
+    }
+
+    private static void readStrings(ByteBuffer in, Object[] entities, Field field) {
+        String[] strings = readStrings(in, entities.length);
+        for (int i = 0; i < entities.length; i++) {
+            if (strings[i] != null) {
+                set(field, entities[i], strings[i]);
+            }
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer in, int count) {
+        int[] lengths = readInts(in, in.getInt());
+        String[] dictionary = new String[lengths.length];
+        for (int i = 0; i < lengths.length; i++) {
+            byte[] bytes = new byte[lengths[i]];
+            in.get(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        int[] codes = readInts(in, count);
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            strings[i] = codes[i] < 0 ? null : dictionary[codes[i]];
+        }
+        return strings;
+    }
+
+    private static int[] readInts(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * Sets a property the way OGM does when it loads an entity, without the validation of the setters, so that
+     * whatever the store held reads back as it was.
+     */
+    private static void set(Field field, Object entity, Object value) {
+        try {
+            field.setAccessible(true);
+            field.set(entity, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot write " + field, e);
+        }
+    }
+}
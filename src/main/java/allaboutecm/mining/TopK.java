@@ -0,0 +1,108 @@
+package allaboutecm.mining;
+
+import com.google.common.collect.Lists;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Bounded top-k selection over scored items.
+ *
+ * Items are ranked by descending score; items with the same score are ranked by the
+ * tie-break comparator in ascending order, so the result does not depend on the order
+ * in which the items are offered. Offering n items costs O(n log k) time and the
+ * selector never holds more than k entries.
+ */
+public class TopK<T> {
+    private final int k;
+    private final Comparator<? super T> tieBreak;
+    private final PriorityQueue<Entry<T>> heap;
+
+    /**
+     * @Param k the maximum number of items to keep.
+     * @Param tieBreak the order of items that have the same score.
+     */
+    public TopK(int k, Comparator<? super T> tieBreak) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        this.k = k;
+        this.tieBreak = tieBreak;
+        // The head of the heap is the worst entry kept so far.
+        this.heap = new PriorityQueue<>(Math.min(k, 1024), (a, b) -> -compare(a.item, a.score, b.item, b.score));
+    }
+
+    /**
+     * Offers an item to the selector. The item is only retained if it ranks within the current top k.
+     *
+     * @Param item the item to be ranked.
+     * @Param score the score of the item, higher is better.
+     */
+    public void offer(T item, double score) {
+        if (heap.size() < k) {
+            heap.add(new Entry<>(item, score));
+            return;
+        }
+        Entry<T> worst = heap.peek();
+        if (compare(item, score, worst.item, worst.score) < 0) {
+            heap.poll();
+            heap.add(new Entry<>(item, score));
+        }
+    }
+
+    /**
+     * Merges the entries kept by another selector into this one.
+     */
+    public void addAll(TopK<? extends T> other) {
+        for (Entry<? extends T> entry : other.heap) {
+            offer(entry.item, entry.score);
+        }
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * The score of the worst entry once k entries are kept, negative infinity before. Items scoring strictly
+     * below it can no longer enter the selection.
+     */
+    public double threshold() {
+        return heap.size() < k ? Double.NEGATIVE_INFINITY : heap.peek().score;
+    }
+
+    /**
+     * Returns the selected items, best first.
+     */
+    public List<T> toList() {
+        List<Entry<T>> entries = Lists.newArrayList(heap);
+        entries.sort((a, b) -> compare(a.item, a.score, b.item, b.score));
+        List<T> result = Lists.newArrayListWithCapacity(entries.size());
+        for (Entry<T> entry : entries) {
+            result.add(entry.item);
+        }
+        return result;
+    }
+
+    /**
+     * Negative when (a, aScore) ranks before (b, bScore).
+     */
+    private int compare(T a, double aScore, T b, double bScore) {
+        int byScore = Double.compare(bScore, aScore);
+        if (byScore != 0) {
+            return byScore;
+        }
+        return tieBreak.compare(a, b);
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private final double score;
+
+        private Entry(T item, double score) {
+            this.item = item;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package allaboutecm.mining;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Number of albums released per year, as a primitive int array indexed by {@code year - firstYear}.
+ *
+ * Release years are a small dense domain, so the histogram starts out covering 1900 to the current year and
+ * only grows for a year outside of it. Feeding it an album costs one array increment and keeps no reference
+ * to the album.
+ */
+public class YearHistogram {
+    static final int FIRST_YEAR = 1900;
+
+    private int firstYear = FIRST_YEAR;
+    private int[] counts = new int[Calendar.getInstance().get(Calendar.YEAR) - FIRST_YEAR + 1];
+    private int total;
+
+    public void add(int year) {
+        cover(year);
+        counts[year - firstYear]++;
+        total++;
+    }
+
+    /**
+     * Adds the counts of another histogram to this one.
+     */
+    public void addAll(YearHistogram other) {
+        if (other.total == 0) {
+            return;
+        }
+        cover(other.firstYear);
+        cover(other.firstYear + other.counts.length - 1);
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[other.firstYear - firstYear + i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    public int count(int year) {
+        int i = year - firstYear;
+        return i < 0 || i >= counts.length ? 0 : counts[i];
+    }
+
+    /**
+     * Number of albums added, over all years.
+     */
+    public int total() {
+        return total;
+    }
+
+    /**
+     * The k years with the most albums.
+     */
+    public List<Integer> top(int k) {
+        return top(k, firstYear, firstYear + counts.length - 1);
+    }
+
+    /**
+     * The k years in [startYear, endYear] with the most albums; years without albums are left out.
+     */
+    public List<Integer> top(int k, int startYear, int endYear) {
+        TopK<Integer> topK = new TopK<>(k, ECMMiner.YEAR_ORDER);
+        int from = Math.max(startYear, firstYear) - firstYear;
+        int to = Math.min(endYear, firstYear + counts.length - 1) - firstYear;
+        for (int i = from; i <= to; i++) {
+            if (counts[i] > 0) {
+                topK.offer(firstYear + i, counts[i]);
+            }
+        }
+        return topK.toList();
+    }
+
+    /**
+     * Grows the array so that it has a slot for the year.
+     */
+    private void cover(int year) {
+        if (year < firstYear) {
+            int grow = firstYear - year;
+            int[] grown = new int[counts.length + grow];
+            System.arraycopy(counts, 0, grown, grow, counts.length);
+            counts = grown;
+            firstYear = year;
+        } else if (year - firstYear >= counts.length) {
+            counts = Arrays.copyOf(counts, year - firstYear + 1);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package allaboutecm.mining;
+
+import java.util.Arrays;
+
+/**
+ * Per-musician prefix counts of albums over release years, for sliding year-range queries.
+ *
+ * For each musician the distinct release years of their albums are stored in ascending order together with
+ * the running number of albums up to and including that year. Counting a musician's albums in a year range is
+ * then two binary searches over at most the number of years since 1900, however many albums they have. The
+ * index only stores the years a musician actually released in, so memory follows the number of
+ * musician&ndash;album edges rather than musicians &times; years.
+ */
+public class YearRangeIndex {
+    private final int[] offsets;
+    private final int[] years;
+    private final int[] cumulative;
+
+    private YearRangeIndex(int[] offsets, int[] years, int[] cumulative) {
+        this.offsets = offsets;
+        this.years = years;
+        this.cumulative = cumulative;
+    }
+
+    public static YearRangeIndex build(CatalogSnapshot snapshot) {
+        int musicians = snapshot.musicianCount();
+        int[] offsets = new int[musicians + 1];
+        IntList years = new IntList();
+        IntList cumulative = new IntList();
+        int[] scratch = new int[16];
+
+        for (int m = 0; m < musicians; m++) {
+            int start = snapshot.albumsStart(m);
+            int size = snapshot.albumsEnd(m) - start;
+            if (scratch.length < size) {
+                scratch = new int[Math.max(size, scratch.length * 2)];
+            }
+            for (int i = 0; i < size; i++) {
+                scratch[i] = snapshot.releaseYear(snapshot.musicianAlbum(start + i));
+            }
+            Arrays.sort(scratch, 0, size);
+            for (int i = 0; i < size; i++) {
+                if (i + 1 == size || scratch[i + 1] != scratch[i]) {
+                    years.add(scratch[i]);
+                    cumulative.add(i + 1);
+                }
+            }
+            offsets[m + 1] = years.size();
+        }
+        return new YearRangeIndex(offsets, years.toArray(), cumulative.toArray());
+    }
+
+    public int musicianCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Number of albums of the musician released in [startYear, endYear].
+     */
+    public int count(int musician, int startYear, int endYear) {
+        if (startYear > endYear) {
+            return 0;
+        }
+        int from = offsets[musician];
+        int to = offsets[musician + 1];
+        return albumsBefore(from, to, endYear + 1) - albumsBefore(from, to, startYear);
+    }
+
+    /**
+     * Number of albums released in [startYear, endYear] for every musician, indexed by musician id.
+     */
+    public int[] counts(int startYear, int endYear) {
+        int[] counts = new int[musicianCount()];
+        for (int m = 0; m < counts.length; m++) {
+            counts[m] = count(m, startYear, endYear);
+        }
+        return counts;
+    }
+
+    /**
+     * Number of albums in runs [from, to) released strictly before the year.
+     */
+    private int albumsBefore(int from, int to, int year) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (years[mid] < year) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low == from ? 0 : cumulative[low - 1];
+    }
+}
@@ -68,12 +68,16 @@ public class MusicianInstrument extends Entity {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         MusicianInstrument that = (MusicianInstrument) o;
+        // Loaded without its musician, as an album's instruments are, only the id tells them apart.
+        if (musician == null || that.musician == null) {
+            return musician == that.musician && id != null && id.equals(that.id);
+        }
         return musician.equals(that.musician) &&
-                musicalInstruments.equals(that.musicalInstruments);
+                Objects.equals(musicalInstruments, that.musicalInstruments);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(musician, musicalInstruments);
+        return musician == null ? Objects.hashCode(id) : Objects.hash(musician, musicalInstruments);
     }
 }
@@ -0,0 +1,169 @@
+package allaboutecm.dataaccess;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.SetMultimap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CsvImporterUnitTest {
+    private static final String HEADER = "recordNumber,albumName,releaseYear,tracks,featuredMusicians,instruments";
+
+    @TempDir
+    Path directory;
+
+    private DAO dao;
+    private List<Entity> saved;
+    private SetMultimap<Entity, Entity> related;
+    private CsvImporter importer;
+
+    @BeforeEach
+    public void setUp() {
+        dao = mock(DAO.class);
+        saved = new CopyOnWriteArrayList<>();
+        AtomicLong ids = new AtomicLong();
+        when(dao.createOrUpdateAll(any())).thenAnswer(invocation -> {
+            Collection<Entity> entities = invocation.getArgument(0);
+            for (Entity entity : entities) {
+                if (entity.getId() == null) {
+                    entity.setId(ids.incrementAndGet());
+                }
+                saved.add(entity);
+            }
+            return Lists.newArrayList(entities);
+        });
+        when(dao.upsert(any())).thenAnswer(invocation -> {
+            Entity entity = invocation.getArgument(0);
+            entity.setId(ids.incrementAndGet());
+            saved.add(entity);
+            return entity;
+        });
+        related = Multimaps.synchronizedSetMultimap(HashMultimap.create());
+        doAnswer(invocation -> {
+            assertEquals("albums", invocation.getArgument(0));
+            related.putAll(invocation.<Multimap<Entity, Entity>>getArgument(1));
+            return null;
+        }).when(dao).addRelated(any(), any());
+        importer = new CsvImporter(dao);
+    }
+
+    private Path csv(String name, String... lines) throws IOException {
+        List<String> content = Lists.newArrayList(HEADER);
+        content.addAll(Lists.newArrayList(lines));
+        return Files.write(directory.resolve(name), content, StandardCharsets.UTF_8);
+    }
+
+    private <T extends Entity> List<T> saved(Class<T> clazz) {
+        return saved.stream().filter(clazz::isInstance).map(clazz::cast).collect(Collectors.toList());
+    }
+
+    @Test
+    public void importsTheAlbumsOfEveryFile() throws IOException {
+        Path first = csv("first.csv",
+                "ECM 1064/65,The Köln Concert,1975,Part I;Part II,Keith Jarrett,Keith Jarrett=Piano",
+                "ECM 1255,\"Standards, Vol. 1\",1983,,Keith Jarrett;Gary Peacock;Jack DeJohnette,"
+                        + "Keith Jarrett=Piano;Jack DeJohnette=Drums");
+        Path second = csv("second.csv",
+                "ECM 1276,Changes,1983,,Keith Jarrett;Jack DeJohnette,Jack DeJohnette=Drums");
+
+        ImportReport report = importer.importFiles(ImmutableList.of(first, second));
+
+        assertEquals(3, report.getRows());
+        assertEquals(3, report.getAlbums());
+        assertEquals(0, report.getRejectedCount());
+        List<Album> albums = saved(Album.class);
+        assertEquals(3, albums.size());
+        Album koln = albums.stream().filter(album -> album.getRecordNumber().equals("ECM 1064/65")).findFirst().get();
+        assertEquals(Lists.newArrayList("Part I", "Part II"), koln.getTracks());
+    }
+
+    @Test
+    public void writesSharedEntitiesOnceAndLinksMusiciansToTheirAlbums() throws IOException {
+        importer.setBatchSize(1);
+        Path file = csv("catalog.csv",
+                "ECM 1255,\"Standards, Vol. 1\",1983,,Keith Jarrett;Jack DeJohnette,"
+                        + "Keith Jarrett=Piano;Jack DeJohnette=Drums",
+                "ECM 1276,Changes,1983,,Keith Jarrett;Jack DeJohnette,Jack DeJohnette=Drums");
+
+        importer.importFiles(ImmutableList.of(file));
+
+        assertEquals(2, saved(MusicalInstrument.class).size());
+        assertEquals(2, saved(MusicianInstrument.class).size());
+        Musician keith = saved(Musician.class).stream()
+                .filter(musician -> musician.getName().equals("Keith Jarrett")).findFirst().get();
+        assertEquals(2, related.get(keith).size());
+        assertTrue(keith.getAlbums().isEmpty());
+        assertEquals(2, saved(Musician.class).size());
+        List<Album> albums = saved(Album.class);
+        assertSame(albums.get(0).getFeaturedMusicians().get(1), albums.get(1).getFeaturedMusicians().get(1));
+    }
+
+    @Test
+    public void reportsInvalidRowsAndDropsDuplicateAlbums() throws IOException {
+        Path file = csv("catalog.csv",
+                "ECM 1064/65,The Köln Concert,1975,,,",
+                "1064/65,The Köln Concert,1975,,,",
+                "ECM 1255,\"Standards, Vol. 1\",1850,,,",
+                "ECM 1276,Changes,1983,,Keith,",
+                "ECM 1064/65,The Köln Concert,1975,,,");
+
+        ImportReport report = importer.importFiles(ImmutableList.of(file));
+
+        assertEquals(5, report.getRows());
+        assertEquals(3, report.getRejectedCount());
+        assertEquals(1, report.getDuplicates());
+        assertEquals(1, report.getAlbums());
+        assertTrue(report.getRejected().contains("catalog.csv:2: The record number must start with 'ECM '!"));
+        assertEquals(Lists.newArrayList("parse", "validate", "de-duplicate", "write"),
+                report.getStages().stream().map(ImportReport.Stage::getName).collect(Collectors.toList()));
+        assertEquals(5, report.getStages().get(1).getItems());
+        assertEquals(1, report.getStages().get(3).getItems());
+    }
+
+    @Test
+    public void failsOnAMissingRequiredColumn() throws IOException {
+        Path file = Files.write(directory.resolve("catalog.csv"),
+                Lists.newArrayList("recordNumber,albumName", "ECM 1064/65,The Köln Concert"), StandardCharsets.UTF_8);
+
+        assertThrows(IllegalArgumentException.class, () -> importer.importFiles(ImmutableList.of(file)));
+    }
+
+    @Test
+    public void aFailedWriteStopsEveryStage() throws IOException {
+        importer.setQueueCapacity(1);
+        importer.setBatchSize(1);
+        List<String> lines = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            lines.add("ECM " + (1000 + i) + ",Album " + i + ",1983,,,");
+        }
+        Path file = csv("catalog.csv", lines.toArray(new String[0]));
+        doThrow(new IllegalStateException("The store is down")).when(dao).createOrUpdateAll(any());
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> importer.importFiles(ImmutableList.of(file)));
+        assertEquals("The store is down", e.getMessage());
+    }
+}
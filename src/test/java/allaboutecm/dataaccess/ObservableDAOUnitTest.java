@@ -0,0 +1,79 @@
+package allaboutecm.dataaccess;
+
+import allaboutecm.dataaccess.neo4j.Neo4jDAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ObservableDAOUnitTest {
+    private DAO delegate;
+    private DAOListener listener;
+    private ObservableDAO dao;
+
+    @BeforeEach
+    public void setUp() {
+        delegate = mock(Neo4jDAO.class);
+        listener = mock(DAOListener.class);
+        dao = new ObservableDAO(delegate);
+        dao.addListener(listener);
+    }
+
+    @Test
+    public void shouldNotifyListenersAfterSave() {
+        Album album = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        when(delegate.createOrUpdate(album)).thenReturn(album);
+
+        assertSame(album, dao.createOrUpdate(album));
+        verify(listener).saved(album);
+    }
+
+    @Test
+    public void shouldNotifyListenersOfEveryEntityOfABulkSave() {
+        Album koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Album standards = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        when(delegate.createOrUpdateAll(any())).thenReturn(Lists.newArrayList(koln, standards));
+
+        assertEquals(Lists.newArrayList(koln, standards), dao.createOrUpdateAll(Lists.newArrayList(koln, standards)));
+        verify(listener).saved(koln);
+        verify(listener).saved(standards);
+    }
+
+    @Test
+    public void shouldNotifyListenersAfterDelete() {
+        Musician musician = new Musician("Keith Jarrett");
+        dao.delete(musician);
+
+        verify(delegate).delete(musician);
+        verify(listener).deleted(musician);
+    }
+
+    @Test
+    public void shouldNotNotifyListenersWhenTheWriteFails() {
+        Musician musician = new Musician("Keith Jarrett");
+        doThrow(new IllegalArgumentException("The entity does not exist")).when(delegate).delete(musician);
+
+        assertThrows(IllegalArgumentException.class, () -> dao.delete(musician));
+        verify(listener, never()).deleted(any());
+    }
+
+    @Test
+    public void shouldStopNotifyingRemovedListeners() {
+        Album album = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        when(delegate.createOrUpdate(album)).thenReturn(album);
+        dao.removeListener(listener);
+
+        dao.createOrUpdate(album);
+        verify(listener, never()).saved(any());
+    }
+
+    @Test
+    public void shouldRejectNullDelegate() {
+        assertThrows(NullPointerException.class, () -> new ObservableDAO(null));
+    }
+}
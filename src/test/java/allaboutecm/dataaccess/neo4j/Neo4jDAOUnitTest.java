@@ -1,15 +1,25 @@
 package allaboutecm.dataaccess.neo4j;
 
+import allaboutecm.dataaccess.AggregatingDAO;
+import allaboutecm.dataaccess.BatchTiming;
+import allaboutecm.dataaccess.CsvImporter;
 import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.Edges;
+import allaboutecm.dataaccess.Projection;
+import allaboutecm.dataaccess.Scored;
 import allaboutecm.model.Album;
 import allaboutecm.model.MusicalInstrument;
 import allaboutecm.model.Musician;
 import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.neo4j.ogm.config.Configuration;
 import org.neo4j.ogm.session.Session;
 import org.neo4j.ogm.session.SessionFactory;
@@ -19,12 +29,17 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
 
 /**
  * TODO: add test cases to adequately test the Neo4jDAO class.
@@ -416,4 +431,405 @@ class Neo4jDAOUnitTest {
 //        assertEquals(0, dao.loadAll(MusicianInstrument.class).size());
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void aggregatesAlbumCountsPerMusicianInsideTheStore() {
+        Album album1 = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Album album2 = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        Musician keith = new Musician("Keith Jarrett");
+        Musician gary = new Musician("Gary Peacock");
+        keith.setAlbums(Sets.newHashSet(album1, album2));
+        gary.setAlbums(Sets.newHashSet(album2));
+        dao.createOrUpdate(keith);
+        dao.createOrUpdate(gary);
+
+        AggregatingDAO aggregating = (AggregatingDAO) dao;
+        assertTrue(aggregating.supportsAggregation());
+
+        List<Scored> all = aggregating.albumCountsPerMusician(1900, 2020, 10);
+        assertEquals(2, all.size());
+        assertEquals(keith.getId().longValue(), all.get(0).getKey());
+        assertEquals(2, all.get(0).getScore());
+
+        List<Scored> eighties = aggregating.albumCountsPerMusician(1980, 1989, 1);
+        assertEquals(1, eighties.size());
+        assertEquals(gary.getId().longValue(), eighties.get(0).getKey());
+    }
+
+    @Test
+    public void aggregatesAlbumsPerYearAndInstrumentsInsideTheStore() {
+        dao.createOrUpdate(new Album(1975, "ECM 1064/65", "The Köln Concert"));
+        dao.createOrUpdate(new Album(1983, "ECM 1255", "Standards, Vol. 1"));
+        dao.createOrUpdate(new Album(1983, "ECM 1276", "Changes"));
+        dao.createOrUpdate(new MusicianInstrument(new Musician("Keith Jarrett"),
+                Sets.newHashSet(new MusicalInstrument("Piano"), new MusicalInstrument("Drums"))));
+        dao.createOrUpdate(new MusicianInstrument(new Musician("Jack DeJohnette"),
+                Sets.newHashSet(new MusicalInstrument("Drums"))));
+
+        AggregatingDAO aggregating = (AggregatingDAO) dao;
+        List<Scored> years = aggregating.albumCountsPerYear(10);
+        assertEquals(1983, years.get(0).getKey());
+        assertEquals(2, years.get(0).getScore());
+        assertEquals(1975, years.get(1).getKey());
+
+        List<Scored> instruments = aggregating.instrumentFrequency(10);
+        assertEquals(2, instruments.size());
+        MusicalInstrument top = dao.load(MusicalInstrument.class, instruments.get(0).getKey());
+        assertEquals(new MusicalInstrument("Drums"), top);
+        assertEquals(2, instruments.get(0).getScore());
+    }
+
+    @Test
+    public void countsDistinctInstrumentsPerMusicianInsideTheStore() {
+        Musician keith = new Musician("Keith Jarrett");
+        dao.createOrUpdate(new MusicianInstrument(keith,
+                Sets.newHashSet(new MusicalInstrument("Piano"), new MusicalInstrument("Drums"))));
+        dao.createOrUpdate(new MusicianInstrument(keith,
+                Sets.newHashSet(new MusicalInstrument("Piano"), new MusicalInstrument("Organ"))));
+        dao.createOrUpdate(new MusicianInstrument(new Musician("Jack DeJohnette"),
+                Sets.newHashSet(new MusicalInstrument("Drums"))));
+
+        List<Scored> talented = ((AggregatingDAO) dao).instrumentCountsPerMusician(10);
+        assertEquals(2, talented.size());
+        assertEquals(keith.getId().longValue(), talented.get(0).getKey());
+        assertEquals(3, talented.get(0).getScore());
+        assertEquals(1, talented.get(1).getScore());
+    }
+
+    @Test
+    public void loadsEntitiesByIds() {
+        Musician keith = dao.createOrUpdate(new Musician("Keith Jarrett"));
+        Musician gary = dao.createOrUpdate(new Musician("Gary Peacock"));
+        dao.createOrUpdate(new Musician("Jack DeJohnette"));
+
+        Collection<Musician> loaded = ((AggregatingDAO) dao).loadAll(Musician.class,
+                Lists.newArrayList(keith.getId(), gary.getId()));
+        assertEquals(Sets.newHashSet(keith, gary), Sets.newHashSet(loaded));
+    }
+
+    @Test
+    public void streamsEntitiesPageByPage() {
+        Musician keith = new Musician("Keith Jarrett");
+        Set<Album> albums = Sets.newHashSet();
+        for (int i = 0; i < 5; i++) {
+            Album album = new Album(1975 + i, "ECM 10" + i, "Album " + i);
+            album.setFeaturedMusicians(Lists.newArrayList(keith));
+            albums.add(dao.createOrUpdate(album));
+        }
+
+        Neo4jDAO neo4jDAO = (Neo4jDAO) dao;
+        neo4jDAO.setPageSize(2);
+        try {
+            List<Album> streamed = Lists.newArrayList(dao.stream(Album.class).iterator());
+            assertEquals(5, streamed.size());
+            assertEquals(albums, Sets.newHashSet(streamed));
+            for (int i = 1; i < streamed.size(); i++) {
+                assertTrue(streamed.get(i - 1).getId() < streamed.get(i).getId());
+            }
+            for (Album album : streamed) {
+                assertEquals(Lists.newArrayList(keith), album.getFeaturedMusicians());
+            }
+        } finally {
+            neo4jDAO.setPageSize(Neo4jDAO.DEFAULT_PAGE_SIZE);
+        }
+    }
+
+    @Test
+    public void streamsThroughItsOwnSessionWhenGivenAFactory() {
+        for (int i = 0; i < 5; i++) {
+            dao.createOrUpdate(new Album(1975 + i, "ECM 10" + i, "Album " + i));
+        }
+        Session shared = spy(sessionFactory.openSession());
+        Session streaming = spy(sessionFactory.openSession());
+        SessionFactory factory = mock(SessionFactory.class);
+        when(factory.openSession()).thenReturn(shared, streaming);
+
+        Neo4jDAO streamingDAO = new Neo4jDAO(factory);
+        streamingDAO.setPageSize(2);
+        assertEquals(5, streamingDAO.stream(Album.class).count());
+        verify(shared, never()).clear();
+        verify(streaming, times(3)).clear();
+    }
+
+    @Test
+    public void streamsInPagesOnlyThroughItsOwnSession() {
+        for (int i = 0; i < 5; i++) {
+            dao.createOrUpdate(new Album(1975 + i, "ECM 10" + i, "Album " + i));
+        }
+        Session shared = spy(sessionFactory.openSession());
+        Neo4jDAO sessionDAO = new Neo4jDAO(shared);
+        sessionDAO.setPageSize(2);
+        assertFalse(sessionDAO.streamsInPages());
+        assertEquals(5, sessionDAO.stream(Album.class).count());
+        verify(shared, never()).clear();
+        assertTrue(new Neo4jDAO(sessionFactory).streamsInPages());
+    }
+
+    @Test
+    public void pageSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> ((Neo4jDAO) dao).setPageSize(0));
+    }
+
+    @Test
+    public void projectsPropertiesAndRelationshipsWithoutEntities() {
+        Musician keith = new Musician("Keith Jarrett");
+        Album koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Album standards = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        keith.setAlbums(Sets.newHashSet(koln, standards));
+        dao.createOrUpdate(keith);
+
+        Projection albums = dao.project(Album.class, "releaseYear", "albumName");
+        assertEquals(2, albums.size());
+        Set<Integer> years = new HashSet<>();
+        for (int i = 0; i < albums.size(); i++) {
+            years.add(albums.ints("releaseYear")[i]);
+            Album album = albums.ids()[i] == koln.getId() ? koln : standards;
+            assertEquals(album.getAlbumName(), albums.strings("albumName")[i]);
+        }
+        assertEquals(Sets.newHashSet(1975, 1983), years);
+
+        Edges discography = dao.projectEdges(Musician.class, "albums");
+        assertEquals(2, discography.size());
+        assertEquals(Sets.newHashSet(keith.getId()), Sets.newHashSet(discography.sources()[0], discography.sources()[1]));
+        assertEquals(Sets.newHashSet(koln.getId(), standards.getId()),
+                Sets.newHashSet(discography.targets()[0], discography.targets()[1]));
+    }
+
+    @Test
+    public void onlyScalarFieldsCanBeProjected() {
+        assertThrows(IllegalArgumentException.class, () -> dao.project(Album.class, "tracks"));
+        assertThrows(IllegalArgumentException.class, () -> dao.project(Album.class, "noSuchProperty"));
+    }
+
+    @Test
+    public void savesEntitiesInBatches() {
+        Musician keith = dao.createOrUpdate(new Musician("Keith Jarrett"));
+        List<Musician> musicians = Lists.newArrayList(
+                new Musician("Keith Jarrett"),
+                new Musician("Jack DeJohnette"),
+                new Musician("Gary Peacock"),
+                new Musician("Gary Peacock"),
+                new Musician("Jan Garbarek"));
+        List<BatchTiming> timings = Lists.newArrayList();
+        Neo4jDAO neo4jDAO = (Neo4jDAO) dao;
+        neo4jDAO.setBatchSize(2);
+        neo4jDAO.setBatchListener(timings::add);
+        try {
+            List<Musician> saved = dao.createOrUpdateAll(musicians);
+            assertEquals(musicians, saved);
+            assertEquals(keith.getId(), saved.get(0).getId());
+            assertEquals(saved.get(2).getId(), saved.get(3).getId());
+            assertEquals(4, dao.loadAll(Musician.class).size());
+            assertEquals(3, timings.size());
+            assertEquals(Lists.newArrayList(2, 2, 1), Lists.newArrayList(
+                    timings.get(0).getSize(), timings.get(1).getSize(), timings.get(2).getSize()));
+            assertEquals(2, timings.get(2).getBatch());
+        } finally {
+            neo4jDAO.setBatchSize(Neo4jDAO.DEFAULT_BATCH_SIZE);
+            neo4jDAO.setBatchListener(timing -> { });
+        }
+    }
+
+    @Test
+    public void batchSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> ((Neo4jDAO) dao).setBatchSize(0));
+    }
+
+    @Test
+    public void upsertMergesOnTheNaturalKey() throws MalformedURLException {
+        Album koln = dao.upsert(new Album(1975, "ECM 1064/65", "The Köln Concert"));
+        assertNotNull(koln.getId());
+
+        Album update = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        update.setAlbumURL(new URL("https://www.ecmrecords.com/catalogue/143038750696/the-koln-concert-keith-jarrett"));
+        update.setTracks(Lists.newArrayList("Part I", "Part II a"));
+        dao.upsert(update);
+
+        assertEquals(koln.getId(), update.getId());
+        assertEquals(1, dao.loadAll(Album.class).size());
+        session.clear();
+        Album loaded = dao.load(Album.class, koln.getId());
+        assertEquals(update.getAlbumURL(), loaded.getAlbumURL());
+        assertEquals(update.getTracks(), loaded.getTracks());
+    }
+
+    @Test
+    public void upsertedEntitiesAreFoundByCreateOrUpdate() {
+        Musician keith = dao.upsert(new Musician("Keith Jarrett"));
+        MusicalInstrument piano = dao.upsert(new MusicalInstrument("Piano"));
+
+        assertEquals(keith.getId(), dao.createOrUpdate(new Musician("Keith Jarrett")).getId());
+        assertEquals(piano.getId(), dao.createOrUpdate(new MusicalInstrument("Piano")).getId());
+        assertEquals(1, dao.loadAll(Musician.class).size());
+        assertEquals(1, dao.loadAll(MusicalInstrument.class).size());
+    }
+
+    @Test
+    public void upsertRejectsAMissingNaturalKey() {
+        assertThrows(IllegalArgumentException.class, () -> dao.upsert(new Musician()));
+    }
+
+    @Test
+    public void keyCacheSkipsLookupsOfNewEntities() {
+        Musician keith = dao.createOrUpdate(new Musician("Keith Jarrett"));
+        Neo4jDAO neo4jDAO = (Neo4jDAO) dao;
+        NaturalKeyCache cache = neo4jDAO.enableKeyCache(10);
+        try {
+            Album album = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+            album.setFeaturedMusicians(Lists.newArrayList(new Musician("Gary Peacock")));
+            dao.createOrUpdate(album);
+            assertEquals(1, cache.getDefiniteMisses());
+            assertEquals(0, cache.getQueries());
+
+            assertEquals(keith.getId(), dao.createOrUpdate(new Musician("Keith Jarrett")).getId());
+            assertEquals(album.getFeaturedMusicians().get(0).getId(),
+                    dao.createOrUpdate(new Musician("Gary Peacock")).getId());
+            assertEquals(2, cache.getHits());
+            assertEquals(0, cache.getQueries());
+            assertEquals(2, dao.loadAll(Musician.class).size());
+        } finally {
+            neo4jDAO.disableKeyCache();
+        }
+    }
+
+    @Test
+    public void keyCacheFollowsRenamesAndDeletes() {
+        Neo4jDAO neo4jDAO = (Neo4jDAO) dao;
+        NaturalKeyCache cache = neo4jDAO.enableKeyCache(10);
+        try {
+            Musician keith = dao.createOrUpdate(new Musician("Keith Jarrett"));
+            keith.setName("Keith Jarrett Trio");
+            dao.createOrUpdate(keith);
+            Musician another = dao.createOrUpdate(new Musician("Keith Jarrett"));
+            assertNotEquals(keith.getId(), another.getId());
+
+            dao.delete(another);
+            Musician again = dao.createOrUpdate(new Musician("Keith Jarrett"));
+            assertNotEquals(another.getId(), again.getId());
+            assertEquals(2, dao.loadAll(Musician.class).size());
+            assertTrue(cache.getQueries() > 0);
+        } finally {
+            neo4jDAO.disableKeyCache();
+        }
+    }
+
+    @Test
+    public void keyCacheIsSeededFromTheStoreAndUsedByBatches() {
+        Musician keith = dao.createOrUpdate(new Musician("Keith Jarrett"));
+        Neo4jDAO neo4jDAO = (Neo4jDAO) dao;
+        NaturalKeyCache cache = neo4jDAO.enableKeyCache(10);
+        try {
+            List<Musician> saved = dao.createOrUpdateAll(Lists.newArrayList(
+                    new Musician("Keith Jarrett"), new Musician("Gary Peacock")));
+            assertEquals(keith.getId(), saved.get(0).getId());
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getDefiniteMisses());
+            assertEquals(0, cache.getQueries());
+        } finally {
+            neo4jDAO.disableKeyCache();
+        }
+    }
+
+    @Test
+    public void saturatedKeyCacheLooksUpNewKeysUntilResized() {
+        Neo4jDAO neo4jDAO = (Neo4jDAO) dao;
+        NaturalKeyCache cache = neo4jDAO.enableKeyCache(1);
+        try {
+            Musician keith = dao.createOrUpdate(new Musician("Keith Jarrett"));
+            dao.createOrUpdate(new Musician("Gary Peacock"));
+            assertTrue(cache.isSaturated());
+            assertSame(cache, neo4jDAO.getKeyCache());
+
+            long misses = cache.getDefiniteMisses();
+            dao.createOrUpdate(new Musician("Jack DeJohnette"));
+            assertEquals(misses, cache.getDefiniteMisses());
+            assertEquals(1, cache.getQueries());
+            assertEquals(keith.getId(), dao.createOrUpdate(new Musician("Keith Jarrett")).getId());
+
+            NaturalKeyCache resized = neo4jDAO.enableKeyCache(cache.getExpectedInsertions());
+            assertFalse(resized.isSaturated());
+            dao.createOrUpdate(new Musician("Jan Garbarek"));
+            assertEquals(1, resized.getDefiniteMisses());
+            assertEquals(4, dao.loadAll(Musician.class).size());
+        } finally {
+            neo4jDAO.disableKeyCache();
+        }
+    }
+
+    @Test
+    public void musicianInstrumentsOfTheSameMusicianAndInstrumentsAreSavedOnce() {
+        Musician keith = dao.createOrUpdate(new Musician("Keith Jarrett"));
+        MusicianInstrument first = dao.createOrUpdate(new MusicianInstrument(keith,
+                Sets.newHashSet(new MusicalInstrument("Piano"), new MusicalInstrument("Organ"))));
+        MusicianInstrument same = dao.createOrUpdate(new MusicianInstrument(keith,
+                Sets.newHashSet(new MusicalInstrument("Organ"), new MusicalInstrument("Piano"))));
+        MusicianInstrument other = dao.createOrUpdate(new MusicianInstrument(keith,
+                Sets.newHashSet(new MusicalInstrument("Piano"))));
+
+        assertEquals(first.getId(), same.getId());
+        assertNotEquals(first.getId(), other.getId());
+        assertEquals(2, dao.loadAll(MusicianInstrument.class).size());
+    }
+
+    @Test
+    public void addRelatedKeepsTheRelationshipsAlreadyStored() {
+        Album standards = dao.createOrUpdate(new Album(1983, "ECM 1255", "Standards, Vol. 1"));
+        Album changes = dao.createOrUpdate(new Album(1984, "ECM 1276", "Changes"));
+        Musician keith = new Musician("Keith Jarrett");
+        keith.setAlbums(Sets.newHashSet(standards));
+        dao.createOrUpdate(keith);
+
+        Musician detached = new Musician("Keith Jarrett");
+        detached.setId(keith.getId());
+        dao.addRelated("albums", ImmutableSetMultimap.of(detached, changes));
+        dao.addRelated("albums", ImmutableSetMultimap.of(detached, changes));
+
+        session.clear();
+        assertEquals(2, dao.findMusicianByName("Keith Jarrett").getAlbums().size());
+        assertEquals(2, dao.projectEdges(Musician.class, "albums").size());
+        assertThrows(IllegalStateException.class, () -> dao.addRelated("albums",
+                ImmutableSetMultimap.of(new Musician("Gary Peacock"), changes)));
+    }
+
+    @Test
+    public void importsCsvIntoTheStore(@TempDir Path directory) throws IOException {
+        Path file = Files.write(directory.resolve("catalog.csv"), Lists.newArrayList(
+                "recordNumber,albumName,releaseYear,featuredMusicians,instruments",
+                "ECM 1255,\"Standards, Vol. 1\",1983,Keith Jarrett;Jack DeJohnette,Keith Jarrett=Piano;Jack DeJohnette=Drums",
+                "ECM 1276,Changes,1983,Keith Jarrett;Jack DeJohnette,Jack DeJohnette=Drums"), StandardCharsets.UTF_8);
+        CsvImporter importer = new CsvImporter(dao);
+        importer.setBatchSize(1);
+
+        assertEquals(2, importer.importFiles(ImmutableList.of(file)).getAlbums());
+        assertEquals(2, importer.importFiles(ImmutableList.of(file)).getAlbums());
+
+        session.clear();
+        assertEquals(2, dao.loadAll(Album.class).size());
+        assertEquals(2, dao.loadAll(Musician.class).size());
+        assertEquals(2, dao.loadAll(MusicalInstrument.class).size());
+        assertEquals(2, dao.loadAll(MusicianInstrument.class).size());
+        assertEquals(2, dao.findMusicianByName("Keith Jarrett").getAlbums().size());
+        assertEquals(2, dao.findAlbumByName("Changes").getFeaturedMusicians().size());
+    }
+
+    @Test
+    public void importKeepsTheAlbumsAlreadyLinkedToAMusician(@TempDir Path directory) throws IOException {
+        Album koln = dao.createOrUpdate(new Album(1975, "ECM 1064/65", "The Köln Concert"));
+        Musician keith = new Musician("Keith Jarrett");
+        keith.setAlbums(Sets.newHashSet(koln));
+        dao.createOrUpdate(keith);
+
+        Path file = Files.write(directory.resolve("catalog.csv"), Lists.newArrayList(
+                "recordNumber,albumName,releaseYear,featuredMusicians,instruments",
+                "ECM 1255,\"Standards, Vol. 1\",1983,Keith Jarrett;Gary Peacock,Keith Jarrett=Piano"),
+                StandardCharsets.UTF_8);
+        CsvImporter importer = new CsvImporter(dao);
+        importer.importFiles(ImmutableList.of(file));
+        importer.importFiles(ImmutableList.of(file));
+
+        session.clear();
+        assertEquals(2, dao.loadAll(Musician.class).size());
+        assertEquals(2, dao.findMusicianByName("Keith Jarrett").getAlbums().size());
+        assertEquals(1, dao.findMusicianByName("Gary Peacock").getAlbums().size());
+    }
+}
@@ -0,0 +1,144 @@
+package allaboutecm.dataaccess.neo4j;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.ImportReport;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.neo4j.ogm.config.Configuration;
+import org.neo4j.ogm.session.Session;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OfflineStoreBuilderUnitTest {
+    @TempDir
+    Path directory;
+
+    private static Map<String, Object> count(Session session, String cypher) {
+        return session.query(cypher, Collections.emptyMap(), true).queryResults().iterator().next();
+    }
+
+    @Test
+    public void buildsAStoreThatNeo4jDAOOpens() throws IOException {
+        Musician keith = new Musician("Keith Jarrett");
+        Musician jack = new Musician("Jack DeJohnette");
+        Album standards = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        standards.setAlbumURL(new URL("https://www.ecmrecords.com/catalogue/1255"));
+        standards.setTracks(Lists.newArrayList("Meaning Of The Blues", "All The Things You Are"));
+        standards.setFeaturedMusicians(Lists.newArrayList(keith, jack));
+        standards.setInstruments(Sets.newHashSet(
+                new MusicianInstrument(keith, Sets.newHashSet(new MusicalInstrument("Piano"))),
+                new MusicianInstrument(jack, Sets.newHashSet(new MusicalInstrument("Drums")))));
+        Album changes = new Album(1983, "ECM 1276", "Changes");
+        changes.setFeaturedMusicians(Lists.newArrayList(keith, jack));
+        keith.getAlbums().add(standards);
+        jack.getAlbums().add(standards);
+
+        OfflineStoreBuilder builder = new OfflineStoreBuilder(directory.resolve("csv"));
+        builder.setMaxMemory("100M");
+        builder.add(standards);
+        keith.getAlbums().add(changes);
+        builder.add(changes);
+        builder.add(new Musician("Keith Jarrett"));
+        assertEquals(8, builder.size());
+        Path store = builder.build(directory.resolve("store"));
+
+        SchemaManager schema = SchemaManager.start(
+                new Configuration.Builder().uri(store.toUri().toString()).build(), false);
+        try {
+            Session session = schema.getSessionFactory().openSession();
+            DAO dao = new Neo4jDAO(session);
+            assertEquals(2, dao.loadAll(Album.class).size());
+            assertEquals(2, dao.loadAll(Musician.class).size());
+            assertEquals(2, dao.loadAll(MusicalInstrument.class).size());
+            assertEquals(2, dao.loadAll(MusicianInstrument.class).size());
+
+            Album loaded = dao.findAlbumByName("Standards, Vol. 1");
+            assertEquals(standards, loaded);
+            assertEquals(standards.getAlbumURL(), loaded.getAlbumURL());
+            assertEquals(standards.getTracks(), loaded.getTracks());
+            assertNull(loaded.getStyle());
+            assertEquals(Sets.newHashSet(keith, jack), Sets.newHashSet(loaded.getFeaturedMusicians()));
+            assertEquals(2, loaded.getInstruments().size());
+            assertEquals(Sets.newHashSet(standards, changes), dao.findMusicianByName("Keith Jarrett").getAlbums());
+
+            assertEquals(4L, count(session, "MATCH ()-[r:featuredMusicians]->() RETURN count(r) AS n").get("n"));
+            assertEquals(3L, count(session, "MATCH (:Musician)-[r:albums]->(:Album) RETURN count(r) AS n").get("n"));
+            assertEquals(2L, count(session, "MATCH (:Album)-[r:instruments]->() RETURN count(r) AS n").get("n"));
+            assertEquals(2L, count(session, "MATCH ()-[r:musician]->(:Musician) RETURN count(r) AS n").get("n"));
+            assertEquals(2L, count(session,
+                    "MATCH ()-[r:musicalInstruments]->(:MusicalInstrument) RETURN count(r) AS n").get("n"));
+        } finally {
+            schema.getSessionFactory().close();
+        }
+    }
+
+    @Test
+    public void buildsAStoreFromCsvExports() throws IOException {
+        Path file = Files.write(directory.resolve("catalog.csv"), Lists.newArrayList(
+                "recordNumber,albumName,releaseYear,featuredMusicians,instruments",
+                "ECM 1255,\"Standards, Vol. 1\",1983,Keith Jarrett;Jack DeJohnette,Keith Jarrett=Piano",
+                "ECM 1276,Changes,1983,Keith Jarrett;Jack DeJohnette,Keith Jarrett=Piano",
+                "ECM 1276,Changes,1983,Keith Jarrett;Jack DeJohnette,Keith Jarrett=Piano"), StandardCharsets.UTF_8);
+        OfflineStoreBuilder builder = new OfflineStoreBuilder(directory.resolve("csv"));
+        builder.setMaxMemory("100M");
+
+        ImportReport report = builder.addCsvFiles(ImmutableList.of(file));
+        assertEquals(1, report.getDuplicates());
+        Path store = builder.build(directory.resolve("store"));
+
+        SchemaManager schema = SchemaManager.start(
+                new Configuration.Builder().uri(store.toUri().toString()).build(), false);
+        try {
+            DAO dao = new Neo4jDAO(schema.getSessionFactory().openSession());
+            assertEquals(2, dao.loadAll(Album.class).size());
+            assertEquals(2, dao.findMusicianByName("Jack DeJohnette").getAlbums().size());
+            assertTrue(schema.getReport().isIndexBacked("findAlbumByName"));
+        } finally {
+            schema.getSessionFactory().close();
+        }
+    }
+
+    @Test
+    public void writesEveryEntityOnce() throws IOException {
+        OfflineStoreBuilder builder = new OfflineStoreBuilder(directory.resolve("csv"));
+        builder.add(new MusicianInstrument(new Musician("Keith Jarrett"), Sets.newHashSet(new MusicalInstrument("Piano"))));
+        builder.add(new MusicianInstrument(new Musician("Keith Jarrett"), Sets.newHashSet(new MusicalInstrument("Piano"))));
+        builder.add(new MusicianInstrument(new Musician("Keith Jarrett"), Sets.newHashSet(new MusicalInstrument("Organ"))));
+
+        assertEquals(5, builder.size());
+        builder.setMaxMemory("100M");
+        builder.build(directory.resolve("store"));
+        List<String> musicians = Files.readAllLines(directory.resolve("csv/nodes-Musician.csv"));
+        assertEquals(2, musicians.size());
+        assertTrue(musicians.get(0).startsWith(":ID,name,"));
+        assertEquals(3, Files.readAllLines(directory.resolve("csv/relationships-musicalInstruments.csv")).size());
+        assertEquals(Lists.newArrayList(":START_ID,:END_ID", "0,1", "3,1"),
+                Files.readAllLines(directory.resolve("csv/relationships-musician.csv")));
+    }
+
+    @Test
+    public void refusesToBuildOverAnExistingStore() throws IOException {
+        OfflineStoreBuilder builder = new OfflineStoreBuilder(directory.resolve("csv"));
+        builder.add(new Musician("Keith Jarrett"));
+        Path store = Files.createDirectories(directory.resolve("store"));
+        Files.write(store.resolve("neostore"), new byte[1]);
+
+        assertThrows(IllegalArgumentException.class, () -> builder.build(store));
+    }
+}
@@ -0,0 +1,66 @@
+package allaboutecm.dataaccess.neo4j;
+
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.ogm.config.Configuration;
+import org.neo4j.ogm.session.Session;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaManagerUnitTest {
+    private SchemaManager schema;
+
+    @BeforeEach
+    public void setUp() {
+        schema = SchemaManager.start(new Configuration.Builder().build(), false);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        schema.getSessionFactory().close();
+    }
+
+    @Test
+    public void everyLookupIsIndexBackedAfterStartup() {
+        SchemaReport report = schema.getReport();
+        assertFalse(report.getCreated().isEmpty());
+        assertEquals(SchemaManager.lookups().keySet(), report.getIndexBacked().keySet());
+        for (String lookup : SchemaManager.lookups().keySet()) {
+            assertTrue(report.isIndexBacked(lookup), lookup);
+        }
+    }
+
+    @Test
+    public void applyingTheSchemaAgainChangesNothing() {
+        SchemaReport report = schema.apply();
+        assertTrue(report.getCreated().isEmpty());
+        assertTrue(report.getFailed().isEmpty());
+    }
+
+    @Test
+    public void replacesIndexesWithUniqueConstraintsWhereTheStoreAllowsIt() {
+        Session session = schema.getSessionFactory().openSession();
+        Neo4jDAO dao = new Neo4jDAO(session);
+        dao.createOrUpdate(new MusicianInstrument(new Musician("Keith Jarrett"), Sets.newHashSet(new MusicalInstrument("Piano"))));
+        dao.createOrUpdate(new MusicianInstrument(new Musician("Jack DeJohnette"), Sets.newHashSet(new MusicalInstrument("Piano"))));
+
+        schema.setUniqueConstraints(true);
+        SchemaReport report = schema.apply();
+        assertEquals(1, report.getFailed().size());
+        assertTrue(report.getFailed().get(0).contains("MusicalInstrument"));
+        assertTrue(report.getFailed().get(0).contains("duplicate"));
+        assertFalse(report.getCreated().stream().anyMatch(created -> created.contains("MusicalInstrument")));
+        assertTrue(report.getCreated().stream().anyMatch(created -> created.contains("CONSTRAINT ON (n:Musician)")));
+        assertTrue(report.isIndexBacked("findExistingEntity(MusicalInstrument)"));
+        assertTrue(report.isIndexBacked("findMusicianByName"));
+        assertThrows(RuntimeException.class, () -> session.query("CREATE (:Musician {name: 'Keith Jarrett'})",
+                Collections.emptyMap()));
+    }
+}
@@ -0,0 +1,123 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.neo4j.Neo4jDAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AlbumMinHashIndexUnitTest {
+    private static final int K = 10;
+
+    private static List<Album> albums;
+    private static CatalogSnapshot snapshot;
+    private static ECMMiner exact;
+
+    /**
+     * A generated catalog of 80 ensembles of 6 musicians. Each album features 3 to 5 members of one ensemble
+     * and plays tracks from that ensemble's repertoire.
+     */
+    @BeforeAll
+    public static void setUp() {
+        Random random = new Random(5171);
+        albums = Lists.newArrayList();
+        for (int e = 0; e < 80; e++) {
+            List<Musician> members = Lists.newArrayList();
+            for (int m = 0; m < 6; m++) {
+                members.add(new Musician("Musician " + e + "-" + m));
+            }
+            List<String> repertoire = Lists.newArrayList();
+            for (int t = 0; t < 8; t++) {
+                repertoire.add("Tune " + Integer.toString(random.nextInt(1 << 20), 36));
+            }
+            for (int a = 0; a < 25; a++) {
+                Album album = new Album(1960 + random.nextInt(60), "ECM " + e + "/" + a, "Album " + e + "/" + a);
+                Collections.shuffle(members, random);
+                album.setFeaturedMusicians(Lists.newArrayList(members.subList(0, 3 + random.nextInt(3))));
+                Collections.shuffle(repertoire, random);
+                album.setTracks(Lists.newArrayList(repertoire.subList(0, 4)));
+                albums.add(album);
+            }
+        }
+        snapshot = CatalogSnapshot.build(albums, Lists.newArrayList(), Lists.newArrayList());
+        DAO dao = StreamingDAOs.mockStreamingLoadAll();
+        when(dao.loadAll(Album.class)).thenReturn(albums);
+        exact = new ECMMiner(dao);
+    }
+
+    @Test
+    public void shouldRejectInvalidBanding() {
+        assertThrows(IllegalArgumentException.class, () -> AlbumMinHashIndex.build(snapshot, 0, 2));
+        assertThrows(IllegalArgumentException.class, () -> AlbumMinHashIndex.build(snapshot, 8, 0));
+    }
+
+    @Test
+    public void shouldRankAFullLineupMatchFirst() {
+        AlbumMinHashIndex index = AlbumMinHashIndex.build(snapshot, 16, 4);
+        for (Album album : albums.subList(0, 100)) {
+            Album best = index.mostSimilar(album, 1).get(0);
+            assertTrue(best.getFeaturedMusicians().containsAll(album.getFeaturedMusicians()));
+        }
+    }
+
+    @Test
+    public void shouldRecallMostExactNeighbours() {
+        AlbumMinHashIndex index = AlbumMinHashIndex.build(snapshot, 32, 2);
+        ECMMiner approximate = new ECMMiner(mock(Neo4jDAO.class));
+        approximate.setApproximateSimilarity(index);
+
+        double recall = recall(approximate);
+        assertTrue(recall >= 0.95, "recall was " + recall);
+    }
+
+    @Test
+    public void moreBandsShouldNotLowerRecall() {
+        ECMMiner narrow = new ECMMiner(mock(Neo4jDAO.class));
+        narrow.setApproximateSimilarity(AlbumMinHashIndex.build(snapshot, 4, 4));
+        ECMMiner wide = new ECMMiner(mock(Neo4jDAO.class));
+        wide.setApproximateSimilarity(AlbumMinHashIndex.build(snapshot, 32, 4));
+
+        assertTrue(recall(wide) >= recall(narrow));
+    }
+
+    /**
+     * Average share of the exact top-k albums with a positive score that the approximate lookup also returns.
+     */
+    private static double recall(ECMMiner approximate) {
+        Random random = new Random(24);
+        double total = 0;
+        int queries = 200;
+        for (int i = 0; i < queries; i++) {
+            Album query = albums.get(random.nextInt(albums.size()));
+            Set<Album> expected = Sets.newHashSet();
+            for (Album album : exact.mostSimilarAlbums(K, query)) {
+                if (sharesMusician(album, query)) {
+                    expected.add(album);
+                }
+            }
+            Set<Album> found = Sets.intersection(expected, Sets.newHashSet(approximate.mostSimilarAlbums(K, query)));
+            total += (double) found.size() / expected.size();
+        }
+        return total / queries;
+    }
+
+    private static boolean sharesMusician(Album album, Album query) {
+        for (Musician musician : query.getFeaturedMusicians()) {
+            if (album.getFeaturedMusicians().contains(musician)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,143 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AlbumNeighboursUnitTest {
+    private List<Album> albums;
+    private DAO dao;
+    private CatalogSnapshot snapshot;
+
+    @BeforeEach
+    public void setUp() {
+        Random random = new Random(42);
+        List<Musician> musicians = Lists.newArrayList();
+        for (int i = 0; i < 60; i++) {
+            musicians.add(new Musician("Musician " + i));
+        }
+        albums = Lists.newArrayList();
+        for (int i = 0; i < 500; i++) {
+            Album album = new Album(1950 + random.nextInt(60), "ECM " + i, "Album " + i);
+            List<Musician> lineup = Lists.newArrayList();
+            for (int j = 0; j <= random.nextInt(5); j++) {
+                // Skewed towards the first musicians, so some are featured on many albums.
+                int m = (int) (musicians.size() * Math.pow(random.nextDouble(), 3));
+                lineup.add(musicians.get(m));
+            }
+            album.setFeaturedMusicians(lineup);
+            albums.add(album);
+        }
+        dao = StreamingDAOs.mockStreamingLoadAll();
+        when(dao.loadAll(Album.class)).thenReturn(albums);
+        snapshot = CatalogSnapshot.build(albums, Lists.newArrayList(), Lists.newArrayList());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-1, 0})
+    public void shouldRejectNonPositiveK(int k) {
+        assertThrows(IllegalArgumentException.class, () -> AlbumNeighbours.compute(snapshot, k));
+    }
+
+    @Test
+    public void shouldMatchTheFullScanForEveryAlbum() {
+        ECMMiner scan = new ECMMiner(dao);
+        AlbumNeighbours neighbours = AlbumNeighbours.compute(snapshot, 12, new ForkJoinPool(4));
+
+        for (Album album : albums) {
+            assertEquals(scan.mostSimilarAlbums(12, album), neighbours.mostSimilar(album, 12));
+            assertEquals(scan.mostSimilarAlbums(3, album), neighbours.mostSimilar(album, 3));
+        }
+    }
+
+    @Test
+    public void shouldKeepAllAlbumsWhenKExceedsTheCatalog() {
+        List<Album> few = albums.subList(0, 5);
+        CatalogSnapshot small = CatalogSnapshot.build(few, Lists.newArrayList(), Lists.newArrayList());
+        AlbumNeighbours neighbours = AlbumNeighbours.compute(small, 10);
+        assertEquals(5, neighbours.mostSimilar(few.get(0), 10).size());
+    }
+
+    @Test
+    public void minerShouldReadPrecomputedListsAndFallBackBeyondK() {
+        ECMMiner miner = new ECMMiner(dao);
+        miner.setPrecomputedSimilarity(AlbumNeighbours.compute(snapshot, 5));
+        Album album = albums.get(7);
+
+        List<Album> precomputed = miner.mostSimilarAlbums(5, album);
+        verify(dao, never()).loadAll(Album.class);
+        miner.setPrecomputedSimilarity(null);
+        assertEquals(miner.mostSimilarAlbums(5, album), precomputed);
+
+        miner.setPrecomputedSimilarity(AlbumNeighbours.compute(snapshot, 5));
+        clearInvocations(dao);
+        assertEquals(6, miner.mostSimilarAlbums(6, album).size());
+        verify(dao, times(1)).loadAll(Album.class);
+    }
+
+    @Test
+    public void shouldReadBackTheListsForTheSameSnapshotOnly(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("catalog.neighbours");
+        AlbumNeighbours computed = AlbumNeighbours.compute(snapshot, 8);
+        computed.write(file);
+
+        AlbumNeighbours read = AlbumNeighbours.read(snapshot, file);
+        assertEquals(8, read.getK());
+        for (Album album : albums) {
+            assertEquals(computed.mostSimilar(album, 8), read.mostSimilar(album, 8));
+        }
+
+        List<Album> reordered = Lists.newArrayList(albums);
+        reordered.add(0, reordered.remove(1));
+        CatalogSnapshot other = CatalogSnapshot.build(reordered, Lists.newArrayList(), Lists.newArrayList());
+        assertThrows(IOException.class, () -> AlbumNeighbours.read(other, file));
+
+        List<Musician> lineup = Lists.newArrayList(albums.get(0).getFeaturedMusicians());
+        Musician replaced = lineup.get(0);
+        lineup.set(0, albums.stream().flatMap(album -> album.getFeaturedMusicians().stream())
+                .filter(musician -> !musician.equals(replaced)).findFirst().get());
+        albums.get(0).setFeaturedMusicians(lineup);
+        CatalogSnapshot relinedUp = CatalogSnapshot.build(albums, Lists.newArrayList(), Lists.newArrayList());
+        assertThrows(IOException.class, () -> AlbumNeighbours.read(relinedUp, file));
+    }
+
+    @Test
+    public void shouldClearTheScratchArraysWhenTheStampsWrap() {
+        AlbumNeighbours neighbours = AlbumNeighbours.compute(snapshot, 6);
+        int[] order = snapshot.tieBreakOrder();
+        int[] rank = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            rank[order[i]] = i;
+        }
+        AlbumNeighbours.Join join = new AlbumNeighbours.Join(snapshot, snapshot.similarityIndex(),
+                Comparator.comparingInt(a -> rank[a]));
+        join.queryStamp = Integer.MAX_VALUE - 3;
+        join.candidateStamp = Integer.MAX_VALUE - 3;
+
+        for (int q = 0; q < albums.size(); q++) {
+            List<Album> expected = neighbours.mostSimilar(snapshot.album(q), 6);
+            List<Album> actual = Lists.newArrayList();
+            for (int id : join.query(q, 6)) {
+                actual.add(snapshot.album(id));
+            }
+            assertEquals(expected, actual);
+        }
+        assertTrue(join.queryStamp < albums.size());
+    }
+}
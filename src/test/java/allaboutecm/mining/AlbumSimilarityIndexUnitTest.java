@@ -0,0 +1,77 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AlbumSimilarityIndexUnitTest {
+
+    @Test
+    public void shouldIndexEachAlbumOncePerMusician() {
+        Musician keith = new Musician("Keith Jarrett");
+        Musician gary = new Musician("Gary Peacock");
+        Album standards = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        Album changes = new Album(1983, "ECM 1276", "Changes");
+        standards.setFeaturedMusicians(Lists.newArrayList(keith, gary, keith));
+        changes.setFeaturedMusicians(Lists.newArrayList(keith));
+        CatalogSnapshot snapshot = CatalogSnapshot.build(Lists.newArrayList(standards, changes),
+                Lists.newArrayList(), Lists.newArrayList());
+
+        AlbumSimilarityIndex index = AlbumSimilarityIndex.build(snapshot);
+        assertEquals(2, index.albumCount(snapshot.musicianId(keith)));
+        assertEquals(1, index.albumCount(snapshot.musicianId(gary)));
+    }
+
+    @Test
+    public void shouldFillWithNonOverlappingAlbumsInTieBreakOrder() {
+        Musician keith = new Musician("Keith Jarrett");
+        Album query = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        query.setFeaturedMusicians(Lists.newArrayList(keith));
+        Album older = new Album(1970, "ECM 1001", "Free at Last");
+        Album newer = new Album(1990, "ECM 1400", "Paris Concert");
+        Album newest = new Album(2000, "ECM 1700", "Whisper Not");
+        older.setFeaturedMusicians(Lists.newArrayList(keith));
+        CatalogSnapshot snapshot = CatalogSnapshot.build(Lists.newArrayList(older, newer, newest),
+                Lists.newArrayList(), Lists.newArrayList());
+
+        List<Album> result = snapshot.similarityIndex().mostSimilar(query, 3);
+        assertEquals(Lists.newArrayList(older, newest, newer), result);
+    }
+
+    @Test
+    public void shouldMatchTheFullScan() {
+        Random random = new Random(24);
+        List<Musician> musicians = Lists.newArrayList();
+        for (int i = 0; i < 40; i++) {
+            musicians.add(new Musician("Musician " + i));
+        }
+        List<Album> albums = Lists.newArrayList();
+        for (int i = 0; i < 400; i++) {
+            Album album = new Album(1950 + random.nextInt(60), "ECM " + i, "Album " + i);
+            List<Musician> lineup = Lists.newArrayList();
+            for (int j = 0; j <= random.nextInt(5); j++) {
+                lineup.add(musicians.get(random.nextInt(musicians.size())));
+            }
+            album.setFeaturedMusicians(lineup);
+            albums.add(album);
+        }
+        DAO dao = StreamingDAOs.mockStreamingLoadAll();
+        when(dao.loadAll(Album.class)).thenReturn(albums);
+        ECMMiner scan = new ECMMiner(dao);
+        CatalogSnapshot snapshot = CatalogSnapshot.build(albums, Lists.newArrayList(), Lists.newArrayList());
+
+        for (int i = 0; i < 50; i++) {
+            Album query = albums.get(random.nextInt(albums.size()));
+            int k = 1 + random.nextInt(20);
+            assertEquals(scan.mostSimilarAlbums(k, query), snapshot.similarityIndex().mostSimilar(query, k));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CachingMinerUnitTest {
+    private DAO dao;
+    private AtomicLong nanos;
+    private CachingMiner cache;
+    private Album koln;
+
+    @BeforeEach
+    public void setUp() {
+        Musician keith = new Musician("Keith Jarrett");
+        koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Album standards = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        koln.setFeaturedMusicians(Lists.newArrayList(keith));
+        standards.setFeaturedMusicians(Lists.newArrayList(keith));
+        keith.setAlbums(Sets.newHashSet(koln, standards));
+
+        dao = StreamingDAOs.mockStreamingLoadAll();
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet(koln, standards));
+        when(dao.loadAll(Musician.class)).thenReturn(Sets.newHashSet(keith));
+        when(dao.loadAll(MusicianInstrument.class)).thenReturn(Sets.newHashSet(
+                new MusicianInstrument(keith, Sets.newHashSet(new MusicalInstrument("Piano")))));
+        nanos = new AtomicLong();
+        cache = new CachingMiner(new ECMMiner(dao), 100, 10, TimeUnit.SECONDS, nanos::get);
+    }
+
+    @Test
+    public void shouldServeRepeatsFromMemory() {
+        List<Musician> first = cache.mostProlificMusicians(5, 1970, 1990);
+        List<Musician> second = cache.mostProlificMusicians(5, 1970, 1990);
+
+        assertEquals(first, second);
+        verify(dao, times(1)).loadAll(Musician.class);
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+        assertThrows(UnsupportedOperationException.class, () -> second.add(new Musician("Gary Peacock")));
+    }
+
+    @Test
+    public void albumWritesShouldOnlyEvictRangesCoveringTheirYear() {
+        cache.busiestYears(5, 1970, 1979);
+        cache.busiestYears(5, 1980, 1989);
+        cache.mostPopularInstrument(5);
+
+        cache.saved(koln);
+        clearInvocations(dao);
+        cache.busiestYears(5, 1970, 1979);
+        cache.busiestYears(5, 1980, 1989);
+        cache.mostPopularInstrument(5);
+        verify(dao, times(1)).loadAll(Album.class);
+        verify(dao, never()).loadAll(MusicianInstrument.class);
+    }
+
+    @Test
+    public void albumWritesShouldEvictTheYearTheAlbumWasSavedWithBefore() {
+        koln.setId(7L);
+        cache.saved(koln);
+        cache.busiestYears(5, 1970, 1979);
+
+        Album moved = new Album(1985, "ECM 1064/65", "The Köln Concert");
+        moved.setId(7L);
+        cache.saved(moved);
+        clearInvocations(dao);
+        cache.busiestYears(5, 1970, 1979);
+        verify(dao, times(1)).loadAll(Album.class);
+    }
+
+    @Test
+    public void deletedAlbumsShouldBeForgotten() {
+        koln.setId(7L);
+        cache.saved(koln);
+        cache.deleted(koln);
+        cache.busiestYears(5, 1970, 1979);
+
+        // The store may hand the id of a deleted album to a new one.
+        Album reused = new Album(1985, "ECM 1250", "Later");
+        reused.setId(7L);
+        cache.saved(reused);
+        clearInvocations(dao);
+        cache.busiestYears(5, 1970, 1979);
+        verify(dao, never()).loadAll(Album.class);
+    }
+
+    @Test
+    public void musicianWritesShouldEvictTheYearsOfTheirAlbums() {
+        cache.busiestYears(5, 1970, 1979);
+        cache.busiestYears(5, 1990, 1999);
+        cache.busiestYears(5);
+
+        Album later = new Album(1993, "ECM 1500", "Bye Bye Blackbird");
+        later.setId(8L);
+        Musician gary = new Musician("Gary Peacock");
+        gary.setAlbums(Sets.newHashSet(later));
+        cache.saved(gary);
+        clearInvocations(dao);
+        cache.busiestYears(5, 1970, 1979);
+        cache.busiestYears(5, 1990, 1999);
+        cache.busiestYears(5);
+        verify(dao, times(2)).loadAll(Album.class);
+
+        Album moved = new Album(1975, "ECM 1500", "Bye Bye Blackbird");
+        moved.setId(8L);
+        cache.added(new Musician("Keith Jarrett"), "albums", Lists.newArrayList(moved));
+        clearInvocations(dao);
+        cache.busiestYears(5, 1970, 1979);
+        cache.busiestYears(5, 1990, 1999);
+        verify(dao, times(2)).loadAll(Album.class);
+    }
+
+    @Test
+    public void instrumentWritesShouldLeaveAlbumQueriesCached() {
+        cache.busiestYears(3);
+        cache.mostTalentedMusicians(3);
+
+        cache.saved(new MusicalInstrument("Piano"));
+        clearInvocations(dao);
+        cache.busiestYears(3);
+        cache.mostTalentedMusicians(3);
+        verify(dao, never()).loadAll(Album.class);
+        verify(dao, times(1)).loadAll(MusicianInstrument.class);
+    }
+
+    @Test
+    public void entriesShouldExpireAfterTheTtl() {
+        cache.mostSocialMusicians(3);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        cache.mostSocialMusicians(3);
+
+        verify(dao, times(2)).loadAll(Musician.class);
+    }
+
+    @Test
+    public void shouldNotHoldMoreThanTheMaximumSize() {
+        CachingMiner small = new CachingMiner(new ECMMiner(dao), 2, 1, TimeUnit.HOURS);
+        for (int k = 1; k <= 10; k++) {
+            small.busiestYears(k);
+        }
+        assertTrue(small.size() <= 2);
+    }
+}
@@ -0,0 +1,138 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CatalogSnapshotUnitTest {
+    private DAO dao;
+
+    private Musician keith;
+    private Musician gary;
+    private Musician jack;
+    private Album koln;
+    private Album standards;
+    private Album changes;
+
+    @BeforeEach
+    public void setUp() {
+        keith = new Musician("Keith Jarrett");
+        gary = new Musician("Gary Peacock");
+        jack = new Musician("Jack DeJohnette");
+
+        koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        standards = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        changes = new Album(1983, "ECM 1276", "Changes");
+        koln.setFeaturedMusicians(Lists.newArrayList(keith));
+        standards.setFeaturedMusicians(Lists.newArrayList(keith, gary, jack));
+        changes.setFeaturedMusicians(Lists.newArrayList(keith, gary));
+
+        keith.setAlbums(Sets.newHashSet(koln, standards, changes));
+        gary.setAlbums(Sets.newHashSet(standards, changes));
+        jack.setAlbums(Sets.newHashSet(standards));
+
+        MusicalInstrument piano = new MusicalInstrument("Piano");
+        MusicalInstrument bass = new MusicalInstrument("Double Bass");
+        MusicalInstrument drums = new MusicalInstrument("Drums");
+
+        dao = StreamingDAOs.mockStreamingLoadAll();
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet(koln, standards, changes));
+        when(dao.loadAll(Musician.class)).thenReturn(Sets.newHashSet(keith, gary, jack));
+        when(dao.loadAll(MusicianInstrument.class)).thenReturn(Sets.newHashSet(
+                new MusicianInstrument(keith, Sets.newHashSet(piano, drums)),
+                new MusicianInstrument(gary, Sets.newHashSet(bass)),
+                new MusicianInstrument(jack, Sets.newHashSet(drums, piano))));
+    }
+
+    @Test
+    public void shouldEncodeEntitiesAndRelationships() {
+        CatalogSnapshot snapshot = CatalogSnapshot.build(dao);
+
+        assertEquals(3, snapshot.albumCount());
+        assertEquals(3, snapshot.musicianCount());
+        assertEquals(3, snapshot.instrumentCount());
+        assertEquals(3, snapshot.performanceCount());
+
+        int album = snapshot.albumId(standards);
+        assertEquals(1983, snapshot.releaseYear(album));
+        assertEquals(3, snapshot.featuredEnd(album) - snapshot.featuredStart(album));
+        assertEquals(snapshot.musicianId(keith), snapshot.featuredMusician(snapshot.featuredStart(album)));
+
+        int musician = snapshot.musicianId(gary);
+        assertEquals(2, snapshot.albumsEnd(musician) - snapshot.albumsStart(musician));
+        assertEquals(-1, snapshot.musicianId(new Musician("Charlie Haden")));
+    }
+
+    @Test
+    public void shouldIncludeEntitiesOnlyReachableThroughRelationships() {
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet());
+        when(dao.loadAll(MusicianInstrument.class)).thenReturn(Sets.newHashSet());
+        when(dao.loadAll(Musician.class)).thenReturn(Sets.newHashSet(jack));
+
+        CatalogSnapshot snapshot = CatalogSnapshot.build(dao);
+
+        assertEquals(3, snapshot.albumCount());
+        assertEquals(3, snapshot.musicianCount());
+        assertTrue(snapshot.albumId(koln) >= 0);
+        assertTrue(snapshot.musicianId(gary) >= 0);
+    }
+
+    @Test
+    public void shouldAggregateLikeTheObjectGraph() {
+        CatalogSnapshot snapshot = CatalogSnapshot.build(dao);
+
+        int[] albums = snapshot.albumCountsByMusician(1980, 1990);
+        assertEquals(2, albums[snapshot.musicianId(keith)]);
+        assertEquals(1, albums[snapshot.musicianId(jack)]);
+
+        int[] collaborators = snapshot.collaboratorCounts();
+        assertEquals(2, collaborators[snapshot.musicianId(keith)]);
+        assertEquals(2, collaborators[snapshot.musicianId(jack)]);
+
+        int[] years = snapshot.albumCountsByYear();
+        assertEquals(2, years[1983 - snapshot.firstYear()]);
+
+        int[] instruments = snapshot.instrumentCounts();
+        assertEquals(2, instruments[snapshot.instrumentId(new MusicalInstrument("Piano"))]);
+
+        double[] similarity = snapshot.similarityTo(changes);
+        assertEquals(1.0, similarity[snapshot.albumId(standards)]);
+        assertEquals(0.5, similarity[snapshot.albumId(koln)]);
+    }
+
+    @Test
+    public void minerShouldGiveTheSameResultsOnTheSnapshot() {
+        ECMMiner direct = new ECMMiner(dao);
+        List<Musician> prolific = direct.mostProlificMusicians(2, 1970, 2000);
+        List<Musician> social = direct.mostSocialMusicians(3);
+        List<Integer> years = direct.busiestYears(2);
+        List<Album> similar = direct.mostSimilarAlbums(2, changes);
+        List<MusicalInstrument> popular = direct.mostPopularInstrument(3);
+        List<Musician> talented = direct.mostTalentedMusicians(2);
+        clearInvocations(dao);
+
+        ECMMiner snapshotted = new ECMMiner(dao);
+        snapshotted.takeSnapshot();
+        assertEquals(prolific, snapshotted.mostProlificMusicians(2, 1970, 2000));
+        assertEquals(social, snapshotted.mostSocialMusicians(3));
+        assertEquals(years, snapshotted.busiestYears(2));
+        assertEquals(similar, snapshotted.mostSimilarAlbums(2, changes));
+        assertEquals(popular, snapshotted.mostPopularInstrument(3));
+        assertEquals(talented, snapshotted.mostTalentedMusicians(2));
+
+        verify(dao, times(1)).loadAll(Album.class);
+        verify(dao, times(1)).loadAll(Musician.class);
+        verify(dao, times(1)).loadAll(MusicianInstrument.class);
+    }
+}
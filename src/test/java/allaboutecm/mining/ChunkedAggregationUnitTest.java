@@ -0,0 +1,112 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ChunkedAggregationUnitTest {
+    private static ForkJoinPool pool;
+    private static DAO dao;
+    private static List<Album> albums;
+
+    @BeforeAll
+    public static void setUp() {
+        pool = new ForkJoinPool(4);
+        Random random = new Random(5171);
+        List<Musician> musicians = Lists.newArrayList();
+        for (int i = 0; i < 300; i++) {
+            musicians.add(new Musician("Musician " + i));
+        }
+        albums = Lists.newArrayList();
+        for (int i = 0; i < 3000; i++) {
+            Album album = new Album(1950 + random.nextInt(70), "ECM " + i, "Album " + i);
+            List<Musician> lineup = Lists.newArrayList();
+            for (int j = 0; j <= random.nextInt(5); j++) {
+                Musician musician = musicians.get(random.nextInt(musicians.size()));
+                lineup.add(musician);
+                musician.getAlbums().add(album);
+            }
+            album.setFeaturedMusicians(lineup);
+            albums.add(album);
+        }
+        List<MusicianInstrument> musicianInstruments = Lists.newArrayList();
+        for (int i = 0; i < 2000; i++) {
+            Set<MusicalInstrument> played = Sets.newHashSet();
+            for (int j = 0; j <= random.nextInt(3); j++) {
+                played.add(new MusicalInstrument("Instrument " + random.nextInt(25)));
+            }
+            musicianInstruments.add(new MusicianInstrument(musicians.get(random.nextInt(musicians.size())), played));
+        }
+
+        dao = StreamingDAOs.mockStreamingLoadAll();
+        when(dao.loadAll(Album.class)).thenReturn(albums);
+        when(dao.loadAll(Musician.class)).thenReturn(musicians);
+        when(dao.loadAll(MusicianInstrument.class)).thenReturn(musicianInstruments);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void shouldMergeChunksInIndexOrder() {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            expected.append(i).append(',');
+        }
+        String joined = ChunkedAggregation.run(pool, 1000, (from, to) -> {
+            StringBuilder chunk = new StringBuilder();
+            for (int i = from; i < to; i++) {
+                chunk.append(i).append(',');
+            }
+            return chunk.toString();
+        }, String::concat);
+        assertEquals(expected.toString(), joined);
+        assertEquals("", ChunkedAggregation.run(pool, 0, (from, to) -> "", String::concat));
+    }
+
+    @Test
+    public void parallelScansShouldMatchTheSequentialScans() {
+        ECMMiner sequential = new ECMMiner(dao);
+        ECMMiner parallel = new ECMMiner(dao);
+        parallel.setPool(pool);
+        assertSameResults(sequential, parallel);
+    }
+
+    @Test
+    public void parallelSnapshotQueriesShouldMatchTheSequentialQueries() {
+        ECMMiner sequential = new ECMMiner(dao);
+        ECMMiner parallel = new ECMMiner(dao);
+        parallel.setSnapshot(sequential.takeSnapshot());
+        parallel.setPool(pool);
+        assertSameResults(sequential, parallel);
+    }
+
+    private static void assertSameResults(ECMMiner sequential, ECMMiner parallel) {
+        for (int k : new int[]{1, 7, 50}) {
+            assertEquals(sequential.mostProlificMusicians(k, 1970, 1999), parallel.mostProlificMusicians(k, 1970, 1999));
+            assertEquals(sequential.mostSocialMusicians(k), parallel.mostSocialMusicians(k));
+            assertEquals(sequential.busiestYears(k), parallel.busiestYears(k));
+            assertEquals(sequential.busiestYears(k, 1960, 1990), parallel.busiestYears(k, 1960, 1990));
+            assertEquals(sequential.mostPopularInstrument(k), parallel.mostPopularInstrument(k));
+            assertEquals(sequential.mostTalentedMusicians(k), parallel.mostTalentedMusicians(k));
+            assertEquals(sequential.mostSimilarAlbums(k, albums.get(k)), parallel.mostSimilarAlbums(k, albums.get(k)));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollaborationGraphUnitTest {
+    private Musician keith;
+    private Musician gary;
+    private Musician jack;
+    private Musician jan;
+    private CatalogSnapshot snapshot;
+
+    @BeforeEach
+    public void setUp() {
+        keith = new Musician("Keith Jarrett");
+        gary = new Musician("Gary Peacock");
+        jack = new Musician("Jack DeJohnette");
+        jan = new Musician("Jan Garbarek");
+        Album standards = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        Album changes = new Album(1983, "ECM 1276", "Changes");
+        Album belonging = new Album(1974, "ECM 1050", "Belonging");
+        standards.setFeaturedMusicians(Lists.newArrayList(keith, gary, jack));
+        changes.setFeaturedMusicians(Lists.newArrayList(keith, gary, jack, keith));
+        belonging.setFeaturedMusicians(Lists.newArrayList(keith, jan));
+        keith.setAlbums(Sets.newHashSet(standards, changes, belonging));
+        gary.setAlbums(Sets.newHashSet(standards, changes));
+        jack.setAlbums(Sets.newHashSet(standards));
+        snapshot = CatalogSnapshot.build(Lists.newArrayList(), Lists.newArrayList(keith, gary, jack),
+                Lists.newArrayList());
+    }
+
+    @Test
+    public void rowsShouldBeSortedDistinctCollaborators() {
+        CollaborationGraph graph = snapshot.collaborationGraph();
+        int k = snapshot.musicianId(keith);
+        assertEquals(3, graph.degree(k));
+        for (int i = graph.neighboursStart(k) + 1; i < graph.neighboursEnd(k); i++) {
+            assertTrue(graph.neighbour(i - 1) < graph.neighbour(i));
+        }
+        assertEquals(2, graph.degree(snapshot.musicianId(gary)));
+        assertEquals(0, graph.degree(snapshot.musicianId(jan)));
+        assertEquals(7, graph.edgeCount());
+    }
+
+    @Test
+    public void shouldAnswerMembershipAndCommonCollaborators() {
+        CollaborationGraph graph = snapshot.collaborationGraph();
+        int k = snapshot.musicianId(keith);
+        int g = snapshot.musicianId(gary);
+        assertTrue(graph.collaborated(k, snapshot.musicianId(jan)));
+        assertFalse(graph.collaborated(g, snapshot.musicianId(jan)));
+        assertFalse(graph.collaborated(k, k));
+        assertEquals(1, graph.commonCollaborators(k, g));
+    }
+
+    @Test
+    public void collaboratorCountsShouldOnlyDiscountMusiciansFeaturedOnTheirAlbums() {
+        Musician producer = new Musician("Manfred Eicher");
+        Album album = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        album.setFeaturedMusicians(Lists.newArrayList(keith));
+        producer.setAlbums(Sets.newHashSet(album));
+        CatalogSnapshot snapshot = CatalogSnapshot.build(Lists.newArrayList(), Lists.newArrayList(producer),
+                Lists.newArrayList());
+
+        int p = snapshot.musicianId(producer);
+        assertFalse(snapshot.collaborationGraph().isFeaturedOnOwnAlbums(p));
+        assertEquals(1, snapshot.collaborationGraph().degree(p));
+        assertEquals(0, snapshot.collaboratorCounts()[p]);
+    }
+}
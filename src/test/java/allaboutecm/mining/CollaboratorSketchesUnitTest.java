@@ -0,0 +1,100 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.neo4j.Neo4jDAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CollaboratorSketchesUnitTest {
+    private Musician keith;
+    private Musician gary;
+    private Musician jack;
+    private Album standards;
+    private Album belonging;
+
+    @BeforeEach
+    public void setUp() {
+        keith = new Musician("Keith Jarrett");
+        gary = new Musician("Gary Peacock");
+        jack = new Musician("Jack DeJohnette");
+        standards = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        standards.setFeaturedMusicians(Lists.newArrayList(keith, gary, jack));
+        belonging = new Album(1974, "ECM 1050", "Belonging");
+        belonging.setFeaturedMusicians(Lists.newArrayList(keith, new Musician("Jan Garbarek")));
+    }
+
+    @Test
+    public void shouldCountCollaboratorsFromLineups() {
+        CollaboratorSketches sketches = new CollaboratorSketches();
+        sketches.addAll(Lists.newArrayList(standards, belonging, standards));
+
+        assertEquals(3, sketches.estimate(keith));
+        assertEquals(2, sketches.estimate(gary));
+        assertEquals(Lists.newArrayList(keith, gary), sketches.mostSocial(2));
+        assertEquals(4, sketches.musicianCount());
+    }
+
+    @Test
+    public void shouldUpdateWhenAlbumsAreSaved() {
+        DAO dao = mock(Neo4jDAO.class);
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet(standards));
+        CollaboratorSketches sketches = new CollaboratorSketches();
+        sketches.load(dao);
+        assertEquals(2, sketches.estimate(keith));
+
+        sketches.saved(belonging);
+        assertEquals(3, sketches.estimate(keith));
+    }
+
+    @Test
+    public void mergedPartitionsShouldMatchTheWholeCatalog() {
+        Random random = new Random(5171);
+        List<Musician> musicians = Lists.newArrayList();
+        for (int i = 0; i < 300; i++) {
+            musicians.add(new Musician("Musician " + i));
+        }
+        CollaboratorSketches whole = new CollaboratorSketches();
+        CollaboratorSketches left = new CollaboratorSketches();
+        CollaboratorSketches right = new CollaboratorSketches();
+        for (int i = 0; i < 2000; i++) {
+            Album album = new Album(1970 + random.nextInt(50), "ECM " + i, "Album " + i);
+            Set<Musician> lineup = Sets.newHashSet();
+            while (lineup.size() < 6) {
+                lineup.add(musicians.get(random.nextInt(musicians.size())));
+            }
+            album.setFeaturedMusicians(Lists.newArrayList(lineup));
+            whole.saved(album);
+            (i % 2 == 0 ? left : right).saved(album);
+        }
+        left.merge(right);
+
+        for (Musician musician : musicians) {
+            assertEquals(whole.estimate(musician), left.estimate(musician));
+        }
+        assertEquals(whole.mostSocial(10), left.mostSocial(10));
+    }
+
+    @Test
+    public void minerShouldRankByEstimates() {
+        DAO dao = mock(Neo4jDAO.class);
+        ECMMiner miner = new ECMMiner(dao);
+        CollaboratorSketches sketches = new CollaboratorSketches(10);
+        sketches.addAll(Lists.newArrayList(standards, belonging));
+        miner.setApproximateCollaborators(sketches);
+
+        assertEquals(Lists.newArrayList(keith), miner.mostSocialMusicians(1));
+        assertEquals(1.04 / 32, miner.getApproximateCollaborators().relativeError(), 1e-9);
+        verify(dao, never()).loadAll(any());
+    }
+}
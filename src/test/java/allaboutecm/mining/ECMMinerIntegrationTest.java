@@ -456,4 +456,82 @@ class ECMMinerIntegrationTest {
         List<MusicalInstrument> mostPopularInstrument = ecmMiner.mostPopularInstrument(-1);
         assertEquals(0, mostPopularInstrument.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void projectedRankingsMatchPushedDownRankings() {
+        Musician keith = new Musician("Keith Jarrett");
+        Musician gary = new Musician("Gary Peacock");
+        Musician jack = new Musician("Jack DeJohnette");
+        dao.createOrUpdate(new MusicianInstrument(keith,
+                Sets.newHashSet(new MusicalInstrument("Piano"), new MusicalInstrument("Drums"))));
+        dao.createOrUpdate(new MusicianInstrument(jack, Sets.newHashSet(new MusicalInstrument("Drums"))));
+        Album koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Album standards = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        standards.setFeaturedMusicians(Lists.newArrayList(keith, gary, jack));
+        Album changes = new Album(1983, "ECM 1276", "Changes");
+        changes.setFeaturedMusicians(Lists.newArrayList(keith, gary));
+        keith.setAlbums(Sets.newHashSet(koln, standards, changes));
+        gary.setAlbums(Sets.newHashSet(standards, changes));
+        dao.createOrUpdate(standards);
+        dao.createOrUpdate(changes);
+        dao.createOrUpdate(keith);
+        dao.createOrUpdate(gary);
+
+        ECMMiner pushedDown = new ECMMiner(dao);
+        pushedDown.setAggregationPushdown(true);
+        ECMMiner projected = new ECMMiner(dao);
+        projected.setProjection(true);
+
+        assertEquals(pushedDown.mostProlificMusicians(3, 1970, 1990), projected.mostProlificMusicians(3, 1970, 1990));
+        assertEquals(pushedDown.mostSocialMusicians(3), projected.mostSocialMusicians(3));
+        assertEquals(pushedDown.mostTalentedMusicians(3), projected.mostTalentedMusicians(3));
+        assertEquals(pushedDown.mostPopularInstrument(3), projected.mostPopularInstrument(3));
+        assertEquals(pushedDown.busiestYears(3), projected.busiestYears(3));
+        assertEquals(Lists.newArrayList(1983, 1975), projected.busiestYears(3, 1970, 1990));
+        assertEquals(pushedDown.mostSimilarAlbums(3, changes), projected.mostSimilarAlbums(3, changes));
+        assertEquals(Lists.newArrayList(keith, gary), projected.mostProlificMusicians(2, 1970, 1990));
+    }
+
+    @Test
+    public void pushedDownScannedAndSnapshotRankingsAgree() {
+        Musician keith = new Musician("Keith Jarrett");
+        Musician gary = new Musician("Gary Peacock");
+        Musician jack = new Musician("Jack DeJohnette");
+        Musician jan = new Musician("Jan Garbarek");
+        Musician charlie = new Musician("Charlie Haden");
+        dao.createOrUpdate(new MusicianInstrument(keith,
+                Sets.newHashSet(new MusicalInstrument("Piano"), new MusicalInstrument("Drums"))));
+        dao.createOrUpdate(new MusicianInstrument(jack, Sets.newHashSet(new MusicalInstrument("Drums"))));
+        Album koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        koln.setFeaturedMusicians(Lists.newArrayList(keith));
+        Album standards = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        standards.setFeaturedMusicians(Lists.newArrayList(keith, gary, jack));
+        Album changes = new Album(1983, "ECM 1276", "Changes");
+        changes.setFeaturedMusicians(Lists.newArrayList(keith, gary));
+        Album belonging = new Album(1974, "ECM 1050", "Belonging");
+        belonging.setFeaturedMusicians(Lists.newArrayList(keith, jan));
+        keith.setAlbums(Sets.newHashSet(koln, standards, changes, belonging));
+        gary.setAlbums(Sets.newHashSet(standards, changes));
+        jack.setAlbums(Sets.newHashSet(standards));
+        jan.setAlbums(Sets.newHashSet(belonging));
+        for (Musician musician : Lists.newArrayList(keith, gary, jack, jan, charlie)) {
+            dao.createOrUpdate(musician);
+        }
+
+        ECMMiner scanned = new ECMMiner(dao);
+        ECMMiner pushedDown = new ECMMiner(dao);
+        pushedDown.setAggregationPushdown(true);
+        ECMMiner snapshotted = new ECMMiner(dao);
+        snapshotted.takeSnapshot();
+
+        for (ECMMiner miner : Lists.newArrayList(pushedDown, snapshotted)) {
+            assertEquals(scanned.mostProlificMusicians(5, 1970, 1990), miner.mostProlificMusicians(5, 1970, 1990));
+            assertEquals(scanned.mostSocialMusicians(5), miner.mostSocialMusicians(5));
+            assertEquals(scanned.mostTalentedMusicians(5), miner.mostTalentedMusicians(5));
+            assertEquals(scanned.mostPopularInstrument(5), miner.mostPopularInstrument(5));
+            assertEquals(scanned.busiestYears(5), miner.busiestYears(5));
+            assertEquals(scanned.mostSimilarAlbums(3, changes), miner.mostSimilarAlbums(3, changes));
+        }
+        assertEquals(Lists.newArrayList(keith, gary, jack, jan, charlie), scanned.mostSocialMusicians(5));
+    }
+}
@@ -1,7 +1,6 @@
 package allaboutecm.mining;
 
 import allaboutecm.dataaccess.DAO;
-import allaboutecm.dataaccess.neo4j.Neo4jDAO;
 import allaboutecm.model.Album;
 import allaboutecm.model.MusicalInstrument;
 import allaboutecm.model.Musician;
@@ -31,7 +30,7 @@ class ECMMinerUnitTest {
     @BeforeEach
     public void setUp() {
 
-        dao = mock(Neo4jDAO.class);
+        dao = StreamingDAOs.mockStreamingLoadAll();
         ecmMiner = new ECMMiner(dao);
     }
 
@@ -661,4 +660,59 @@ class ECMMinerUnitTest {
         assertTrue(album.contains(album3));
     }
 
+    @Test
+    public void busiestYearsShouldOnlyRankYearsInRange() {
+        Album album1 = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Album album2 = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        Album album3 = new Album(1983, "ECM 1276", "Changes");
+        Album album4 = new Album(1990, "ECM 1400", "Paris Concert");
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet(album1, album2, album3, album4));
+
+        assertEquals(Lists.newArrayList(1983, 1975), ecmMiner.busiestYears(2, 1970, 1985));
+        assertEquals(Lists.newArrayList(1990), ecmMiner.busiestYears(3, 1984, 2000));
+        assertEquals(0, ecmMiner.busiestYears(3, 1984, 1800).size());
+    }
+
+    @Test
+    public void busiestYearsShouldBreakDownByStyleAndReleaseFormat() {
+        Album album1 = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Album album2 = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        Album album3 = new Album(1983, "ECM 1276", "Changes");
+        album1.setStyle("Jazz");
+        album2.setStyle("Jazz");
+        album3.setStyle("Jazz");
+        album1.setReleaseFormat("LP");
+        album2.setReleaseFormat("CD");
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet(album1, album2, album3));
+
+        assertEquals(Lists.newArrayList(1983), ecmMiner.busiestYearsByStyle(1).get("Jazz"));
+        assertEquals(Lists.newArrayList("CD", "LP"), Lists.newArrayList(ecmMiner.busiestYearsByReleaseFormat(1).keySet()));
+        assertEquals(Lists.newArrayList(1975), ecmMiner.busiestYearsByReleaseFormat(1).get("LP"));
+        assertEquals(0, ecmMiner.busiestYearsByStyle(0).size());
+    }
+
+    @Test
+    public void mostTalentedMusiciansShouldListEachMusicianOnce() {
+        Musician keith = new Musician("Keith Jarrett");
+        Musician jack = new Musician("Jack DeJohnette");
+        MusicianInstrument standards = new MusicianInstrument(keith, Sets.newHashSet(
+                new MusicalInstrument("Piano"), new MusicalInstrument("Celesta")));
+        MusicianInstrument spirits = new MusicianInstrument(keith, Sets.newHashSet(
+                new MusicalInstrument("Piano"), new MusicalInstrument("Flute")));
+        MusicianInstrument drums = new MusicianInstrument(jack, Sets.newHashSet(new MusicalInstrument("Drums")));
+        when(dao.loadAll(MusicianInstrument.class)).thenReturn(Lists.newArrayList(standards, spirits, drums));
+
+        assertEquals(Lists.newArrayList(keith, jack), ecmMiner.mostTalentedMusicians(2));
+    }
+
+    @Test
+    public void shouldLoadTheCatalogWholeWhenTheDAOCannotStreamInPages() {
+        Musician keith = new Musician("Keith Jarrett");
+        keith.setAlbums(Sets.newHashSet(new Album(1975, "ECM 1064/65", "The Köln Concert")));
+        when(dao.streamsInPages()).thenReturn(false);
+        when(dao.loadAll(Musician.class)).thenReturn(Sets.newHashSet(keith));
+
+        assertEquals(Lists.newArrayList(keith), ecmMiner.mostProlificMusicians(1, 1970, 2000));
+        verify(dao, never()).stream(any());
+    }
 }
@@ -0,0 +1,65 @@
+package allaboutecm.mining;
+
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogUnitTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 17})
+    public void shouldRejectPrecisionOutOfRange(int precision) {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(precision));
+    }
+
+    @Test
+    public void shouldCountSmallSetsExactly() {
+        HyperLogLog sketch = new HyperLogLog();
+        assertEquals(0, sketch.estimate());
+        for (int i = 0; i < 20; i++) {
+            sketch.add(hash(i % 7));
+        }
+        assertEquals(7, sketch.estimate());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1000, 50000, 500000})
+    public void shouldEstimateWithinThreeStandardErrors(int distinct) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < distinct; i++) {
+            sketch.add(hash(i));
+        }
+        double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+        assertTrue(error <= 3 * sketch.relativeError(), "error was " + error);
+        assertEquals(4096, sketch.sizeInBytes());
+    }
+
+    @Test
+    public void mergeShouldEstimateTheUnion() {
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 30000; i++) {
+            left.add(hash(i));
+            union.add(hash(i));
+        }
+        for (int i = 20000; i < 60000; i++) {
+            right.add(hash(i));
+            union.add(hash(i));
+        }
+        left.merge(right);
+        assertEquals(union.estimate(), left.estimate());
+    }
+
+    @Test
+    public void shouldNotMergeDifferentPrecisions() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(10).merge(new HyperLogLog(12)));
+    }
+
+    private static long hash(int value) {
+        return Hashing.murmur3_128().hashInt(value).asLong();
+    }
+}
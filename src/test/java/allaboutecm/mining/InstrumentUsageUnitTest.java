@@ -0,0 +1,60 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentUsageUnitTest {
+
+    @Test
+    public void shouldShareIdsBetweenInstrumentsOfTheSameName() {
+        Musician keith = new Musician("Keith Jarrett");
+        Musician jan = new Musician("Jan Garbarek");
+        MusicianInstrument piano = new MusicianInstrument(keith, Sets.newHashSet(new MusicalInstrument("Piano")));
+        MusicianInstrument saxophone = new MusicianInstrument(jan,
+                Sets.newHashSet(new MusicalInstrument("Saxophone"), new MusicalInstrument("Piano")));
+
+        InstrumentUsage usage = InstrumentUsage.encode(Lists.newArrayList(piano, saxophone));
+        InstrumentDictionary dictionary = usage.getDictionary();
+        assertEquals(2, dictionary.size());
+        assertEquals(-1, dictionary.id("Flute"));
+        assertEquals(2, usage.counts()[dictionary.id("Piano")]);
+        assertEquals(1, usage.counts()[dictionary.id("Saxophone")]);
+        assertEquals(Lists.newArrayList(new MusicalInstrument("Piano")), usage.top(1, usage.counts()));
+    }
+
+    @Test
+    public void partitionedCountsShouldMatchTheSequentialCounts() {
+        Random random = new Random(5171);
+        List<MusicalInstrument> instruments = Lists.newArrayList();
+        for (int i = 0; i < 40; i++) {
+            instruments.add(new MusicalInstrument("Instrument " + i));
+        }
+        List<MusicianInstrument> rows = Lists.newArrayList();
+        for (int i = 0; i < 5000; i++) {
+            Set<MusicalInstrument> played = Sets.newHashSet();
+            for (int j = 0; j <= random.nextInt(4); j++) {
+                played.add(instruments.get(random.nextInt(instruments.size())));
+            }
+            rows.add(new MusicianInstrument(new Musician("Musician " + random.nextInt(500)), played));
+        }
+
+        InstrumentUsage usage = InstrumentUsage.encode(rows);
+        int[] expected = usage.counts();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (int partitions : new int[]{1, 3, 8, 6000}) {
+            assertArrayEquals(expected, usage.counts(pool, partitions));
+        }
+        assertThrows(IllegalArgumentException.class, () -> usage.counts(pool, 0));
+    }
+}
@@ -0,0 +1,160 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.ObservableDAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class LiveAggregatesUnitTest {
+    private DAO store;
+    private ObservableDAO dao;
+    private LiveAggregates aggregates;
+    private ECMMiner ecmMiner;
+
+    @BeforeEach
+    public void setUp() {
+        store = StreamingDAOs.mockStreamingLoadAll();
+        when(store.createOrUpdate(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        dao = new ObservableDAO(store);
+        aggregates = new LiveAggregates();
+        dao.addListener(aggregates);
+        ecmMiner = new ECMMiner(dao);
+        ecmMiner.setLiveAggregates(aggregates);
+    }
+
+    @Test
+    public void shouldCountAlbumsPerMusicianAndYear() {
+        Album album1 = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Album album2 = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        Album album3 = new Album(1983, "ECM 1276", "Changes");
+        Musician keith = new Musician("Keith Jarrett");
+        Musician gary = new Musician("Gary Peacock");
+        keith.setAlbums(Sets.newHashSet(album1, album2, album3));
+        gary.setAlbums(Sets.newHashSet(album2));
+
+        dao.createOrUpdate(gary);
+        dao.createOrUpdate(keith);
+        dao.createOrUpdate(album2);
+
+        assertEquals(Lists.newArrayList(keith, gary), ecmMiner.mostProlificMusicians(5, 1900, 2020));
+        assertEquals(Lists.newArrayList(1983, 1975), ecmMiner.busiestYears(5));
+        assertEquals(2, aggregates.albumCount(1983));
+        verify(store, never()).loadAll(any());
+    }
+
+    @Test
+    public void shouldApplyUpdatesAsDifferences() {
+        Album album1 = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Album album2 = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        Musician keith = new Musician("Keith Jarrett");
+        keith.setAlbums(Sets.newHashSet(album1, album2));
+        dao.createOrUpdate(keith);
+
+        keith.setAlbums(Sets.newHashSet(album2));
+        dao.createOrUpdate(keith);
+        assertEquals(1, aggregates.albumCount(keith));
+
+        dao.delete(album2);
+        assertEquals(0, aggregates.albumCount(keith));
+        assertEquals(0, aggregates.albumCount(1983));
+        assertTrue(ecmMiner.mostProlificMusicians(5, 1900, 2020).isEmpty());
+    }
+
+    @Test
+    public void shouldAddAlbumsAddedToAMusician() {
+        Album album1 = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Album album2 = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        Musician keith = new Musician("Keith Jarrett");
+        keith.setAlbums(Sets.newHashSet(album1));
+        dao.createOrUpdate(keith);
+
+        Musician batch = new Musician("Keith Jarrett");
+        dao.addRelated("albums", ImmutableSetMultimap.of(batch, album1, batch, album2));
+        assertEquals(2, aggregates.albumCount(keith));
+        assertEquals(1, aggregates.albumCount(1983));
+        verify(store).addRelated(eq("albums"), any());
+    }
+
+    @Test
+    public void shouldMoveAnAlbumWhoseYearChanged() {
+        Album album = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        album.setId(7L);
+        dao.createOrUpdate(album);
+
+        Album updated = new Album(1985, "ECM 1255", "Standards, Vol. 1");
+        updated.setId(7L);
+        dao.createOrUpdate(updated);
+        assertEquals(0, aggregates.albumCount(1983));
+        assertEquals(1, aggregates.albumCount(1985));
+        assertEquals(Lists.newArrayList(1985), ecmMiner.busiestYears(5));
+
+        dao.delete(updated);
+        assertEquals(0, aggregates.albumCount(1985));
+        assertTrue(ecmMiner.busiestYears(5).isEmpty());
+    }
+
+    @Test
+    public void shouldFallBackWhenTheRangeDoesNotCoverAllAlbums() {
+        Album album1 = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Album album2 = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        Musician keith = new Musician("Keith Jarrett");
+        keith.setAlbums(Sets.newHashSet(album1, album2));
+        dao.createOrUpdate(keith);
+        when(store.loadAll(Musician.class)).thenReturn(Sets.newHashSet(keith));
+
+        assertFalse(aggregates.coversAllYears(1980, 1990));
+        assertEquals(Lists.newArrayList(keith), ecmMiner.mostProlificMusicians(5, 1980, 1990));
+        verify(store).loadAll(Musician.class);
+    }
+
+    @Test
+    public void shouldTrackInstrumentUsage() {
+        MusicalInstrument piano = new MusicalInstrument("Piano");
+        MusicalInstrument drums = new MusicalInstrument("Drums");
+        MusicianInstrument keith = new MusicianInstrument(new Musician("Keith Jarrett"), Sets.newHashSet(piano, drums));
+        MusicianInstrument jack = new MusicianInstrument(new Musician("Jack DeJohnette"), Sets.newHashSet(drums));
+        keith.setId(1L);
+        jack.setId(2L);
+
+        dao.createOrUpdate(keith);
+        dao.createOrUpdate(jack);
+        assertEquals(Lists.newArrayList(drums, piano), ecmMiner.mostPopularInstrument(5));
+
+        jack.setMusicalInstruments(Sets.newHashSet(piano));
+        dao.createOrUpdate(jack);
+        assertEquals(2, aggregates.usageCount(piano));
+        assertEquals(1, aggregates.usageCount(drums));
+
+        dao.delete(keith);
+        assertEquals(Lists.newArrayList(piano), ecmMiner.mostPopularInstrument(5));
+    }
+
+    @Test
+    public void shouldSeedFromTheStore() {
+        Album album = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Musician keith = new Musician("Keith Jarrett");
+        keith.setAlbums(Sets.newHashSet(album));
+        when(store.loadAll(Album.class)).thenReturn(Sets.newHashSet(album));
+        when(store.loadAll(Musician.class)).thenReturn(Sets.newHashSet(keith));
+        when(store.loadAll(MusicianInstrument.class)).thenReturn(Sets.newHashSet(
+                new MusicianInstrument(keith, Sets.newHashSet(new MusicalInstrument("Piano")))));
+
+        aggregates.load(dao);
+
+        assertEquals(1, aggregates.albumCount(1975));
+        assertEquals(1, aggregates.albumCount(keith));
+        assertEquals(1, aggregates.usageCount(new MusicalInstrument("Piano")));
+    }
+}
@@ -0,0 +1,88 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MiningReportUnitTest {
+    private DAO dao;
+    private ECMMiner miner;
+    private Album standards;
+
+    @BeforeEach
+    public void setUp() {
+        Musician keith = new Musician("Keith Jarrett");
+        Musician gary = new Musician("Gary Peacock");
+        Musician jack = new Musician("Jack DeJohnette");
+        Album koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        standards = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        Album changes = new Album(1983, "ECM 1276", "Changes");
+        koln.setFeaturedMusicians(Lists.newArrayList(keith));
+        standards.setFeaturedMusicians(Lists.newArrayList(keith, gary, jack));
+        changes.setFeaturedMusicians(Lists.newArrayList(keith, gary));
+        keith.setAlbums(Sets.newHashSet(koln, standards, changes));
+        gary.setAlbums(Sets.newHashSet(standards, changes));
+        jack.setAlbums(Sets.newHashSet(standards));
+        MusicalInstrument piano = new MusicalInstrument("Piano");
+        MusicalInstrument drums = new MusicalInstrument("Drums");
+
+        dao = StreamingDAOs.mockStreamingLoadAll();
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet(koln, standards, changes));
+        when(dao.loadAll(Musician.class)).thenReturn(Sets.newHashSet(keith, gary, jack));
+        when(dao.loadAll(MusicianInstrument.class)).thenReturn(Sets.newHashSet(
+                new MusicianInstrument(keith, Sets.newHashSet(piano, drums)),
+                new MusicianInstrument(gary, Sets.newHashSet(new MusicalInstrument("Double Bass"))),
+                new MusicianInstrument(jack, Sets.newHashSet(drums))));
+        miner = new ECMMiner(dao);
+    }
+
+    @Test
+    public void shouldMatchTheIndividualQueriesWithOneLoadPerEntityType() {
+        MiningRequest request = new MiningRequest()
+                .prolificMusicians(2, 1980, 1990)
+                .talentedMusicians(2)
+                .socialMusicians(1)
+                .busiestYears(2)
+                .similarAlbums(2, standards)
+                .popularInstruments(1);
+        MiningReport expected = new MiningReport();
+        expected.setProlificMusicians(miner.mostProlificMusicians(2, 1980, 1990));
+        expected.setTalentedMusicians(miner.mostTalentedMusicians(2));
+        expected.setSocialMusicians(miner.mostSocialMusicians(1));
+        expected.setBusiestYears(miner.busiestYears(2));
+        expected.setSimilarAlbums(miner.mostSimilarAlbums(2, standards));
+        expected.setPopularInstruments(miner.mostPopularInstrument(1));
+        clearInvocations(dao);
+
+        MiningReport report = miner.report(request);
+        assertEquals(expected.getProlificMusicians(), report.getProlificMusicians());
+        assertEquals(expected.getTalentedMusicians(), report.getTalentedMusicians());
+        assertEquals(expected.getSocialMusicians(), report.getSocialMusicians());
+        assertEquals(expected.getBusiestYears(), report.getBusiestYears());
+        assertEquals(expected.getSimilarAlbums(), report.getSimilarAlbums());
+        assertEquals(expected.getPopularInstruments(), report.getPopularInstruments());
+        verify(dao, times(1)).loadAll(Album.class);
+        verify(dao, times(1)).loadAll(Musician.class);
+        verify(dao, times(1)).loadAll(MusicianInstrument.class);
+    }
+
+    @Test
+    public void shouldOnlyLoadWhatTheRequestedMetricsNeed() {
+        MiningReport report = miner.report(new MiningRequest().busiestYears(5, 1980, 1990));
+
+        assertEquals(Lists.newArrayList(1983), report.getBusiestYears());
+        assertNull(report.getProlificMusicians());
+        assertNull(report.getPopularInstruments());
+        verify(dao, never()).loadAll(Musician.class);
+        verify(dao, never()).loadAll(MusicianInstrument.class);
+    }
+}
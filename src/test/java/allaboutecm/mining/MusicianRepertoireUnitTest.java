@@ -0,0 +1,56 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MusicianRepertoireUnitTest {
+
+    @Test
+    public void shouldUnionInstrumentsAcrossRowsOfTheSameMusician() {
+        Musician keith = new Musician("Keith Jarrett");
+        Musician jack = new Musician("Jack DeJohnette");
+        List<MusicianInstrument> rows = Lists.newArrayList(
+                new MusicianInstrument(keith, Sets.newHashSet(new MusicalInstrument("Piano"), new MusicalInstrument("Drums"))),
+                new MusicianInstrument(keith, Sets.newHashSet(new MusicalInstrument("Piano"), new MusicalInstrument("Organ"))),
+                new MusicianInstrument(keith, Sets.newHashSet(new MusicalInstrument("Piano"))),
+                new MusicianInstrument(jack, Sets.newHashSet(new MusicalInstrument("Drums"), new MusicalInstrument("Piano"))));
+
+        MusicianRepertoire repertoire = MusicianRepertoire.encode(rows);
+        assertEquals(2, repertoire.musicianCount());
+        assertEquals(3, repertoire.instrumentCount(0));
+        assertEquals(Lists.newArrayList(keith, jack), repertoire.top(5));
+        assertEquals(Lists.newArrayList(keith), repertoire.top(1));
+    }
+
+    @Test
+    public void snapshotRepertoireShouldMatchTheEncodedRows() {
+        Random random = new Random(5171);
+        List<MusicianInstrument> rows = Lists.newArrayList();
+        for (int i = 0; i < 2000; i++) {
+            Set<MusicalInstrument> played = Sets.newHashSet();
+            for (int j = 0; j <= random.nextInt(3); j++) {
+                played.add(new MusicalInstrument("Instrument " + random.nextInt(30)));
+            }
+            rows.add(new MusicianInstrument(new Musician("Musician " + random.nextInt(200)), played));
+        }
+        CatalogSnapshot snapshot = CatalogSnapshot.build(Lists.newArrayList(), Lists.newArrayList(), rows);
+
+        MusicianRepertoire encoded = MusicianRepertoire.encode(rows);
+        MusicianRepertoire built = snapshot.repertoire();
+        for (int m = 0; m < encoded.musicianCount(); m++) {
+            int id = snapshot.musicianId(encoded.musician(m));
+            assertEquals(encoded.instrumentCount(m), built.instrumentCount(id));
+        }
+        assertEquals(encoded.top(20), built.top(20));
+    }
+}
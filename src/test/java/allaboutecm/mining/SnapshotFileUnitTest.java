@@ -0,0 +1,219 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.neo4j.Neo4jDAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SnapshotFileUnitTest {
+    private DAO dao;
+
+    private Musician keith;
+    private Musician gary;
+    private Album koln;
+    private Album standards;
+    private Album changes;
+
+    @BeforeEach
+    public void setUp() {
+        keith = new Musician("Keith Jarrett");
+        gary = new Musician("Gary Peacock");
+        Musician jack = new Musician("Jack DeJohnette");
+        keith.setId(1L);
+
+        koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        standards = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        changes = new Album(1983, "ECM 1276", "Changes");
+        koln.setStyle("Jazz");
+        koln.setReleaseFormat("LP");
+        koln.setId(10L);
+        koln.setFeaturedMusicians(Lists.newArrayList(keith));
+        standards.setFeaturedMusicians(Lists.newArrayList(keith, gary, jack));
+        changes.setFeaturedMusicians(Lists.newArrayList(keith, gary));
+
+        keith.setAlbums(Sets.newHashSet(koln, standards, changes));
+        gary.setAlbums(Sets.newHashSet(standards, changes));
+        jack.setAlbums(Sets.newHashSet(standards));
+
+        dao = mock(Neo4jDAO.class);
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet(koln, standards, changes));
+        when(dao.loadAll(Musician.class)).thenReturn(Sets.newHashSet(keith, gary, jack));
+        when(dao.loadAll(MusicianInstrument.class)).thenReturn(Sets.newHashSet(
+                new MusicianInstrument(keith, Sets.newHashSet(new MusicalInstrument("Piano"))),
+                new MusicianInstrument(jack, Sets.newHashSet(new MusicalInstrument("Drums"),
+                        new MusicalInstrument("Piano")))));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void shouldReadBackTheColumnsItWrote(boolean compress, @TempDir Path directory) throws IOException {
+        Path file = directory.resolve("catalog.snapshot");
+        CatalogSnapshot written = SnapshotFile.write(dao, file, compress);
+
+        CatalogSnapshot read = SnapshotFile.read(file);
+        assertEquals(compress, SnapshotFile.isCompressed(file));
+        assertEquals(written.albumCount(), read.albumCount());
+        assertEquals(written.musicianCount(), read.musicianCount());
+        assertEquals(written.instrumentCount(), read.instrumentCount());
+        assertEquals(written.performanceCount(), read.performanceCount());
+
+        Album album = read.album(read.albumId(koln));
+        assertEquals(koln, album);
+        assertEquals(Long.valueOf(10), album.getId());
+        assertEquals("Jazz", album.getStyle());
+        assertEquals("LP", album.getReleaseFormat());
+        assertNull(read.album(read.albumId(changes)).getStyle());
+        assertEquals(Long.valueOf(1), read.musician(read.musicianId(keith)).getId());
+        assertNull(read.musician(read.musicianId(gary)).getId());
+
+        int standardsId = read.albumId(standards);
+        assertEquals(1983, read.releaseYear(standardsId));
+        assertEquals(3, read.featuredEnd(standardsId) - read.featuredStart(standardsId));
+        assertEquals(keith, read.musician(read.featuredMusician(read.featuredStart(standardsId))));
+        assertArrayEquals(written.collaboratorCounts(), read.collaboratorCounts());
+        assertArrayEquals(written.instrumentCounts(), read.instrumentCounts());
+    }
+
+    @Test
+    public void shouldStoreEachDistinctStringOnce(@TempDir Path directory) throws IOException {
+        standards.setStyle("Jazz");
+        changes.setStyle("Jazz");
+        Path file = directory.resolve("catalog.snapshot");
+        SnapshotFile.write(dao, file, false);
+        byte[] bytes = Files.readAllBytes(file);
+        assertEquals(1, occurrences(bytes, "Jazz"));
+
+        CatalogSnapshot read = SnapshotFile.read(file);
+        String style = read.album(read.albumId(koln)).getStyle();
+        assertEquals("Jazz", style);
+        assertSame(style, read.album(read.albumId(standards)).getStyle());
+        assertSame(style, read.album(read.albumId(changes)).getStyle());
+        assertNull(read.album(read.albumId(changes)).getReleaseFormat());
+    }
+
+    private static int occurrences(byte[] bytes, String string) {
+        byte[] pattern = string.getBytes(StandardCharsets.UTF_8);
+        int occurrences = 0;
+        for (int i = 0; i + pattern.length <= bytes.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + pattern.length), pattern)) {
+                occurrences++;
+            }
+        }
+        return occurrences;
+    }
+
+    @Test
+    public void minerShouldGiveTheSameResultsOnASnapshotFile(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("catalog.snapshot");
+        ECMMiner live = new ECMMiner(dao, SnapshotFile.write(dao, file, true));
+        ECMMiner fromFile = new ECMMiner(dao, SnapshotFile.read(file));
+
+        assertEquals(live.mostProlificMusicians(2, 1970, 2000), fromFile.mostProlificMusicians(2, 1970, 2000));
+        assertEquals(live.mostSocialMusicians(3), fromFile.mostSocialMusicians(3));
+        assertEquals(live.busiestYears(2), fromFile.busiestYears(2));
+        assertEquals(live.busiestYearsByStyle(1), fromFile.busiestYearsByStyle(1));
+        assertEquals(live.mostSimilarAlbums(2, changes), fromFile.mostSimilarAlbums(2, changes));
+        assertEquals(live.mostPopularInstrument(2), fromFile.mostPopularInstrument(2));
+        assertEquals(live.mostTalentedMusicians(2), fromFile.mostTalentedMusicians(2));
+    }
+
+    @Test
+    public void approximateSimilarityShouldMatchAfterAWarmStart(@TempDir Path directory) throws IOException {
+        koln.setTracks(Lists.newArrayList("Part I", "Part II a", "Part II b"));
+        changes.setTracks(Lists.newArrayList("Prism", "Changes"));
+        Path file = directory.resolve("catalog.snapshot");
+        CatalogSnapshot live = SnapshotFile.write(dao, file, true);
+        ECMMiner fromStore = new ECMMiner(dao, live);
+        fromStore.setApproximateSimilarity(AlbumMinHashIndex.build(live, 16, 1));
+
+        ECMMiner warm = new ECMMiner(dao);
+        warm.warmStart(file, task -> { });
+        CatalogSnapshot read = warm.getSnapshot();
+        assertEquals(changes.getTracks(), read.album(read.albumId(changes)).getTracks());
+        warm.setApproximateSimilarity(AlbumMinHashIndex.build(read, 16, 1));
+
+        for (Album album : Lists.newArrayList(koln, standards, changes)) {
+            assertEquals(fromStore.getApproximateSimilarity().candidates(album).length,
+                    warm.getApproximateSimilarity().candidates(album).length);
+            assertEquals(fromStore.mostSimilarAlbums(2, album), warm.mostSimilarAlbums(2, album));
+        }
+        assertTrue(warm.getApproximateSimilarity().candidates(changes).length > 0);
+    }
+
+    @Test
+    public void shouldRejectOtherFilesAndFormatVersions(@TempDir Path directory) throws IOException {
+        Path other = Files.write(directory.resolve("other"), "not a snapshot".getBytes());
+        assertThrows(IOException.class, () -> SnapshotFile.read(other));
+
+        Path file = directory.resolve("catalog.snapshot");
+        SnapshotFile.write(dao, file, false);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(4, SnapshotFile.VERSION + 1);
+        Files.write(file, bytes);
+        IOException e = assertThrows(IOException.class, () -> SnapshotFile.read(file));
+        assertTrue(e.getMessage().contains("version"));
+
+        Path truncated = directory.resolve("truncated.snapshot");
+        SnapshotFile.write(dao, truncated, false);
+        bytes = Files.readAllBytes(truncated);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 4));
+        assertThrows(IOException.class, () -> SnapshotFile.read(truncated));
+    }
+
+    @Test
+    public void warmStartShouldServeTheFileUntilTheStoreIsLoaded(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("catalog.snapshot");
+        SnapshotFile.write(dao, file, true);
+        Album later = new Album(1983, "ECM 1250", "Later Album");
+        later.setFeaturedMusicians(Lists.newArrayList(gary));
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet(koln, standards, changes, later));
+
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ECMMiner miner = new ECMMiner(dao);
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            CompletableFuture<CatalogSnapshot> caughtUp = miner.warmStart(file, executor);
+            assertEquals(3, miner.getSnapshot().albumCount());
+            assertEquals(Lists.newArrayList(1983), miner.busiestYears(1));
+
+            release.countDown();
+            CatalogSnapshot live = caughtUp.get();
+            assertSame(live, miner.getSnapshot());
+            assertEquals(4, live.albumCount());
+            assertEquals(4, SnapshotFile.read(file).albumCount());
+            assertTrue(SnapshotFile.isCompressed(file));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.neo4j.Neo4jDAO;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Mock DAOs for the tests of the miner's entity scans, which read the catalog through {@code DAO.stream}.
+ */
+final class StreamingDAOs {
+    private StreamingDAOs() {
+    }
+
+    /**
+     * A mock Neo4jDAO that streams in pages, whose stream reads through the loadAll stubs of the test.
+     */
+    static Neo4jDAO mockStreamingLoadAll() {
+        Neo4jDAO dao = mock(Neo4jDAO.class);
+        when(dao.streamsInPages()).thenReturn(true);
+        when(dao.stream(any())).thenAnswer(invocation -> dao.loadAll(invocation.getArgument(0)).stream());
+        return dao;
+    }
+}
@@ -0,0 +1,76 @@
+package allaboutecm.mining;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKUnitTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {-1, 0})
+    public void shouldRejectNonPositiveK(int k) {
+        assertThrows(IllegalArgumentException.class, () -> new TopK<String>(k, Comparator.naturalOrder()));
+    }
+
+    @Test
+    public void shouldReturnHighestScoresFirst() {
+        TopK<String> topK = new TopK<>(2, Comparator.naturalOrder());
+        topK.offer("a", 1);
+        topK.offer("b", 5);
+        topK.offer("c", 3);
+        topK.offer("d", 2);
+        assertEquals(Lists.newArrayList("b", "c"), topK.toList());
+    }
+
+    @Test
+    public void shouldReturnAllWhenFewerThanK() {
+        TopK<String> topK = new TopK<>(10, Comparator.naturalOrder());
+        topK.offer("a", 1);
+        topK.offer("b", 2);
+        assertEquals(Lists.newArrayList("b", "a"), topK.toList());
+    }
+
+    @Test
+    public void shouldBreakTiesIndependentlyOfOfferOrder() {
+        List<String> items = Lists.newArrayList("e", "b", "d", "a", "c");
+        for (int i = 0; i < 5; i++) {
+            Collections.rotate(items, 1);
+            TopK<String> topK = new TopK<>(3, Comparator.naturalOrder());
+            for (String item : items) {
+                topK.offer(item, 7);
+            }
+            assertEquals(Lists.newArrayList("a", "b", "c"), topK.toList());
+        }
+    }
+
+    @Test
+    public void shouldMergeTwoSelectors() {
+        TopK<String> left = new TopK<>(2, Comparator.naturalOrder());
+        TopK<String> right = new TopK<>(2, Comparator.naturalOrder());
+        left.offer("a", 1);
+        left.offer("b", 4);
+        right.offer("c", 3);
+        right.offer("d", 2);
+        left.addAll(right);
+        assertEquals(Lists.newArrayList("b", "c"), left.toList());
+    }
+
+    @Test
+    public void thresholdShouldBeTheWorstKeptScoreOnceFull() {
+        TopK<String> topK = new TopK<>(2, Comparator.naturalOrder());
+        assertEquals(Double.NEGATIVE_INFINITY, topK.threshold());
+        topK.offer("a", 1);
+        assertEquals(Double.NEGATIVE_INFINITY, topK.threshold());
+        topK.offer("b", 4);
+        assertEquals(1, topK.threshold());
+        topK.offer("c", 3);
+        assertEquals(3, topK.threshold());
+    }
+}
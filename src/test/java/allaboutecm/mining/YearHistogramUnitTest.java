@@ -0,0 +1,51 @@
+package allaboutecm.mining;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class YearHistogramUnitTest {
+
+    @Test
+    public void shouldCountAndRankYears() {
+        YearHistogram histogram = new YearHistogram();
+        histogram.add(1975);
+        histogram.add(1983);
+        histogram.add(1983);
+        histogram.add(1990);
+
+        assertEquals(2, histogram.count(1983));
+        assertEquals(0, histogram.count(1984));
+        assertEquals(4, histogram.total());
+        assertEquals(Lists.newArrayList(1983, 1975, 1990), histogram.top(5));
+        assertEquals(Lists.newArrayList(1975), histogram.top(5, 1970, 1980));
+    }
+
+    @Test
+    public void shouldGrowForYearsOutsideTheDefaultRange() {
+        YearHistogram histogram = new YearHistogram();
+        histogram.add(1850);
+        histogram.add(3000);
+        histogram.add(1983);
+
+        assertEquals(1, histogram.count(1850));
+        assertEquals(1, histogram.count(3000));
+        assertEquals(1, histogram.count(1983));
+        assertEquals(Lists.newArrayList(1850, 1983, 3000), histogram.top(3));
+    }
+
+    @Test
+    public void addAllShouldSumCounts() {
+        YearHistogram left = new YearHistogram();
+        YearHistogram right = new YearHistogram();
+        left.add(1975);
+        right.add(1975);
+        right.add(1890);
+
+        left.addAll(right);
+        assertEquals(2, left.count(1975));
+        assertEquals(1, left.count(1890));
+        assertEquals(3, left.total());
+    }
+}
@@ -0,0 +1,68 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class YearRangeIndexUnitTest {
+
+    @Test
+    public void shouldCountAlbumsInRange() {
+        Album album1 = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Album album2 = new Album(1983, "ECM 1255", "Standards, Vol. 1");
+        Album album3 = new Album(1983, "ECM 1276", "Changes");
+        Musician keith = new Musician("Keith Jarrett");
+        keith.setAlbums(Sets.newHashSet(album1, album2, album3));
+        CatalogSnapshot snapshot = CatalogSnapshot.build(Lists.newArrayList(), Lists.newArrayList(keith), Lists.newArrayList());
+
+        YearRangeIndex index = YearRangeIndex.build(snapshot);
+        int m = snapshot.musicianId(keith);
+        assertEquals(3, index.count(m, 1900, 2020));
+        assertEquals(2, index.count(m, 1983, 1983));
+        assertEquals(1, index.count(m, 1970, 1982));
+        assertEquals(0, index.count(m, 1984, 2020));
+        assertEquals(0, index.count(m, 1983, 1975));
+    }
+
+    @Test
+    public void shouldMatchAScanForSlidingWindows() {
+        Random random = new Random(5171);
+        List<Album> albums = Lists.newArrayList();
+        for (int i = 0; i < 300; i++) {
+            albums.add(new Album(1950 + random.nextInt(60), "ECM " + i, "Album " + i));
+        }
+        List<Musician> musicians = Lists.newArrayList();
+        for (int i = 0; i < 50; i++) {
+            Musician musician = new Musician("Musician " + i);
+            Set<Album> discography = Sets.newHashSet();
+            for (int j = 0; j <= random.nextInt(30); j++) {
+                discography.add(albums.get(random.nextInt(albums.size())));
+            }
+            musician.setAlbums(discography);
+            musicians.add(musician);
+        }
+        CatalogSnapshot snapshot = CatalogSnapshot.build(albums, musicians, Lists.newArrayList());
+        YearRangeIndex index = snapshot.yearRangeIndex();
+
+        for (int start = 1945; start < 2015; start++) {
+            int end = start + 9;
+            for (Musician musician : musicians) {
+                int expected = 0;
+                for (Album album : musician.getAlbums()) {
+                    if (album.getReleaseYear() >= start && album.getReleaseYear() <= end) {
+                        expected++;
+                    }
+                }
+                assertEquals(expected, index.count(snapshot.musicianId(musician), start, end));
+            }
+        }
+    }
+}
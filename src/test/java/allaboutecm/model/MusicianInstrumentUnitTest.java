@@ -8,6 +8,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class MusicianInstrumentUnitTest {
@@ -29,6 +30,22 @@ class MusicianInstrumentUnitTest {
         assertEquals(musicianInstrument, musicianInstrument1);
     }
 
+    @Test
+    public void withoutMusiciansOnlyTheSameIdMeansTheSame() {
+        MusicianInstrument loaded = new MusicianInstrument();
+        loaded.setId(1L);
+        MusicianInstrument same = new MusicianInstrument();
+        same.setId(1L);
+        MusicianInstrument other = new MusicianInstrument();
+        other.setId(2L);
+
+        assertEquals(loaded, same);
+        assertEquals(loaded.hashCode(), same.hashCode());
+        assertNotEquals(loaded, other);
+        assertNotEquals(new MusicianInstrument(), new MusicianInstrument());
+        assertNotEquals(musicianInstrument, loaded);
+    }
+
     //boundary test ?
     @Test
     @DisplayName("Musician cannot be null")